@@ -0,0 +1,91 @@
+package com.ruleoftech.markdown.page.generator.plugin;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.vladsch.flexmark.html.AttributeProvider;
+import com.vladsch.flexmark.html.HtmlRenderer;
+import com.vladsch.flexmark.html.IndependentAttributeProviderFactory;
+import com.vladsch.flexmark.html.renderer.AttributablePart;
+import com.vladsch.flexmark.html.renderer.LinkResolverContext;
+import com.vladsch.flexmark.parser.Parser;
+import com.vladsch.flexmark.util.ast.Document;
+import com.vladsch.flexmark.util.ast.Node;
+import com.vladsch.flexmark.util.data.MutableDataSet;
+import com.vladsch.flexmark.util.html.MutableAttributes;
+import com.vladsch.flexmark.util.misc.Extension;
+
+/**
+ * {@link FlexmarkAttributeProvider#setAttributes} for every node of a page.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AttributeProviderBenchmark {
+
+    private AttributeProvider provider;
+    private List<Node> nodes;
+
+    @Setup
+    public void setUp() {
+        AttributeRules rules = new AttributeRules(Collections.<Extension>emptyList());
+        rules.add("Heading", attributes("class", "title"));
+        rules.add("Link", attributes("target", "_blank"));
+        rules.add("TableBlock", attributes("class", "table table-striped"));
+        rules.add("FencedCodeBlock", attributes("class", "code"));
+
+        MutableDataSet options = new MutableDataSet();
+        options.set(AttributesExtension.ATTRIBUTE_RULES, rules);
+        Document document = Parser.builder(options).build().parse(SyntheticMarkdown.page(42));
+
+        // the provider needs the context of a renderer, so capture the one the renderer creates
+        final List<AttributeProvider> providers = new ArrayList<>();
+        HtmlRenderer renderer = HtmlRenderer.builder(options).attributeProviderFactory(new IndependentAttributeProviderFactory() {
+            @Override
+            public AttributeProvider apply(LinkResolverContext context) {
+                FlexmarkAttributeProvider provider = new FlexmarkAttributeProvider(context);
+                providers.add(provider);
+                return provider;
+            }
+        }).build();
+        renderer.render(document);
+        provider = providers.get(0);
+
+        nodes = new ArrayList<>();
+        for (Node node : document.getDescendants()) {
+            nodes.add(node);
+        }
+    }
+
+    @Benchmark
+    public void setAttributes(Blackhole blackhole) {
+        for (Node node : nodes) {
+            MutableAttributes attributes = new MutableAttributes();
+            provider.setAttributes(node, AttributablePart.NODE, attributes);
+            blackhole.consume(attributes);
+        }
+    }
+
+    private static MutableAttributes attributes(String name, String value) {
+        MutableAttributes attributes = new MutableAttributes();
+        attributes.addValue(name, value);
+        return attributes;
+    }
+}
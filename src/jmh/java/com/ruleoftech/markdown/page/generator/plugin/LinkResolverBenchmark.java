@@ -0,0 +1,78 @@
+package com.ruleoftech.markdown.page.generator.plugin;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.vladsch.flexmark.html.renderer.LinkResolverBasicContext;
+import com.vladsch.flexmark.html.renderer.LinkType;
+import com.vladsch.flexmark.html.renderer.ResolvedLink;
+import com.vladsch.flexmark.parser.Parser;
+import com.vladsch.flexmark.util.ast.Document;
+import com.vladsch.flexmark.util.data.DataHolder;
+import com.vladsch.flexmark.util.data.MutableDataSet;
+
+/**
+ * {@link FlexmarkLinkResolver#resolveLink} over a mix of relative, anchored, absolute and non-markdown links.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LinkResolverBenchmark {
+
+    private static final String[] URLS = {
+            "page.md",
+            "../section/page.md#details",
+            "https://github.com/walokra/markdown-page-generator-plugin/blob/master/Readme.md",
+            "images/screenshot.png",
+            "page.markdown",
+            "#details",
+    };
+
+    private LinkResolverBasicContext context;
+    private FlexmarkLinkResolver resolver;
+    private ResolvedLink[] links;
+
+    @Setup
+    public void setUp() {
+        final MutableDataSet options = new MutableDataSet();
+        options.set(PageGeneratorExtension.INPUT_FILE_EXTENSIONS, "md,markdown");
+        final Document document = Parser.builder(options).build().parse("[link](page.md)");
+        context = new LinkResolverBasicContext() {
+            @Override
+            public DataHolder getOptions() {
+                return options;
+            }
+
+            @Override
+            public Document getDocument() {
+                return document;
+            }
+        };
+        resolver = new FlexmarkLinkResolver(context);
+        links = new ResolvedLink[URLS.length];
+        for (int i = 0; i < URLS.length; i++) {
+            links[i] = new ResolvedLink(LinkType.LINK, URLS[i]);
+        }
+    }
+
+    @Benchmark
+    public void resolveLink(Blackhole blackhole) {
+        for (ResolvedLink link : links) {
+            blackhole.consume(resolver.resolveLink(context.getDocument(), context, link));
+        }
+    }
+}
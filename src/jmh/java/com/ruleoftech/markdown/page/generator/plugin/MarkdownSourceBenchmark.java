@@ -0,0 +1,48 @@
+package com.ruleoftech.markdown.page.generator.plugin;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Title lookup and front matter removal, which {@link MarkdownSource} does in one scan of the page.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MarkdownSourceBenchmark {
+
+    private String page;
+
+    @Setup
+    public void setUp() {
+        page = SyntheticMarkdown.page(42);
+    }
+
+    @Benchmark
+    public String getTitle() {
+        return MarkdownSource.scan(page, true, false, false).getTitle();
+    }
+
+    @Benchmark
+    public String removeMarkdownHeader() {
+        return MarkdownSource.scan(page, false, false, true).getBody().toString();
+    }
+
+    @Benchmark
+    public MarkdownSource scan() {
+        return MarkdownSource.scan(page, true, true, true);
+    }
+}
@@ -0,0 +1,78 @@
+package com.ruleoftech.markdown.page.generator.plugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.testing.SilentLog;
+import org.codehaus.plexus.util.ReflectionUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * End to end generation of a synthetic corpus: reading, parsing, rendering and writing every page.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class ProcessMarkdownBenchmark {
+
+    @Param({"100", "10000", "100000"})
+    public int pages;
+
+    @Param({"1", "0"})
+    public int threads;
+
+    private File inputDirectory;
+    private File outputDirectory;
+
+    @Setup(Level.Trial)
+    public void writeCorpus() throws IOException {
+        inputDirectory = Files.createTempDirectory("md-page-generator-benchmark-input").toFile();
+        outputDirectory = Files.createTempDirectory("md-page-generator-benchmark-output").toFile();
+        SyntheticMarkdown.writeCorpus(inputDirectory, pages);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteCorpus() throws IOException {
+        FileUtils.deleteDirectory(inputDirectory);
+        FileUtils.deleteDirectory(outputDirectory);
+    }
+
+    /**
+     * Threads <code>0</code> uses the default of one thread per processor.
+     */
+    @Benchmark
+    public void processMarkdown() throws MojoExecutionException, IllegalAccessException {
+        MdPageGeneratorMojo mojo = new MdPageGeneratorMojo();
+        mojo.setLog(new SilentLog());
+        mojo.setInputDirectory(inputDirectory.getAbsolutePath());
+        mojo.setOutputDirectory(outputDirectory.getAbsolutePath());
+        ReflectionUtils.setVariableValueInObject(mojo, "recursiveInput", true);
+        ReflectionUtils.setVariableValueInObject(mojo, "transformRelativeMarkdownLinks", true);
+        ReflectionUtils.setVariableValueInObject(mojo, "removeMarkdownHeaders", true);
+        ReflectionUtils.setVariableValueInObject(mojo, "pegdownExtensions", "TABLES");
+        ReflectionUtils.setVariableValueInObject(mojo, "attributes", new String[]{"Heading|class=title", "Link|target=_blank"});
+        ReflectionUtils.setVariableValueInObject(mojo, "inputEncoding", "UTF-8");
+        ReflectionUtils.setVariableValueInObject(mojo, "outputEncoding", "UTF-8");
+        ReflectionUtils.setVariableValueInObject(mojo, "threads", threads > 0 ? threads : null);
+        mojo.execute();
+    }
+}
@@ -0,0 +1,56 @@
+package com.ruleoftech.markdown.page.generator.plugin;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.commons.io.FileUtils;
+
+/**
+ * Generates markdown pages for the benchmarks. Every page has a front matter header, a title, variable definitions
+ * and references, relative and absolute links, a table and a code block.
+ */
+final class SyntheticMarkdown {
+
+    static final int PAGES_PER_DIRECTORY = 100;
+
+    private SyntheticMarkdown() {
+    }
+
+    static String page(int index) {
+        StringBuilder page = new StringBuilder(4096);
+        page.append("---\n")
+                .append("title: Page ").append(index).append('\n')
+                .append("tags: benchmark, synthetic\n")
+                .append("---\n\n")
+                .append("# Page ").append(index).append("\n\n")
+                .append("{version=1.").append(index % 10).append("}\n")
+                .append("{product=Markdown Page Generator}\n\n");
+        for (int paragraph = 0; paragraph < 8; paragraph++) {
+            page.append("Paragraph ").append(paragraph).append(" of ${product} version ${version} with *emphasis*, ")
+                    .append("**strong text** and `inline code`. See [the next page](page-").append(index + 1)
+                    .append(".md), [a section](../section/page-").append(index).append(".md#details) and ")
+                    .append("[the project](https://github.com/walokra/markdown-page-generator-plugin).\n\n");
+        }
+        page.append("## Details\n\n")
+                .append("| Option | Default | Description |\n")
+                .append("|--------|---------|-------------|\n");
+        for (int row = 0; row < 10; row++) {
+            page.append("| option").append(row).append(" | `").append(row).append("` | Description of option ")
+                    .append(row).append(" |\n");
+        }
+        page.append("\n```java\nSystem.out.println(\"Page ").append(index).append("\");\n```\n\n")
+                .append("- first item\n- second item with [a link](page-").append(index).append(".md)\n")
+                .append("    - nested item\n");
+        return page.toString();
+    }
+
+    /**
+     * Write a corpus of pages into sub directories of the given directory.
+     */
+    static void writeCorpus(File directory, int pages) throws IOException {
+        for (int index = 0; index < pages; index++) {
+            File subDirectory = new File(directory, "section-" + index / PAGES_PER_DIRECTORY);
+            FileUtils.writeStringToFile(new File(subDirectory, "page-" + index + ".md"), page(index), "UTF-8");
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package com.ruleoftech.markdown.page.generator.plugin;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Locale;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * Copies or links the files of the <code>copyDirectories</code> to the output directory.
+ * <p>
+ * Files whose target is up to date are skipped. A copy is up to date when it has the size and modification time of
+ * the source, or the same content if contents are compared. A link is up to date when it already points to the source.
+ * If links cannot be created, for example across file systems or without the privilege for symbolic links, the files
+ * are copied instead.
+ */
+final class AssetCopier {
+
+    enum Mode {
+        COPY, HARDLINK, SYMLINK;
+
+        static Mode parse(String mode) {
+            try {
+                return valueOf(mode.trim().toUpperCase(Locale.ENGLISH));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("No such copy mode: " + mode + ", expected copy, hardlink or symlink");
+            }
+        }
+    }
+
+    private final boolean compareContent;
+    private final Log log;
+    private Mode mode;
+    private int copied;
+    private int upToDate;
+    private long copiedBytes;
+
+    /**
+     * @param mode           how the files are put in the output directory
+     * @param compareContent compare the content of copies of the same size instead of their modification time
+     * @param log            the log
+     */
+    AssetCopier(Mode mode, boolean compareContent, Log log) {
+        this.mode = mode;
+        this.compareContent = compareContent;
+        this.log = log;
+    }
+
+    /**
+     * Copy or link a file unless the target is up to date.
+     *
+     * @param source the file to copy
+     * @param target the copy
+     * @return <code>false</code> if the target was up to date
+     * @throws IOException Unable to copy file
+     */
+    boolean copy(Path source, Path target) throws IOException {
+        source = source.toAbsolutePath();
+        Files.createDirectories(target.getParent());
+        boolean written;
+        switch (mode) {
+            case SYMLINK:
+                written = symlink(source, target);
+                break;
+            case HARDLINK:
+                written = hardlink(source, target);
+                break;
+            default:
+                written = copyFile(source, target);
+        }
+        if (written) {
+            copied++;
+            copiedBytes += Files.size(source);
+        } else {
+            upToDate++;
+        }
+        return written;
+    }
+
+    int getCopied() {
+        return copied;
+    }
+
+    int getUpToDate() {
+        return upToDate;
+    }
+
+    /**
+     * @return the size of the files copied or linked
+     */
+    long getCopiedBytes() {
+        return copiedBytes;
+    }
+
+    private boolean symlink(Path source, Path target) throws IOException {
+        if (Files.isSymbolicLink(target)) {
+            if (Files.readSymbolicLink(target).equals(source)) {
+                return false;
+            }
+            Files.delete(target);
+        } else {
+            Files.deleteIfExists(target);
+        }
+        try {
+            Files.createSymbolicLink(target, source);
+            return true;
+        } catch (UnsupportedOperationException | IOException e) {
+            fallBackToCopy("symbolic links", e);
+            return copyFile(source, target);
+        }
+    }
+
+    private boolean hardlink(Path source, Path target) throws IOException {
+        if (Files.exists(target, LinkOption.NOFOLLOW_LINKS)) {
+            if (!Files.isSymbolicLink(target) && Files.isSameFile(source, target)) {
+                return false;
+            }
+            Files.delete(target);
+        }
+        try {
+            Files.createLink(target, source);
+            return true;
+        } catch (UnsupportedOperationException | IOException e) {
+            fallBackToCopy("hard links", e);
+            return copyFile(source, target);
+        }
+    }
+
+    private boolean copyFile(Path source, Path target) throws IOException {
+        if (Files.exists(target, LinkOption.NOFOLLOW_LINKS)) {
+            // writing through a link left by another copy mode would overwrite the source
+            if (Files.isSymbolicLink(target) || Files.isSameFile(source, target)) {
+                Files.delete(target);
+            } else if (isUpToDate(source, target)) {
+                return false;
+            }
+        }
+        Files.copy(source, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES);
+        return true;
+    }
+
+    private boolean isUpToDate(Path source, Path target) throws IOException {
+        BasicFileAttributes sourceAttributes = Files.readAttributes(source, BasicFileAttributes.class);
+        BasicFileAttributes targetAttributes = Files.readAttributes(target, BasicFileAttributes.class);
+        if (sourceAttributes.size() != targetAttributes.size()) {
+            return false;
+        }
+        if (compareContent) {
+            return FileUtils.contentEquals(source.toFile(), target.toFile());
+        }
+        return sourceAttributes.lastModifiedTime().toMillis() == targetAttributes.lastModifiedTime().toMillis();
+    }
+
+    private void fallBackToCopy(String links, Exception e) {
+        log.warn("Unable to create " + links + " (" + e + "), copying the files instead.");
+        mode = Mode.COPY;
+    }
+}
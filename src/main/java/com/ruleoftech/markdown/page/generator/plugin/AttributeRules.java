@@ -0,0 +1,312 @@
+package com.ruleoftech.markdown.page.generator.plugin;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.vladsch.flexmark.html.renderer.AttributablePart;
+import com.vladsch.flexmark.util.ast.Node;
+import com.vladsch.flexmark.util.html.MutableAttributes;
+import com.vladsch.flexmark.util.misc.Extension;
+
+/**
+ * The <code>attributes</code> configuration compiled for rendering. Each rule has a selector of the form
+ * <code>NodeClass[property=value]:PART</code>, where the property test and the part are optional:
+ * <ul>
+ * <li><code>NodeClass</code> is the simple class name of the node, for example <code>Heading</code>;</li>
+ * <li><code>[property=value]</code> matches the nodes whose <code>getProperty()</code> or
+ * <code>isProperty()</code> returns the value, for example <code>Heading[level=2]</code>;</li>
+ * <li><code>:PART</code> only applies the attributes to that part of the node, for example <code>Link:LINK</code>
+ * for the anchor of a link. Without a part the attributes apply to every part.</li>
+ * </ul>
+ * A selector with a property is resolved when it is added: the node class is looked up in the core flexmark
+ * packages and the packages of the extensions, and the property getter is bound once, so an unknown class or
+ * property fails the configuration instead of the rendering. The configured value is converted to the type of the
+ * property up front and compared without converting the property of every node to a string. A selector without a
+ * property only names the class, nodes of an unknown class never match it.
+ * <p>
+ * The rules of a node class are looked up once per class. Nodes of classes without rules are skipped without
+ * comparing any names. When several rules match, they are applied in configuration order.
+ */
+final class AttributeRules {
+
+    private static final Pattern SELECTOR = Pattern.compile("([\\w$]+)(?:\\[(\\w+)=([^\\]]*)\\])?(?::(\\w+))?");
+    private static final Rule[] NONE = new Rule[0];
+    private static final String[] CORE_PACKAGES = {"com.vladsch.flexmark.ast", "com.vladsch.flexmark.util.ast"};
+
+    private final Set<String> packages = new LinkedHashSet<>();
+    private final List<Rule> rules = new ArrayList<>();
+
+    private final ClassValue<Rule[]> rulesByClass = new ClassValue<Rule[]>() {
+        @Override
+        protected Rule[] computeValue(Class<?> type) {
+            List<Rule> matching = new ArrayList<>();
+            for (Rule rule : rules) {
+                if (rule.nodeClass.equals(type.getSimpleName())) {
+                    try {
+                        Rule bound = rule.forClass(type);
+                        if (bound != null) {
+                            matching.add(bound);
+                        }
+                    } catch (IllegalArgumentException e) {
+                        // another node class with the same simple name, its property has another type
+                    }
+                }
+            }
+            return matching.isEmpty() ? NONE : matching.toArray(NONE);
+        }
+    };
+
+    /**
+     * @param extensions the extensions of the parser, the node classes of a selector are also looked up in their
+     *                   packages
+     */
+    AttributeRules(List<? extends Extension> extensions) {
+        for (String corePackage : CORE_PACKAGES) {
+            packages.add(corePackage);
+        }
+        for (Extension extension : extensions) {
+            packages.add(extension.getClass().getPackage().getName());
+        }
+    }
+
+    /**
+     * @param selector   <code>NodeClass[property=value]:PART</code>
+     * @param attributes the attributes to set on the matching nodes
+     * @throws IllegalArgumentException Invalid selector, or for a selector with a property: the node class or the
+     *                                  property does not exist, or the value can not be one of the property
+     */
+    void add(String selector, MutableAttributes attributes) {
+        Matcher matcher = SELECTOR.matcher(selector.trim());
+        if (!matcher.matches()) {
+            throw new IllegalArgumentException("Invalid attribute selector: " + selector
+                    + ", expected NodeClass, NodeClass[property=value] or NodeClass:PART");
+        }
+        String nodeClass = matcher.group(1);
+        String part = matcher.group(4);
+        Rule rule = new Rule(nodeClass, matcher.group(2), matcher.group(3),
+                part != null ? part.toUpperCase(Locale.ROOT) : null, attributes, null, null);
+        if (rule.property != null) {
+            Class<?> type = findNodeClass(nodeClass);
+            if (type == null) {
+                throw new IllegalArgumentException("Invalid attribute selector: " + selector + ", no node class "
+                        + nodeClass + " in the packages " + packages);
+            }
+            try {
+                rule = rule.forClass(type);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Invalid attribute selector: " + selector + ", " + e.getMessage());
+            }
+            if (rule == null) {
+                throw new IllegalArgumentException("Invalid attribute selector: " + nodeClass + " has no property "
+                        + matcher.group(2));
+            }
+        }
+        rules.add(rule);
+    }
+
+    boolean isEmpty() {
+        return rules.isEmpty();
+    }
+
+    /**
+     * @return the attributes of the selectors with neither a property nor a part by simple class name, the rules as
+     * {@link AttributesExtension#ATTRIBUTE_MAP} had them
+     */
+    Map<String, MutableAttributes> toAttributeMap() {
+        Map<String, MutableAttributes> attributeMap = new LinkedHashMap<>();
+        for (Rule rule : rules) {
+            if (rule.property == null && rule.part == null) {
+                MutableAttributes merged = attributeMap.get(rule.nodeClass);
+                if (merged == null) {
+                    merged = new MutableAttributes();
+                    attributeMap.put(rule.nodeClass, merged);
+                }
+                merged.replaceValues(rule.attributes);
+            }
+        }
+        return attributeMap;
+    }
+
+    /**
+     * Set the attributes of the rules matching the node and part.
+     */
+    void apply(Node node, AttributablePart part, MutableAttributes attributes) {
+        for (Rule rule : rulesByClass.get(node.getClass())) {
+            if ((rule.part == null || rule.part.equals(part.getName())) && rule.matches(node)) {
+                attributes.replaceValues(rule.attributes);
+            }
+        }
+    }
+
+    /**
+     * @return the node class with the simple name, or <code>null</code>
+     */
+    private Class<?> findNodeClass(String simpleName) {
+        for (String candidatePackage : packages) {
+            try {
+                Class<?> type = Class.forName(candidatePackage + "." + simpleName, false,
+                        AttributeRules.class.getClassLoader());
+                if (Node.class.isAssignableFrom(type)) {
+                    return type;
+                }
+            } catch (ClassNotFoundException e) {
+                // try the next package
+            }
+        }
+        return null;
+    }
+
+    private static final class Rule {
+        final String nodeClass;
+        final String property;
+        final String value;
+        final String part;
+        final MutableAttributes attributes;
+        final Class<?> type;
+        final Property getter;
+
+        Rule(String nodeClass, String property, String value, String part, MutableAttributes attributes,
+                Class<?> type, Property getter) {
+            this.nodeClass = nodeClass;
+            this.property = property;
+            this.value = value;
+            this.part = part;
+            this.attributes = attributes;
+            this.type = type;
+            this.getter = getter;
+        }
+
+        /**
+         * @return the rule with the getter of its property bound for the node class, <code>null</code> if the class
+         * has no such property
+         * @throws IllegalArgumentException The value can not be one of the property
+         */
+        Rule forClass(Class<?> nodeType) {
+            if (property == null || type != null && type.isAssignableFrom(nodeType)) {
+                return this;
+            }
+            String capitalized = Character.toUpperCase(property.charAt(0)) + property.substring(1);
+            for (String name : new String[]{"get" + capitalized, "is" + capitalized, property}) {
+                try {
+                    Method method = nodeType.getMethod(name);
+                    if (method.getReturnType() != void.class) {
+                        return new Rule(nodeClass, property, value, part, attributes, nodeType,
+                                Property.of(method, value));
+                    }
+                } catch (NoSuchMethodException e) {
+                    // try the next name
+                } catch (IllegalAccessException e) {
+                    return null;
+                }
+            }
+            return null;
+        }
+
+        boolean matches(Node node) {
+            if (getter == null) {
+                return true;
+            }
+            try {
+                return getter.matches(node);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new IllegalStateException("Unable to read property " + property + " of " + nodeClass, e);
+            }
+        }
+    }
+
+    /**
+     * A property getter bound to a method handle, compared with the configured value converted to the type of the
+     * property.
+     */
+    private abstract static class Property {
+        final MethodHandle getter;
+
+        Property(MethodHandle getter) {
+            this.getter = getter;
+        }
+
+        abstract boolean matches(Node node) throws Throwable;
+
+        /**
+         * @throws IllegalArgumentException The value can not be one of the property
+         */
+        static Property of(Method method, String value) throws IllegalAccessException {
+            MethodHandle handle = MethodHandles.publicLookup().unreflect(method);
+            Class<?> type = method.getReturnType();
+            if (type == int.class || type == long.class || type == short.class || type == byte.class) {
+                final long expected;
+                try {
+                    expected = Long.parseLong(value.trim());
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException(method.getName() + "() returns a number, not " + value);
+                }
+                return new Property(handle.asType(MethodType.methodType(long.class, Node.class))) {
+                    @Override
+                    boolean matches(Node node) throws Throwable {
+                        return (long) getter.invokeExact(node) == expected;
+                    }
+                };
+            } else if (type == boolean.class) {
+                if (!value.trim().equalsIgnoreCase("true") && !value.trim().equalsIgnoreCase("false")) {
+                    throw new IllegalArgumentException(method.getName() + "() returns true or false, not " + value);
+                }
+                final boolean expected = Boolean.parseBoolean(value.trim());
+                return new Property(handle.asType(MethodType.methodType(boolean.class, Node.class))) {
+                    @Override
+                    boolean matches(Node node) throws Throwable {
+                        return (boolean) getter.invokeExact(node) == expected;
+                    }
+                };
+            } else if (CharSequence.class.isAssignableFrom(type)) {
+                final String expected = value;
+                return new Property(handle.asType(MethodType.methodType(CharSequence.class, Node.class))) {
+                    @Override
+                    boolean matches(Node node) throws Throwable {
+                        CharSequence actual = (CharSequence) getter.invokeExact(node);
+                        return actual != null ? expected.contentEquals(actual) : expected.equals("null");
+                    }
+                };
+            } else if (type.isEnum()) {
+                Object constant = null;
+                List<String> names = new ArrayList<>();
+                for (Object candidate : type.getEnumConstants()) {
+                    names.add(((Enum<?>) candidate).name());
+                    if (((Enum<?>) candidate).name().equals(value)) {
+                        constant = candidate;
+                    }
+                }
+                if (constant == null) {
+                    throw new IllegalArgumentException(method.getName() + "() returns one of " + names + ", not "
+                            + value);
+                }
+                final Object expected = constant;
+                return new Property(handle.asType(MethodType.methodType(Object.class, Node.class))) {
+                    @Override
+                    boolean matches(Node node) throws Throwable {
+                        return (Object) getter.invokeExact(node) == expected;
+                    }
+                };
+            }
+            final String expected = value;
+            return new Property(handle.asType(MethodType.methodType(Object.class, Node.class))) {
+                @Override
+                boolean matches(Node node) throws Throwable {
+                    return expected.equals(String.valueOf((Object) getter.invokeExact(node)));
+                }
+            };
+        }
+    }
+}
@@ -9,7 +9,16 @@ import com.vladsch.flexmark.util.data.MutableDataHolder;
 import java.util.Map;
 
 public class AttributesExtension implements HtmlRenderer.HtmlRendererExtension {
+    /**
+     * The attributes of the selectors with only a node class, by simple class name. Still set next to the rules for
+     * code reading it, and applied if it is set without the rules.
+     *
+     * @deprecated the <code>attributes</code> selectors with a property or a part are not in the map, the plugin
+     * renders with its compiled rules
+     */
+    @Deprecated
     final static public DataKey<Map<String, MutableAttributes>> ATTRIBUTE_MAP = new DataKey<>("ATTRIBUTE_MAP", (Map<String, MutableAttributes>) null);
+    final static DataKey<AttributeRules> ATTRIBUTE_RULES = new DataKey<>("ATTRIBUTE_RULES", (AttributeRules) null);
 
     @Override
     public void rendererOptions(final MutableDataHolder options) {
@@ -0,0 +1,301 @@
+package com.ruleoftech.markdown.page.generator.plugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.io.FileUtils;
+
+/**
+ * Content-hash manifest of the generated files, used for incremental builds.
+ * <p>
+ * Every generated file is stored with a hash of all the inputs it was generated from. A file whose inputs hash to
+ * the same value as in the previous build does not need to be generated again. Only the entries below the output
+ * directory of the current execution are owned by it, other entries are kept as they are so that several executions
+ * can share the same manifest.
+ * <p>
+ * The heading ids, links and headings of the generated pages are stored as well, so that the links of a build can be
+ * validated and the navigation written without parsing the pages that are up to date again. So are the files
+ * generated for each page and the sidecars of the copied files, so that the files a build no longer generates are
+ * removed whatever the configuration they were generated with.
+ */
+class BuildManifest {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    private static final String IDS = "ids:";
+    private static final String LINKS = "links:";
+    private static final String NAVIGATION = "toc:";
+    private static final String FILES = "files:";
+    private static final String COPIED = "copied:";
+    private static final String[] PAGE_PREFIXES = {IDS, LINKS, NAVIGATION};
+    private static final String[] PREFIXES = {IDS, LINKS, NAVIGATION, FILES, COPIED};
+
+    private final File manifestFile;
+    private final String outputRoot;
+    private final byte[] configurationFingerprint;
+    private final Properties previous = new Properties();
+    private final Map<String, String> current = new ConcurrentHashMap<>();
+
+    private BuildManifest(File manifestFile, File outputDirectory, String configurationFingerprint) {
+        this.manifestFile = manifestFile;
+        this.outputRoot = outputDirectory.getAbsolutePath() + File.separator;
+        this.configurationFingerprint = configurationFingerprint.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Load the manifest of the previous build. A missing manifest is treated as empty.
+     *
+     * @param manifestFile             the manifest file
+     * @param outputDirectory          output directory of the current execution
+     * @param configurationFingerprint everything besides the source itself that affects the generated files
+     * @return the manifest
+     * @throws IOException Unable to read the manifest
+     */
+    static BuildManifest load(File manifestFile, File outputDirectory, String configurationFingerprint) throws IOException {
+        BuildManifest manifest = new BuildManifest(manifestFile, outputDirectory, configurationFingerprint);
+        if (manifestFile.isFile()) {
+            try (InputStream in = Files.newInputStream(manifestFile.toPath())) {
+                manifest.previous.load(in);
+            }
+        }
+        return manifest;
+    }
+
+    /**
+     * Hash the source of a generated file together with the configuration fingerprint.
+     *
+     * @param source the source bytes
+     * @return hex encoded hash
+     */
+    String hash(byte[] source) {
+        MessageDigest digest = newDigest();
+        digest.update(configurationFingerprint);
+        digest.update((byte) 0);
+        digest.update(source);
+        return toHex(digest.digest());
+    }
+
+    /**
+     * Hash of a source that is not read into a byte array, the position of the buffer is not changed.
+     *
+     * @param source the content of the markdown file
+     * @return hash of the configuration and the source
+     */
+    String hash(ByteBuffer source) {
+        MessageDigest digest = newDigest();
+        digest.update(configurationFingerprint);
+        digest.update((byte) 0);
+        digest.update(source.duplicate());
+        return toHex(digest.digest());
+    }
+
+    /**
+     * Check whether the output file was generated from inputs with the given hash and the generated files still
+     * exist. An up to date file is recorded in the manifest of this build with the given generated files, the ones
+     * it was generated with that are missing from them are stale.
+     *
+     * @param outputFile     the page the hash was recorded for
+     * @param hash           hash of the inputs
+     * @param generatedFiles the files generated from the inputs, which may or may not include the page itself
+     * @return <code>true</code> if the files do not need to be generated again
+     */
+    boolean isUpToDate(File outputFile, String hash, List<File> generatedFiles) {
+        String key = outputFile.getAbsolutePath();
+        if (hash.equals(previous.getProperty(key)) && exist(generatedFiles)) {
+            current.put(key, hash);
+            for (String prefix : PAGE_PREFIXES) {
+                String value = previous.getProperty(prefix + key);
+                if (value != null) {
+                    current.put(prefix + key, value);
+                }
+            }
+            current.put(FILES + key, join(generatedFiles));
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Record a generated file.
+     *
+     * @param outputFile     the generated file
+     * @param hash           hash of the inputs
+     * @param generatedFiles all the files generated from the inputs, which may or may not include the file itself
+     */
+    void record(File outputFile, String hash, List<File> generatedFiles) {
+        String key = outputFile.getAbsolutePath();
+        current.put(key, hash);
+        current.put(FILES + key, join(generatedFiles));
+    }
+
+    /**
+     * Record a file copied to the output directory. The file itself is never removed as stale, its sidecars are once
+     * a build no longer writes them.
+     *
+     * @param copiedFile the copied file
+     * @param sidecars   the sidecars written for it, may be empty
+     */
+    void recordCopy(File copiedFile, List<File> sidecars) {
+        current.put(COPIED + copiedFile.getAbsolutePath(), join(sidecars));
+    }
+
+    /**
+     * Record the heading ids and links of a generated page.
+     *
+     * @param outputFile the generated file
+     * @param page       its ids and links
+     */
+    void recordPage(File outputFile, LinkIndex.Page page) {
+        String key = outputFile.getAbsolutePath();
+        String[] encoded = page.encode();
+        current.put(IDS + key, encoded[0]);
+        current.put(LINKS + key, encoded[1]);
+    }
+
+    /**
+     * @param outputFile a file that is up to date
+     * @return the heading ids and links recorded when the page was generated, <code>null</code> if none were
+     */
+    LinkIndex.Page getPage(File outputFile) {
+        String key = outputFile.getAbsolutePath();
+        String links = current.get(LINKS + key);
+        return links != null ? LinkIndex.Page.decode(current.get(IDS + key), links) : null;
+    }
+
+    /**
+     * Record the title and headings of a generated page.
+     *
+     * @param outputFile the generated file
+     * @param page       its title and headings
+     */
+    void recordNavigation(File outputFile, SiteNavigation.Page page) {
+        current.put(NAVIGATION + outputFile.getAbsolutePath(), page.encode());
+    }
+
+    /**
+     * @param outputFile a file that is up to date
+     * @return the title and headings recorded when the page was generated, <code>null</code> if none were
+     */
+    SiteNavigation.Page getNavigation(File outputFile) {
+        String navigation = current.get(NAVIGATION + outputFile.getAbsolutePath());
+        return navigation != null ? SiteNavigation.Page.decode(navigation) : null;
+    }
+
+    /**
+     * The files generated by a previous build of this execution that this build did not generate, because their
+     * source no longer exists or the configuration changed, and the sidecars of the copied files that this build
+     * did not write. An entry of a manifest that recorded no files only names the file itself.
+     *
+     * @return the files to remove
+     */
+    List<File> getStaleOutputs() {
+        Set<String> generated = new HashSet<>();
+        for (Map.Entry<String, String> entry : current.entrySet()) {
+            if (entry.getKey().startsWith(FILES)) {
+                Collections.addAll(generated, split(entry.getValue()));
+            } else if (entry.getKey().startsWith(COPIED)) {
+                generated.add(entry.getKey().substring(COPIED.length()));
+                Collections.addAll(generated, split(entry.getValue()));
+            } else if (entry.getKey().startsWith(outputRoot)) {
+                generated.add(entry.getKey());
+            }
+        }
+        Set<String> stale = new TreeSet<>();
+        for (String key : previous.stringPropertyNames()) {
+            if (key.startsWith(FILES) && key.startsWith(outputRoot, FILES.length())
+                    || key.startsWith(COPIED) && key.startsWith(outputRoot, COPIED.length())) {
+                Collections.addAll(stale, split(previous.getProperty(key)));
+            } else if (key.startsWith(outputRoot) && !previous.containsKey(FILES + key)) {
+                stale.add(key);
+            }
+        }
+        stale.removeAll(generated);
+        List<File> files = new ArrayList<>();
+        for (String file : stale) {
+            files.add(new File(file));
+        }
+        return files;
+    }
+
+    private static String join(List<File> files) {
+        StringBuilder lines = new StringBuilder();
+        for (File file : files) {
+            lines.append(lines.length() > 0 ? "\n" : "").append(file.getAbsolutePath());
+        }
+        return lines.toString();
+    }
+
+    private static String[] split(String lines) {
+        return lines.isEmpty() ? new String[0] : lines.split("\n");
+    }
+
+    /**
+     * Write the manifest of this build.
+     *
+     * @throws IOException Unable to write the manifest
+     */
+    void save() throws IOException {
+        Properties properties = new Properties();
+        for (String key : previous.stringPropertyNames()) {
+            if (!isOwned(key)) {
+                properties.setProperty(key, previous.getProperty(key));
+            }
+        }
+        properties.putAll(current);
+
+        FileUtils.forceMkdirParent(manifestFile);
+        try (OutputStream out = Files.newOutputStream(manifestFile.toPath())) {
+            properties.store(out, "markdown-page-generator-plugin incremental build manifest");
+        }
+    }
+
+    private boolean isOwned(String key) {
+        for (String prefix : PREFIXES) {
+            if (key.startsWith(prefix)) {
+                return key.startsWith(outputRoot, prefix.length());
+            }
+        }
+        return key.startsWith(outputRoot);
+    }
+
+    private static boolean exist(List<File> files) {
+        for (File file : files) {
+            if (!file.isFile()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not supported", e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[i * 2] = HEX[(bytes[i] >> 4) & 0xf];
+            chars[i * 2 + 1] = HEX[bytes[i] & 0xf];
+        }
+        return new String(chars);
+    }
+}
@@ -0,0 +1,149 @@
+package com.ruleoftech.markdown.page.generator.plugin;
+
+import java.io.IOException;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystemLoopException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Resolves the <code>copyDirectories</code> globs to the directories whose files are copied.
+ * <p>
+ * A directory is selected if its path relative to the input directory matches one of the globs and it contains at
+ * least one file. The input tree is walked once for all globs. Each glob is compiled once, and subtrees that none of
+ * the globs can match are skipped.
+ */
+final class CopyDirectoryResolver {
+
+    private final List<Glob> globs = new ArrayList<>();
+
+    /**
+     * @param fileSystem file system of the input directory
+     * @param patterns   comma separated globs relative to the input directory
+     */
+    CopyDirectoryResolver(FileSystem fileSystem, String patterns) {
+        for (String pattern : patterns.split(",")) {
+            pattern = pattern.trim();
+            if (!pattern.isEmpty()) {
+                globs.add(new Glob(fileSystem, pattern));
+            }
+        }
+    }
+
+    /**
+     * Walk the input directory and collect the matching directories.
+     *
+     * @param inputDirectory the input directory
+     * @return absolute paths of the matching directories in the order they were found
+     * @throws IOException Unable to walk the input directory
+     */
+    Set<Path> resolve(Path inputDirectory) throws IOException {
+        if (globs.isEmpty() || !Files.isDirectory(inputDirectory)) {
+            return Collections.emptySet();
+        }
+        final Path root = inputDirectory.toAbsolutePath();
+        final Set<Path> directories = new LinkedHashSet<>();
+        Files.walkFileTree(root, EnumSet.of(FileVisitOption.FOLLOW_LINKS), Integer.MAX_VALUE, new SimpleFileVisitor<Path>() {
+
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                if (dir.equals(root)) {
+                    return FileVisitResult.CONTINUE;
+                }
+                Path relativePath = root.relativize(dir);
+                for (Glob glob : globs) {
+                    if (glob.mayMatchWithin(relativePath)) {
+                        return FileVisitResult.CONTINUE;
+                    }
+                }
+                return FileVisitResult.SKIP_SUBTREE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                Path dir = file.getParent();
+                if (!attrs.isDirectory() && !dir.equals(root) && !directories.contains(dir)) {
+                    Path relativePath = root.relativize(dir);
+                    for (Glob glob : globs) {
+                        if (glob.matcher.matches(relativePath)) {
+                            directories.add(dir);
+                            break;
+                        }
+                    }
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) throws IOException {
+                if (e instanceof FileSystemLoopException) {
+                    return FileVisitResult.CONTINUE;
+                }
+                throw e;
+            }
+        });
+        return directories;
+    }
+
+    /**
+     * A compiled glob with the literal directories it starts with and the deepest directory it can match.
+     */
+    private static final class Glob {
+
+        private final PathMatcher matcher;
+        private final Path literalPrefix;
+        private final int maxDepth;
+
+        Glob(FileSystem fileSystem, String pattern) {
+            matcher = fileSystem.getPathMatcher("glob:" + pattern);
+
+            String[] segments = pattern.split("/");
+            StringBuilder prefix = new StringBuilder();
+            for (String segment : segments) {
+                if (segment.isEmpty() || hasWildcard(segment)) {
+                    break;
+                }
+                prefix.append(prefix.length() > 0 ? "/" : "").append(segment);
+            }
+            literalPrefix = prefix.length() > 0 ? fileSystem.getPath(prefix.toString()) : null;
+            // braces may contain separators and ** crosses them, so the depth is only known without both
+            maxDepth = pattern.contains("**") || pattern.contains("{") ? Integer.MAX_VALUE : segments.length;
+        }
+
+        /**
+         * @return whether the directory or one of its sub directories may match
+         */
+        boolean mayMatchWithin(Path relativePath) {
+            if (relativePath.getNameCount() > maxDepth) {
+                return false;
+            }
+            return literalPrefix == null || literalPrefix.startsWith(relativePath) || relativePath.startsWith(literalPrefix);
+        }
+
+        private static boolean hasWildcard(String segment) {
+            for (int i = 0; i < segment.length(); i++) {
+                switch (segment.charAt(i)) {
+                    case '*':
+                    case '?':
+                    case '[':
+                    case '{':
+                    case '\\':
+                        return true;
+                    default:
+                }
+            }
+            return false;
+        }
+    }
+}
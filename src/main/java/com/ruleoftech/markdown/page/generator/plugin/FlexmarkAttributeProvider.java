@@ -12,16 +12,24 @@ import java.util.Map;
 
 public class FlexmarkAttributeProvider implements AttributeProvider {
 
+    /**
+     * @deprecated only applied if the options have no {@link AttributesExtension#ATTRIBUTE_RULES}
+     */
+    @Deprecated
     final protected Map<String, MutableAttributes> attributeMap;
+    final AttributeRules attributeRules;
 
     public FlexmarkAttributeProvider(LinkResolverContext context) {
         DataHolder options = context.getOptions();
         attributeMap = options.get(AttributesExtension.ATTRIBUTE_MAP);
+        attributeRules = options.get(AttributesExtension.ATTRIBUTE_RULES);
     }
 
     @Override
     public void setAttributes(Node node, AttributablePart part, MutableAttributes attributes) {
-        if (attributeMap != null) {
+        if (attributeRules != null) {
+            attributeRules.apply(node, part, attributes);
+        } else if (attributeMap != null) {
             MutableAttributes attributes1 = attributeMap.get(node.getClass().getSimpleName());
             if (attributes1 != null) {
                 attributes.replaceValues(attributes1);
@@ -0,0 +1,95 @@
+package com.ruleoftech.markdown.page.generator.plugin;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.vladsch.flexmark.html.HtmlRenderer;
+import com.vladsch.flexmark.parser.Parser;
+
+/**
+ * Parsers and renderers shared by the executions running in the same JVM, for example the modules of a reactor
+ * build or the builds of a Maven daemon, keyed by the fingerprint of the options they were built with.
+ * <p>
+ * Flexmark parsers and renderers are immutable once built, so one instance can render the pages of several
+ * executions at the same time. The least recently used entry is dropped when the cache is full.
+ */
+final class FlexmarkCache {
+
+    static final int MAX_ENTRIES = 32;
+
+    private static final Map<String, Holder> CACHE = new LinkedHashMap<String, Holder>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Holder> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    private FlexmarkCache() {
+    }
+
+    /**
+     * Builds the parser and renderer on a cache miss.
+     */
+    interface Factory {
+        Flexmark build();
+    }
+
+    /**
+     * @param fingerprint canonical description of every option the parser and renderer are built from
+     * @param factory     builds them if they are not cached
+     * @return the cached or newly built parser and renderer
+     */
+    static Flexmark get(String fingerprint, Factory factory) {
+        Holder holder;
+        synchronized (CACHE) {
+            holder = CACHE.get(fingerprint);
+            if (holder == null) {
+                holder = new Holder();
+                CACHE.put(fingerprint, holder);
+            }
+        }
+        // built outside the cache lock, so that executions with other options do not wait for this one
+        return holder.get(factory);
+    }
+
+    static int size() {
+        synchronized (CACHE) {
+            return CACHE.size();
+        }
+    }
+
+    static void clear() {
+        synchronized (CACHE) {
+            CACHE.clear();
+        }
+    }
+
+    private static final class Holder {
+        private Flexmark flexmark;
+
+        synchronized Flexmark get(Factory factory) {
+            if (flexmark == null) {
+                flexmark = factory.build();
+            }
+            return flexmark;
+        }
+    }
+
+    /**
+     * A parser and the renderer built from the same options.
+     */
+    static final class Flexmark {
+        final Parser parser;
+        final HtmlRenderer renderer;
+        /**
+         * Whether the renderer gives the headings their ids.
+         */
+        final boolean headerIds;
+
+        Flexmark(Parser parser, HtmlRenderer renderer, boolean headerIds) {
+            this.parser = parser;
+            this.renderer = renderer;
+            this.headerIds = headerIds;
+        }
+    }
+}
@@ -6,41 +6,68 @@ import com.vladsch.flexmark.html.IndependentLinkResolverFactory;
 import com.vladsch.flexmark.html.LinkResolver;
 import com.vladsch.flexmark.html.LinkResolverFactory;
 import com.vladsch.flexmark.html.renderer.*;
-import com.vladsch.flexmark.util.data.DataHolder;
 
 import java.util.HashSet;
 import java.util.Set;
 
+/**
+ * Rewrites the relative links to markdown files to the generated html files, <code>page.md?q#part</code> to
+ * <code>page.html?q#part</code>. Links with a scheme, like <code>https:</code> or <code>mailto:</code>, and
+ * protocol relative links are left as they are.
+ */
 public class FlexmarkLinkResolver implements LinkResolver {
-    final String[] inputFileExtensions;
+    private static final String HTML = "html";
+
+    final String[] inputFileSuffixes;
 
     public FlexmarkLinkResolver(LinkResolverBasicContext context) {
-        DataHolder options = context.getOptions();
-        this.inputFileExtensions = options.get(PageGeneratorExtension.INPUT_FILE_EXTENSIONS).trim().split("\\s*,\\s*");
+        this.inputFileSuffixes = PageGeneratorExtension.INPUT_FILE_SUFFIXES.get(context.getOptions());
     }
 
     @Override
     public ResolvedLink resolveLink(Node node, LinkResolverBasicContext context, ResolvedLink link) {
-        ResolvedLink result = link;
-
-        for (String inputFileExtension : inputFileExtensions) {
-            if (link.getLinkType() == LinkType.LINK) {
-                String url = link.getUrl();
-                if (!url.startsWith("http://") && !url.startsWith("https://")) {
-                    if (url.endsWith("." + inputFileExtension)) {
-                        url = url.substring(0, url.length() - inputFileExtension.length()) + "html";
-                        result = result.withStatus(LinkStatus.VALID).withUrl(url);
-                        return result;
-                    } else if (url.contains("." + inputFileExtension + "#")) {
-                        url = url.replace("." + inputFileExtension + "#", ".html#");
-                        result = result.withStatus(LinkStatus.VALID).withUrl(url);
-                        return result;
-                    }
-                }
+        if (link.getLinkType() != LinkType.LINK) {
+            return link;
+        }
+        String url = link.getUrl();
+        int pathEnd = getPathEnd(url);
+        if (pathEnd < 0) {
+            return link;
+        }
+
+        for (String suffix : inputFileSuffixes) {
+            int suffixStart = pathEnd - suffix.length();
+            // the file name must not be empty, ./.md is not a markdown page
+            if (suffixStart > 0 && url.charAt(suffixStart - 1) != '/'
+                    && url.regionMatches(suffixStart, suffix, 0, suffix.length())) {
+                StringBuilder rewritten = new StringBuilder(suffixStart + 1 + HTML.length() + url.length() - pathEnd);
+                rewritten.append(url, 0, suffixStart + 1).append(HTML).append(url, pathEnd, url.length());
+                return link.withStatus(LinkStatus.VALID).withUrl(rewritten.toString());
             }
         }
+        return link;
+    }
 
-        return result;
+    /**
+     * @return the index of the query or fragment of a relative url or its length, <code>-1</code> if the url has a
+     * scheme or is protocol relative
+     */
+    private static int getPathEnd(String url) {
+        if (url.startsWith("//")) {
+            return -1;
+        }
+        boolean inPath = false;
+        for (int i = 0; i < url.length(); i++) {
+            char c = url.charAt(i);
+            if (c == '?' || c == '#') {
+                return i;
+            } else if (c == '/') {
+                inPath = true;
+            } else if (c == ':' && !inPath) {
+                return -1;
+            }
+        }
+        return url.length();
     }
 
     public static class Factory extends IndependentLinkResolverFactory {
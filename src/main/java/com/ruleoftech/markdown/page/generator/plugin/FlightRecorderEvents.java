@@ -0,0 +1,130 @@
+package com.ruleoftech.markdown.page.generator.plugin;
+
+import java.io.File;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * The Flight Recorder event types of the {@link GenerationEvent.Stage}s. Only loaded when the runtime has Flight
+ * Recorder.
+ */
+final class FlightRecorderEvents {
+
+    private FlightRecorderEvents() {
+    }
+
+    static GenerationEvent begin(GenerationEvent.Stage stage) {
+        StageEvent event = create(stage);
+        if (!event.isEnabled()) {
+            return GenerationEvent.NONE;
+        }
+        event.begin();
+        return new Recording(event);
+    }
+
+    private static StageEvent create(GenerationEvent.Stage stage) {
+        switch (stage) {
+            case DISCOVERY:
+                return new Discovery();
+            case FILTERING:
+                return new Filtering();
+            case PARSE:
+                return new Parse();
+            case RENDER:
+                return new Render();
+            case TEMPLATE:
+                return new Template();
+            case WRITE:
+                return new Write();
+            default:
+                return new Copy();
+        }
+    }
+
+    private static final class Recording extends GenerationEvent {
+        private final StageEvent event;
+
+        Recording(StageEvent event) {
+            this.event = event;
+        }
+
+        @Override
+        boolean isRecording() {
+            return true;
+        }
+
+        @Override
+        void end(File file, long size, int folderDepth) {
+            event.end();
+            if (event.shouldCommit()) {
+                event.path = file.getPath();
+                event.size = size;
+                event.folderDepth = folderDepth;
+                event.commit();
+            }
+        }
+    }
+
+    @Category("Markdown Page Generator")
+    @StackTrace(false)
+    abstract static class StageEvent extends Event {
+        @Label("Path")
+        String path;
+
+        @Label("Size")
+        @DataAmount
+        long size;
+
+        @Label("Folder Depth")
+        @Description("Depth of the file below the input directory")
+        int folderDepth;
+    }
+
+    @Name("com.ruleoftech.markdown.Discovery")
+    @Label("Markdown Discovery")
+    @Description("Listing the markdown files of the input directory")
+    static final class Discovery extends StageEvent {
+    }
+
+    @Name("com.ruleoftech.markdown.Filtering")
+    @Label("Markdown Filtering")
+    @Description("Maven property filtering of the input directory or of a markdown file")
+    static final class Filtering extends StageEvent {
+    }
+
+    @Name("com.ruleoftech.markdown.Parse")
+    @Label("Markdown Parse")
+    @Description("Parsing a markdown file")
+    static final class Parse extends StageEvent {
+    }
+
+    @Name("com.ruleoftech.markdown.Render")
+    @Label("Markdown Render")
+    @Description("Rendering a parsed markdown file to html")
+    static final class Render extends StageEvent {
+    }
+
+    @Name("com.ruleoftech.markdown.Template")
+    @Label("Markdown Template Fill")
+    @Description("Writing the header or footer of a page")
+    static final class Template extends StageEvent {
+    }
+
+    @Name("com.ruleoftech.markdown.Write")
+    @Label("Markdown Write")
+    @Description("Writing an html file, including its render and template fill")
+    static final class Write extends StageEvent {
+    }
+
+    @Name("com.ruleoftech.markdown.Copy")
+    @Label("Markdown Asset Copy")
+    @Description("Copying or linking a file of the copied directories")
+    static final class Copy extends StageEvent {
+    }
+}
@@ -0,0 +1,60 @@
+package com.ruleoftech.markdown.page.generator.plugin;
+
+import java.io.File;
+
+/**
+ * Java Flight Recorder event of a stage of the page generation, so that a build recorded with
+ * <code>-XX:StartFlightRecording</code> shows the work of the plugin next to the GC and I/O events.
+ * <p>
+ * Java 8 runtimes without Flight Recorder never load the event classes, and when nothing is being recorded
+ * {@link #begin} returns a shared event that does nothing.
+ */
+abstract class GenerationEvent {
+
+    enum Stage {
+        DISCOVERY, FILTERING, PARSE, RENDER, TEMPLATE, WRITE, COPY
+    }
+
+    static final GenerationEvent NONE = new GenerationEvent() {
+        @Override
+        boolean isRecording() {
+            return false;
+        }
+
+        @Override
+        void end(File file, long size, int folderDepth) {
+        }
+    };
+
+    private static final boolean AVAILABLE = isFlightRecorderAvailable();
+
+    /**
+     * Start timing a stage.
+     */
+    static GenerationEvent begin(Stage stage) {
+        return AVAILABLE ? FlightRecorderEvents.begin(stage) : NONE;
+    }
+
+    /**
+     * @return <code>true</code> if the event is recorded, so its size is worth computing
+     */
+    abstract boolean isRecording();
+
+    /**
+     * End the stage and record it unless it is too short for the recording settings.
+     *
+     * @param file        the file or directory of the stage
+     * @param size        size of the file in bytes, <code>0</code> for directories
+     * @param folderDepth depth of the file below the input directory
+     */
+    abstract void end(File file, long size, int folderDepth);
+
+    private static boolean isFlightRecorderAvailable() {
+        try {
+            Class.forName("jdk.jfr.FlightRecorder", false, GenerationEvent.class.getClassLoader());
+            return true;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package com.ruleoftech.markdown.page.generator.plugin;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Header or footer html compiled into literal chunks and placeholders.
+ * <p>
+ * The template is read and compiled once per execution, so that each page only has to fill in its title, variables,
+ * relative site base and table of contents. Literal chunks are encoded in the output charset when the template is compiled.
+ */
+final class HtmlTemplate {
+
+    static final String TITLE_TOKEN = "titleToken";
+    static final String SITE_BASE_TOKEN = "##SITE_BASE##";
+    static final String TOC_TOKEN = "##TOC##";
+
+    private static final Pattern VARIABLE_DEFINITION = Pattern.compile("\\{\\w*=.*}");
+    private static final Pattern PLACEHOLDER = Pattern.compile("\\$\\{(.+?)\\}|" + Pattern.quote(SITE_BASE_TOKEN) + "|" + Pattern.quote(TOC_TOKEN));
+
+    private static final int LITERAL = 0;
+    private static final int TITLE = 1;
+    private static final int SITE_BASE = 2;
+    private static final int VARIABLE = 3;
+    private static final int TOC = 4;
+
+    static final HtmlTemplate EMPTY = new HtmlTemplate(new int[0], new byte[0][], new String[0], false, null);
+
+    private final int[] kinds;
+    private final byte[][] literals;
+    private final String[] variableNames;
+    private final boolean substituteVariables;
+    private final Charset charset;
+
+    private HtmlTemplate(int[] kinds, byte[][] literals, String[] variableNames, boolean substituteVariables, Charset charset) {
+        this.kinds = kinds;
+        this.literals = literals;
+        this.variableNames = variableNames;
+        this.substituteVariables = substituteVariables;
+        this.charset = charset;
+    }
+
+    /**
+     * Compile a template.
+     *
+     * @param template            the html
+     * @param replaceTitle        replace the first <code>titleToken</code> with the page title
+     * @param substituteVariables remove <code>{key=value}</code> definitions and replace <code>${key}</code> variables
+     * @param charset             the output charset
+     * @return the compiled template
+     */
+    static HtmlTemplate compile(String template, boolean replaceTitle, boolean substituteVariables, Charset charset) {
+        if (substituteVariables) {
+            template = VARIABLE_DEFINITION.matcher(template).replaceAll("");
+        }
+
+        List<Integer> kinds = new ArrayList<>();
+        List<byte[]> literals = new ArrayList<>();
+        List<String> variableNames = new ArrayList<>();
+
+        int titleIndex = replaceTitle ? template.indexOf(TITLE_TOKEN) : -1;
+        int start = 0;
+        Matcher matcher = PLACEHOLDER.matcher(template);
+        while (start < template.length()) {
+            boolean found = matcher.find(start);
+            while (found && matcher.group(1) != null && !substituteVariables) {
+                found = matcher.find(matcher.start() + 1);
+            }
+            int placeholderStart = found ? matcher.start() : template.length();
+
+            if (titleIndex >= start && titleIndex < placeholderStart) {
+                addLiteral(kinds, literals, variableNames, template.substring(start, titleIndex), charset);
+                addSegment(kinds, literals, variableNames, TITLE, null);
+                start = titleIndex + TITLE_TOKEN.length();
+                titleIndex = -1;
+                continue;
+            }
+
+            addLiteral(kinds, literals, variableNames, template.substring(start, placeholderStart), charset);
+            if (!found) {
+                break;
+            }
+            if (matcher.group(1) != null) {
+                addSegment(kinds, literals, variableNames, VARIABLE, matcher.group(1));
+            } else {
+                addSegment(kinds, literals, variableNames, TOC_TOKEN.equals(matcher.group()) ? TOC : SITE_BASE, null);
+            }
+            start = matcher.end();
+        }
+
+        int[] kindArray = new int[kinds.size()];
+        for (int i = 0; i < kindArray.length; i++) {
+            kindArray[i] = kinds.get(i);
+        }
+        return new HtmlTemplate(kindArray, literals.toArray(new byte[0][]), variableNames.toArray(new String[0]),
+                substituteVariables, charset);
+    }
+
+    /**
+     * Fill in the placeholders of the template and write the result.
+     *
+     * @param out       stream to write to
+     * @param title     title of the page, may be <code>null</code>
+     * @param variables variables defined in the page
+     * @param siteBase  relative path from the page to the site base
+     * @param toc       table of contents of the page, may be <code>null</code>
+     * @throws IOException Unable to write
+     */
+    void write(OutputStream out, String title, Map<String, String> variables, String siteBase, String toc) throws IOException {
+        for (int i = 0; i < kinds.length; i++) {
+            switch (kinds[i]) {
+                case LITERAL:
+                    out.write(literals[i]);
+                    break;
+                case TITLE:
+                    if (title != null) {
+                        writeText(out, substituteVariables ? VariableSubstitutor.substitute(title, variables) : title, siteBase);
+                    }
+                    break;
+                case SITE_BASE:
+                    out.write(siteBase.getBytes(charset));
+                    break;
+                case TOC:
+                    if (toc != null) {
+                        out.write(toc.getBytes(charset));
+                    }
+                    break;
+                case VARIABLE:
+                    String name = variableNames[i];
+                    if (variables != null && variables.containsKey(name)) {
+                        String value = variables.get(name);
+                        writeText(out, value != null ? value : "null", siteBase);
+                    } else {
+                        writeText(out, "${" + name + "}", siteBase);
+                    }
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown template segment " + kinds[i]);
+            }
+        }
+    }
+
+    boolean isEmpty() {
+        return kinds.length == 0;
+    }
+
+    /**
+     * @return whether the template includes the table of contents of the page
+     */
+    boolean hasTableOfContents() {
+        for (int kind : kinds) {
+            if (kind == TOC) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Values are substituted before the site base in the header and footer, so a site base token in a value is
+     * replaced as well.
+     */
+    private void writeText(OutputStream out, String text, String siteBase) throws IOException {
+        if (text.contains(SITE_BASE_TOKEN)) {
+            text = text.replace(SITE_BASE_TOKEN, siteBase);
+        }
+        out.write(text.getBytes(charset));
+    }
+
+    private static void addLiteral(List<Integer> kinds, List<byte[]> literals, List<String> variableNames, String literal,
+                                   Charset charset) {
+        if (!literal.isEmpty()) {
+            kinds.add(LITERAL);
+            literals.add(literal.getBytes(charset));
+            variableNames.add(null);
+        }
+    }
+
+    private static void addSegment(List<Integer> kinds, List<byte[]> literals, List<String> variableNames, int kind,
+                                   String variableName) {
+        kinds.add(kind);
+        literals.add(null);
+        variableNames.add(variableName);
+    }
+}
@@ -0,0 +1,131 @@
+package com.ruleoftech.markdown.page.generator.plugin;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Locale;
+
+/**
+ * Minimal streaming JSON writer for the reports and indexes the plugin generates.
+ * <p>
+ * Values are written as they come, separators are added automatically. Objects and arrays are not checked for being
+ * balanced, that is up to the caller.
+ */
+final class JsonWriter implements Closeable {
+
+    private final Writer out;
+    private boolean first = true;
+    private boolean afterName;
+
+    JsonWriter(Writer out) {
+        this.out = out;
+    }
+
+    JsonWriter beginObject() throws IOException {
+        separate();
+        out.write('{');
+        first = true;
+        return this;
+    }
+
+    JsonWriter endObject() throws IOException {
+        out.write('}');
+        first = false;
+        return this;
+    }
+
+    JsonWriter beginArray() throws IOException {
+        separate();
+        out.write('[');
+        first = true;
+        return this;
+    }
+
+    JsonWriter endArray() throws IOException {
+        out.write(']');
+        first = false;
+        return this;
+    }
+
+    JsonWriter name(String name) throws IOException {
+        separate();
+        writeString(name);
+        out.write(':');
+        afterName = true;
+        return this;
+    }
+
+    JsonWriter value(String value) throws IOException {
+        separate();
+        if (value == null) {
+            out.write("null");
+        } else {
+            writeString(value);
+        }
+        return this;
+    }
+
+    JsonWriter value(long value) throws IOException {
+        separate();
+        out.write(Long.toString(value));
+        return this;
+    }
+
+    /**
+     * Decimal numbers are written with three decimals, which is enough for the milliseconds and rates in reports.
+     */
+    JsonWriter value(double value) throws IOException {
+        separate();
+        out.write(Double.isNaN(value) || Double.isInfinite(value) ? "null" : String.format(Locale.ROOT, "%.3f", value));
+        return this;
+    }
+
+    JsonWriter value(boolean value) throws IOException {
+        separate();
+        out.write(value ? "true" : "false");
+        return this;
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+    private void separate() throws IOException {
+        if (afterName) {
+            afterName = false;
+        } else if (!first) {
+            out.write(',');
+        }
+        first = false;
+    }
+
+    private void writeString(String value) throws IOException {
+        out.write('"');
+        int literalStart = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            String escape;
+            if (c == '"') {
+                escape = "\\\"";
+            } else if (c == '\\') {
+                escape = "\\\\";
+            } else if (c == '\n') {
+                escape = "\\n";
+            } else if (c == '\r') {
+                escape = "\\r";
+            } else if (c == '\t') {
+                escape = "\\t";
+            } else if (c < 0x20 || c == '\u2028' || c == '\u2029') {
+                escape = String.format("\\u%04x", (int) c);
+            } else {
+                continue;
+            }
+            out.write(value, literalStart, i - literalStart);
+            out.write(escape);
+            literalStart = i + 1;
+        }
+        out.write(value, literalStart, value.length() - literalStart);
+        out.write('"');
+    }
+}
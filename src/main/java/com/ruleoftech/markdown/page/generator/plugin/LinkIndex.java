@@ -0,0 +1,250 @@
+package com.ruleoftech.markdown.page.generator.plugin;
+
+import java.io.File;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import org.codehaus.plexus.util.StringUtils;
+
+import com.vladsch.flexmark.ast.Link;
+import com.vladsch.flexmark.ast.LinkRef;
+import com.vladsch.flexmark.ast.Reference;
+import com.vladsch.flexmark.html.renderer.HeaderIdGenerator;
+import com.vladsch.flexmark.util.ast.Document;
+import com.vladsch.flexmark.util.ast.Node;
+
+/**
+ * Heading ids and links of the generated pages, used to find the links to pages or anchors that do not exist.
+ * <p>
+ * The links are validated once all the pages are added. Only relative links to markdown or html pages are checked,
+ * against the pages of the same execution: a link to an html file that is not generated but exists in the output
+ * directory, for example a copied one, is valid but its anchors are not checked.
+ */
+final class LinkIndex {
+
+    /**
+     * What to do with broken links.
+     */
+    enum Mode {
+        OFF, WARN, FAIL;
+
+        static Mode parse(String mode) {
+            try {
+                return valueOf(mode.trim().toUpperCase(Locale.ENGLISH));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("No such link validation: " + mode + ", expected off, warn or fail");
+            }
+        }
+    }
+
+    private static final String HTML = ".html";
+
+    private final File outputDirectory;
+    private final String[] inputFileSuffixes;
+    private final String outputFileSuffix;
+    private final boolean rewriteLinks;
+    private final Map<File, Page> pages = new ConcurrentHashMap<>();
+
+    /**
+     * @param inputFileExtensions extensions of the markdown files
+     * @param outputFileExtension extension of the generated files
+     * @param rewriteLinks        whether links to markdown files are rewritten to html files
+     */
+    LinkIndex(File outputDirectory, String[] inputFileExtensions, String outputFileExtension, boolean rewriteLinks) {
+        this.outputDirectory = normalize(outputDirectory);
+        this.inputFileSuffixes = new String[inputFileExtensions.length];
+        for (int i = 0; i < inputFileExtensions.length; i++) {
+            inputFileSuffixes[i] = "." + inputFileExtensions[i];
+        }
+        this.outputFileSuffix = "." + outputFileExtension;
+        this.rewriteLinks = rewriteLinks;
+    }
+
+    /**
+     * @param htmlFile the generated file
+     * @param page     its heading ids and links
+     */
+    void add(File htmlFile, Page page) {
+        pages.put(normalize(htmlFile), page);
+    }
+
+    int size() {
+        return pages.size();
+    }
+
+    /**
+     * Validate the links of all the pages.
+     *
+     * @param threads number of threads validating the pages
+     * @return the broken links, one message per link, sorted by page
+     * @throws InterruptedException Interrupted while waiting for the threads
+     */
+    List<String> validate(int threads) throws InterruptedException {
+        final List<File> files = new ArrayList<>(pages.keySet());
+        Collections.sort(files);
+        final Queue<String> broken = new ConcurrentLinkedQueue<>();
+        ParallelChunks.forEach(files, threads, "md-page-generator-links-", RuntimeException.class,
+                new ParallelChunks.Task<File, RuntimeException>() {
+                    @Override
+                    public void run(File file) {
+                        validate(file, broken);
+                    }
+                });
+
+        List<String> sorted = new ArrayList<>(broken);
+        Collections.sort(sorted);
+        return sorted;
+    }
+
+    private void validate(File file, Queue<String> broken) {
+        for (String url : pages.get(file).links) {
+            String problem = check(file, url);
+            if (problem != null) {
+                broken.add(relativize(file) + ": broken link " + url + ", " + problem);
+            }
+        }
+    }
+
+    /**
+     * @return why the link is broken or <code>null</code> if it is valid or not validated
+     */
+    private String check(File file, String url) {
+        String path;
+        String fragment;
+        try {
+            URI uri = new URI(url);
+            if (uri.isAbsolute() || uri.isOpaque() || uri.getRawAuthority() != null) {
+                return null;
+            }
+            path = uri.getPath();
+            fragment = uri.getFragment();
+        } catch (URISyntaxException e) {
+            // links are not always valid URIs, spaces for example are allowed in <> destinations
+            if (url.startsWith("//") || url.matches("^[a-zA-Z][a-zA-Z0-9+.-]*:.*")) {
+                return null;
+            }
+            int end = url.indexOf('#');
+            fragment = end >= 0 ? url.substring(end + 1) : null;
+            if (end < 0) {
+                end = url.length();
+            }
+            int query = url.indexOf('?');
+            path = url.substring(0, query >= 0 && query < end ? query : end);
+        }
+
+        File target;
+        if (path == null || path.isEmpty()) {
+            target = file;
+        } else {
+            String pagePath = toPagePath(path);
+            if (pagePath == null) {
+                return null;
+            }
+            target = normalize(pagePath.startsWith("/") ? new File(outputDirectory, pagePath.substring(1))
+                    : new File(file.getParentFile(), pagePath));
+        }
+
+        Page page = pages.get(target);
+        if (page == null) {
+            return target.isFile() ? null : "no page " + relativize(target);
+        }
+        if (fragment != null && !fragment.isEmpty() && !page.ids.contains(fragment)) {
+            return "no anchor #" + fragment + " in " + relativize(target);
+        }
+        return null;
+    }
+
+    /**
+     * @return the path of the linked html file or <code>null</code> if the link is not to a page
+     */
+    private String toPagePath(String path) {
+        if (path.endsWith(outputFileSuffix) || path.endsWith(HTML)) {
+            return path;
+        }
+        for (String suffix : inputFileSuffixes) {
+            if (path.endsWith(suffix)) {
+                // links that are not rewritten point to the markdown file, which is not in the output directory
+                return rewriteLinks ? path.substring(0, path.length() - suffix.length()) + HTML : path;
+            }
+        }
+        return null;
+    }
+
+    private String relativize(File file) {
+        String path = file.getPath();
+        String root = outputDirectory.getPath() + File.separator;
+        return (path.startsWith(root) ? path.substring(root.length()) : path).replace(File.separatorChar, '/');
+    }
+
+    private static File normalize(File file) {
+        return file.getAbsoluteFile().toPath().normalize().toFile();
+    }
+
+    /**
+     * Heading ids and link destinations of a single page.
+     */
+    static final class Page {
+        final Set<String> ids;
+        final List<String> links;
+
+        Page(Set<String> ids, List<String> links) {
+            this.ids = ids;
+            this.links = links;
+        }
+
+        /**
+         * Collect the ids of the headings and the destinations of the links.
+         *
+         * @param document  the parsed markdown
+         * @param headerIds the ids the renderer gives the headings, <code>null</code> if it gives them none
+         */
+        static Page of(Document document, HeaderIdGenerator headerIds) {
+            Set<String> ids = new LinkedHashSet<>();
+            List<String> links = new ArrayList<>();
+            for (Node node : document.getDescendants()) {
+                String id = headerIds != null ? headerIds.getId(node) : null;
+                if (id != null) {
+                    ids.add(id);
+                }
+                if (node instanceof Link) {
+                    links.add(((Link) node).getUrl().unescape());
+                } else if (node instanceof LinkRef) {
+                    Reference reference = ((LinkRef) node).getReferenceNode(document);
+                    if (reference != null) {
+                        links.add(reference.getUrl().unescape());
+                    }
+                }
+            }
+            return new Page(ids, links);
+        }
+
+        /**
+         * @return the ids and the links, each on its own line, for the build manifest
+         */
+        String[] encode() {
+            return new String[]{StringUtils.join(ids.iterator(), "\n"), StringUtils.join(links.iterator(), "\n")};
+        }
+
+        static Page decode(String ids, String links) {
+            return new Page(new LinkedHashSet<>(split(ids)), split(links));
+        }
+
+        private static List<String> split(String lines) {
+            List<String> values = new ArrayList<>();
+            if (lines != null && !lines.isEmpty()) {
+                Collections.addAll(values, lines.split("\n"));
+            }
+            return values;
+        }
+    }
+}
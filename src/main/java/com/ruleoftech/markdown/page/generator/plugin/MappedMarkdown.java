@@ -0,0 +1,170 @@
+package com.ruleoftech.markdown.page.generator.plugin;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Reads large markdown files without copying them into a byte array and a string first. The file is memory mapped,
+ * so its bytes stay outside the heap, and decoded to a {@link CharSequence} that flexmark parses as it is:
+ * <ul>
+ * <li>a file in ISO-8859-1, or in an ASCII compatible charset that only contains ASCII, is not decoded at all, its
+ * characters are read straight from the mapped bytes;</li>
+ * <li>other files are decoded twice, first through a small buffer to count the characters and then to a char buffer
+ * of exactly that length, so a file with a few multi-byte characters does not allocate for the worst case the
+ * charset allows.</li>
+ * </ul>
+ * Malformed and unmappable input is replaced like <code>new String(bytes, charset)</code> does.
+ * <p>
+ * The JDK has no API to unmap a file: the mapping is only released when the garbage collector collects the buffer
+ * and every sequence that reads from it. Until then the file keeps using address space and, on Windows, can not be
+ * deleted or replaced.
+ */
+final class MappedMarkdown {
+
+    private static final Set<String> ASCII_COMPATIBLE = new HashSet<>(Arrays.asList(
+            "us-ascii", "utf-8", "iso-8859-1", "iso-8859-2", "iso-8859-15", "windows-1250", "windows-1252"));
+
+    private static final int COUNT_BUFFER_SIZE = 8 * 1024;
+
+    private MappedMarkdown() {
+    }
+
+    /**
+     * @throws IOException Unable to map the file, or it is larger than 2 GB
+     */
+    static MappedByteBuffer map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Markdown file " + file + " is " + size + " bytes, files larger than "
+                        + Integer.MAX_VALUE + " bytes are not supported");
+            }
+            // the mapping stays valid after the channel is closed
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+    }
+
+    /**
+     * @param bytes   the mapped file, its position and limit are not changed
+     * @param charset the charset of the file
+     * @return the characters of the file
+     * @throws CharacterCodingException Unable to decode
+     */
+    static CharSequence decode(ByteBuffer bytes, Charset charset) throws CharacterCodingException {
+        String name = charset.name().toLowerCase(Locale.ROOT);
+        if (charset.equals(StandardCharsets.ISO_8859_1)
+                || ASCII_COMPATIBLE.contains(name) && isAscii(bytes)) {
+            return new ByteCharSequence(bytes.duplicate());
+        }
+
+        CharsetDecoder decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        CharBuffer scratch = CharBuffer.allocate(COUNT_BUFFER_SIZE);
+        long length = decode(decoder, bytes.duplicate(), scratch, true);
+        CharBuffer out = CharBuffer.allocate(Math.toIntExact(length));
+        decode(decoder.reset(), bytes.duplicate(), out, false);
+        // cast for Java 8, which has no CharBuffer.flip() override
+        ((Buffer) out).flip();
+        return out;
+    }
+
+    /**
+     * @param counting <code>true</code> to only count the characters, <code>out</code> is then reused for every chunk
+     * @return the number of decoded characters
+     */
+    private static long decode(CharsetDecoder decoder, ByteBuffer in, CharBuffer out, boolean counting)
+            throws CharacterCodingException {
+        long length = 0;
+        boolean flushing = false;
+        while (true) {
+            CoderResult result = flushing ? decoder.flush(out) : decoder.decode(in, out, true);
+            if (counting) {
+                length += out.position();
+                ((Buffer) out).clear();
+            }
+            if (result.isUnderflow()) {
+                if (flushing) {
+                    return counting ? length : out.position();
+                }
+                flushing = true;
+            } else if (!result.isOverflow() || !counting) {
+                result.throwException();
+            }
+        }
+    }
+
+    private static boolean isAscii(ByteBuffer bytes) {
+        for (int i = bytes.position(); i < bytes.limit(); i++) {
+            if (bytes.get(i) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Characters of single byte text, read from the bytes on demand.
+     */
+    static final class ByteCharSequence implements CharSequence {
+        private final ByteBuffer bytes;
+        private final int offset;
+        private final int length;
+
+        ByteCharSequence(ByteBuffer bytes) {
+            this(bytes, bytes.position(), bytes.remaining());
+        }
+
+        private ByteCharSequence(ByteBuffer bytes, int offset, int length) {
+            this.bytes = bytes;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            if (index < 0 || index >= length) {
+                throw new StringIndexOutOfBoundsException(index);
+            }
+            return (char) (bytes.get(offset + index) & 0xff);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            if (start < 0 || end > length || start > end) {
+                throw new StringIndexOutOfBoundsException("start " + start + ", end " + end + ", length " + length);
+            }
+            return new ByteCharSequence(bytes, offset + start, end - start);
+        }
+
+        @Override
+        public String toString() {
+            byte[] copy = new byte[length];
+            for (int i = 0; i < length; i++) {
+                copy[i] = bytes.get(offset + i);
+            }
+            return new String(copy, StandardCharsets.ISO_8859_1);
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package com.ruleoftech.markdown.page.generator.plugin;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A markdown file scanned once for everything the page generation needs besides the markdown itself: the title, the
+ * <code>{key=value}</code> substitutes and the boundaries of the front matter header.
+ */
+final class MarkdownSource {
+
+    private final CharSequence text;
+    private final String title;
+    private final Map<String, String> substitutes;
+    private final int bodyStart;
+    private final int bodyEnd;
+
+    private MarkdownSource(CharSequence text, String title, Map<String, String> substitutes, int bodyStart, int bodyEnd) {
+        this.text = text;
+        this.title = title;
+        this.substitutes = substitutes;
+        this.bodyStart = bodyStart;
+        this.bodyEnd = bodyEnd;
+    }
+
+    /**
+     * Scan the content of a markdown file.
+     *
+     * @param text               the markdown
+     * @param findTitle          look for the first heading to use as title
+     * @param collectSubstitutes collect the <code>{key=value}</code> lines
+     * @param detectFrontMatter  detect a front matter header delimited by <code>---</code> lines
+     * @return the scanned source
+     */
+    static MarkdownSource scan(CharSequence text, boolean findTitle, boolean collectSubstitutes, boolean detectFrontMatter) {
+        String title = null;
+        Map<String, String> substitutes = collectSubstitutes ? new HashMap<String, String>() : Collections.<String, String>emptyMap();
+
+        String previousLine = "";
+        int length = text.length();
+        int lineStart = 0;
+        while (lineStart < length && (findTitle || collectSubstitutes)) {
+            int lineEnd = lineStart;
+            while (lineEnd < length && text.charAt(lineEnd) != '\n' && text.charAt(lineEnd) != '\r') {
+                lineEnd++;
+            }
+
+            if (collectSubstitutes && isVariableLine(text, lineStart, lineEnd)) {
+                int separator = indexOf(text, '=', lineStart);
+                substitutes.put(text.subSequence(lineStart + 1, separator).toString(),
+                        text.subSequence(separator + 1, lineEnd - 1).toString());
+            }
+
+            if (findTitle) {
+                String line = text.subSequence(lineStart, lineEnd).toString().trim();
+                if (line.startsWith("#")) {
+                    title = line.replace("#", "");
+                    findTitle = false;
+                } else if (isSetextUnderline(line, previousLine)) {
+                    title = previousLine;
+                    findTitle = false;
+                }
+                previousLine = line;
+            }
+
+            if (lineEnd + 1 < length && text.charAt(lineEnd) == '\r' && text.charAt(lineEnd + 1) == '\n') {
+                lineStart = lineEnd + 2;
+            } else {
+                lineStart = lineEnd + 1;
+            }
+        }
+
+        int bodyStart = detectFrontMatter ? findFrontMatterEnd(text) : -1;
+        int bodyEnd = length;
+        if (bodyStart < 0) {
+            bodyStart = 0;
+        } else {
+            bodyEnd = stripFinalLineTerminator(text, bodyStart);
+        }
+
+        return new MarkdownSource(text, title, substitutes, bodyStart, bodyEnd);
+    }
+
+    /**
+     * @return the first heading of the file or <code>null</code> if there is none
+     */
+    String getTitle() {
+        return title;
+    }
+
+    Map<String, String> getSubstitutes() {
+        return substitutes;
+    }
+
+    boolean hasFrontMatter() {
+        return bodyStart > 0 || bodyEnd < text.length();
+    }
+
+    /**
+     * @return the markdown without the front matter header, if it was detected
+     */
+    CharSequence getBody() {
+        return hasFrontMatter() ? text.subSequence(bodyStart, bodyEnd) : text;
+    }
+
+    /**
+     * Line is considered a setext style header underline if it starts with either = or -, it has the same number of
+     * characters as the previous line and it only contains - or = and nothing else.
+     */
+    private static boolean isSetextUnderline(String line, String previousLine) {
+        if (line.isEmpty() || line.length() != previousLine.length()) {
+            return false;
+        }
+        char marker = line.charAt(0);
+        if (marker != '=' && marker != '-') {
+            return false;
+        }
+        for (int i = 1; i < line.length(); i++) {
+            if (line.charAt(i) != marker) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Line of the form <code>{key=value}</code>.
+     */
+    private static boolean isVariableLine(CharSequence text, int lineStart, int lineEnd) {
+        if (lineEnd - lineStart < 3 || text.charAt(lineStart) != '{' || text.charAt(lineEnd - 1) != '}') {
+            return false;
+        }
+        boolean separator = false;
+        for (int i = lineStart + 1; i < lineEnd - 1; i++) {
+            char c = text.charAt(i);
+            if (c == '\u0085' || c == '\u2028' || c == '\u2029') {
+                return false;
+            }
+            separator |= c == '=';
+        }
+        return separator;
+    }
+
+    /**
+     * The front matter header starts with a <code>---</code> line and ends with the next <code>---</code> line that
+     * is not directly after it. Blank lines following the header are not part of the body.
+     *
+     * @return start of the body or <code>-1</code> if there is no front matter header
+     */
+    private static int findFrontMatterEnd(CharSequence text) {
+        if (!startsWith(text, "---", 0)) {
+            return -1;
+        }
+        int openingEnd = skipWhitespaceToLastNewline(text, 3);
+        if (openingEnd < 0) {
+            return -1;
+        }
+        // the opening newline may not be the newline in front of the closing line
+        int firstNewline = indexOf(text, '\n', 3);
+        int newline = indexOf(text, '\n', firstNewline + 1);
+        while (newline >= 0) {
+            if (startsWith(text, "---", newline + 1)) {
+                int bodyStart = skipWhitespaceToLastNewline(text, newline + 4);
+                if (bodyStart >= 0) {
+                    return bodyStart;
+                }
+            }
+            newline = indexOf(text, '\n', newline + 1);
+        }
+        return -1;
+    }
+
+    /**
+     * @return position after the last newline of the whitespace starting at <code>index</code> or <code>-1</code> if
+     * the whitespace does not contain a newline
+     */
+    private static int skipWhitespaceToLastNewline(CharSequence text, int index) {
+        int afterNewline = -1;
+        while (index < text.length() && isWhitespace(text.charAt(index))) {
+            if (text.charAt(index) == '\n') {
+                afterNewline = index + 1;
+            }
+            index++;
+        }
+        return afterNewline;
+    }
+
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    private static int stripFinalLineTerminator(CharSequence text, int bodyStart) {
+        int end = text.length();
+        if (end - bodyStart >= 2 && text.charAt(end - 2) == '\r' && text.charAt(end - 1) == '\n') {
+            return end - 2;
+        }
+        if (end > bodyStart) {
+            char c = text.charAt(end - 1);
+            if (c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029') {
+                return end - 1;
+            }
+        }
+        return end;
+    }
+
+    private static int indexOf(CharSequence text, char c, int fromIndex) {
+        if (text instanceof String) {
+            return ((String) text).indexOf(c, fromIndex);
+        }
+        for (int i = Math.max(fromIndex, 0); i < text.length(); i++) {
+            if (text.charAt(i) == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean startsWith(CharSequence text, String prefix, int offset) {
+        if (offset < 0 || offset + prefix.length() > text.length()) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (text.charAt(offset + i) != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -1,28 +1,56 @@
 package com.ruleoftech.markdown.page.generator.plugin;
 
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.FilterWriter;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.Writer;
 import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystemLoopException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.PathMatcher;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
-import java.util.Collection;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.Iterator;
-import java.util.LinkedList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Properties;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.io.IOUtils;
 import org.apache.maven.execution.MavenSession;
 import org.apache.maven.model.Resource;
 import org.apache.maven.model.interpolation.MavenBuildTimestamp;
@@ -32,9 +60,11 @@ import org.apache.maven.plugins.annotations.Component;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.project.MavenProject;
+import org.apache.maven.shared.filtering.MavenFileFilter;
 import org.apache.maven.shared.filtering.MavenFilteringException;
 import org.apache.maven.shared.filtering.MavenResourcesExecution;
 import org.apache.maven.shared.filtering.MavenResourcesFiltering;
+import org.apache.maven.shared.utils.io.FileUtils.FilterWrapper;
 import org.codehaus.plexus.PlexusConstants;
 import org.codehaus.plexus.PlexusContainer;
 import org.codehaus.plexus.component.repository.exception.ComponentLookupException;
@@ -42,12 +72,16 @@ import org.codehaus.plexus.context.Context;
 import org.codehaus.plexus.context.ContextException;
 import org.codehaus.plexus.util.StringUtils;
 
+import com.vladsch.flexmark.ext.anchorlink.AnchorLinkExtension;
 import com.vladsch.flexmark.html.HtmlRenderer;
+import com.vladsch.flexmark.html.renderer.HeaderIdGenerator;
 import com.vladsch.flexmark.parser.Parser;
 import com.vladsch.flexmark.profile.pegdown.Extensions;
 import com.vladsch.flexmark.profile.pegdown.PegdownOptionsAdapter;
+import com.vladsch.flexmark.util.ast.Document;
 import com.vladsch.flexmark.util.ast.Node;
 import com.vladsch.flexmark.util.misc.Extension;
+import com.vladsch.flexmark.util.sequence.BasedSequence;
 import com.vladsch.flexmark.util.data.DataKey;
 import com.vladsch.flexmark.util.data.DataKeyBase;
 import com.vladsch.flexmark.util.data.MutableDataHolder;
@@ -96,24 +130,121 @@ public class MdPageGeneratorMojo extends AbstractMojo {
     @Parameter(property = "generate.outputEncoding", defaultValue = "${project.build.sourceEncoding}")
     private String outputEncoding;
 
+    /**
+     * Fail if parsing and rendering a single markdown file takes longer than this.
+     * <p>
+     * Parsing can't be interrupted: a file that times out is abandoned, but keeps a parser thread busy until it is
+     * parsed, and then writes nothing. There are as many parser threads as rendering threads, so abandoned files
+     * never use more cores than the build, but while all the parser threads are busy with them the next files time
+     * out as well. In the <code>watch</code> and <code>serve</code> goals they keep running after the failure is
+     * reported.
+     */
     @Parameter(property = "generate.parsingTimeoutInMillis")
     private Long parsingTimeoutInMillis;
 
+    /**
+     * Fail if a markdown file is larger than this number of bytes.
+     */
+    @Parameter(property = "generate.maxInputSize")
+    private Long maxInputSize;
+
+    /**
+     * Fail if the block quotes, links or parsed elements of a markdown file nest deeper than this.
+     */
+    @Parameter(property = "generate.maxNestingDepth")
+    private Integer maxNestingDepth;
+
+    /**
+     * Markdown files of at least this many bytes are memory mapped and parsed without reading them into a string
+     * first. <code>0</code> reads every file into memory.
+     */
+    @Parameter(property = "generate.largeFileThreshold", defaultValue = "16777216")
+    private long largeFileThreshold = 16 * 1024 * 1024;
+
+    /**
+     * Validate the relative links between the generated pages and the heading anchors they point to once all the
+     * pages are rendered: <code>off</code>, <code>warn</code> logs the broken links and <code>fail</code> fails the
+     * build. The headings are rendered with their ids.
+     */
+    @Parameter(property = "generate.linkValidation", defaultValue = "off")
+    private String linkValidation = "off";
+
+    /**
+     * Write a full-text search index of the pages, sharded by term prefix, to <code>searchIndexDirectory</code>.
+     * The headings are rendered with their ids, the anchors of the sections.
+     */
+    @Parameter(property = "generate.searchIndex", defaultValue = "false")
+    private boolean searchIndex;
+
+    /**
+     * Directory of the search index, <code>search</code> in the output directory if not set. Its content is replaced
+     * by every build.
+     */
+    @Parameter(property = "generate.searchIndexDirectory")
+    private File searchIndexDirectory;
+
+    /**
+     * Write the navigation tree of the pages, with their nested headings, as JSON to this file. The headings are
+     * rendered with their ids.
+     */
+    @Parameter(property = "generate.navigationFile")
+    private File navigationFile;
+
+    /**
+     * Write <code>sitemap.xml</code> to the output directory, with the page urls resolved against this absolute url
+     * of the output directory.
+     */
+    @Parameter(property = "generate.sitemapBaseUrl")
+    private String sitemapBaseUrl;
+
     @Parameter(property = "generate.inputFileExtensions", defaultValue = "md")
     private String inputFileExtensions = "md";
 
     @Parameter(property = "generate.outputFileExtension", defaultValue = "html")
     private String outputFileExtension = "html";
 
+    /**
+     * Comma separated formats written from each parsed markdown file: <code>page</code> with the header and footer,
+     * <code>fragment</code> without them, plain <code>text</code> and the syntax tree as <code>json</code>.
+     */
+    @Parameter(property = "generate.outputFormats", defaultValue = "page")
+    private String outputFormats = "page";
+
     @Parameter(property = "generate.applyFiltering", defaultValue = "false")
     private boolean applyFiltering;
 
+    /**
+     * Apply the Maven property filtering to the markdown content while it is read instead of copying the input
+     * directory to <code>filteredOutputDirectory</code>.
+     */
+    @Parameter(property = "generate.filterInMemory", defaultValue = "false")
+    private boolean filterInMemory;
+
     @Parameter(property = "generate.timestampFormat", defaultValue = "yyyy-MM-dd\\'T\\'HH:mm:ss\\'Z\\'")
     private String timestampFormat;
 
     @Parameter(property = "generate.attributes")
     private String[] attributes;
 
+    /**
+     * Number of threads used for rendering the markdown files. Defaults to the number of available processors,
+     * <code>1</code> renders the files serially on the Maven thread.
+     */
+    @Parameter(property = "generate.threads")
+    private Integer threads;
+
+    /**
+     * Only generate the files whose markdown source, header, footer or options changed since the previous build.
+     */
+    @Parameter(property = "generate.incremental", defaultValue = "false")
+    private boolean incremental;
+
+    /**
+     * Content-hash manifest of the generated files used by incremental builds.
+     */
+    @Parameter(property = "generate.incrementalManifest", defaultValue = "${project.build.directory}/markdown-page-generator.manifest")
+    private File incrementalManifest;
+
     @Component
     private MavenProject project;
 
@@ -140,7 +271,47 @@ public class MdPageGeneratorMojo extends AbstractMojo {
     @Parameter(property = "generate.copyDirectories")
     private String copyDirectories;
 
-    private List<MarkdownDTO> markdownDTOs = new ArrayList<MarkdownDTO>();
+    /**
+     * How the files of the copied directories are put in the output directory: <code>copy</code>,
+     * <code>hardlink</code> or <code>symlink</code>. A linked file is the source file itself, so editing it in the
+     * output directory, for example by a later build step, edits the source in the input directory too.
+     */
+    @Parameter(property = "generate.copyMode", defaultValue = "copy")
+    private String copyMode = "copy";
+
+    /**
+     * Compare the content of copied files of the same size instead of their modification time.
+     */
+    @Parameter(property = "generate.copyCompareContent", defaultValue = "false")
+    private boolean copyCompareContent;
+
+    /**
+     * Comma separated codecs of the precompressed sidecars written next to the generated files and the copied text
+     * assets, for servers that serve them as they are: <code>gzip</code> writes <code>page.html.gz</code>.
+     */
+    @Parameter(property = "generate.precompress")
+    private String precompress;
+
+    /**
+     * Measure the read, parse, render and write time of every markdown file and write them to
+     * <code>timingReportFile</code>.
+     */
+    @Parameter(property = "generate.timingReport", defaultValue = "false")
+    private boolean timingReport;
+
+    /**
+     * Timing report file, written as CSV if the name ends with <code>.csv</code> and as JSON otherwise.
+     */
+    @Parameter(property = "generate.timingReportFile", defaultValue = "${project.build.directory}/markdown-page-generator-timings.json")
+    private File timingReportFile;
+
+    /**
+     * Number of the slowest markdown files listed in the timing summary.
+     */
+    @Parameter(property = "generate.timingReportSlowest", defaultValue = "10")
+    private int timingReportSlowest = 10;
+
+    private TimingReport report = TimingReport.DISABLED;
 
     @Parameter(property = "generate.filteredOutputDirectory", defaultValue = "${project.build.directory}/filtered-md/")
     private File filteredOutputDirectory;
@@ -169,6 +340,21 @@ public class MdPageGeneratorMojo extends AbstractMojo {
         this.copyDirectories = copyDirectories;
     }
 
+    /**
+     * @return how the files of the copied directories are put in the output directory
+     */
+    public String getCopyMode() {
+        return copyMode;
+    }
+
+    /**
+     * @param copyMode <code>copy</code>, <code>hardlink</code> or <code>symlink</code>, links write edits in the
+     *                 output directory through to the sources
+     */
+    public void setCopyMode(String copyMode) {
+        this.copyMode = copyMode;
+    }
+
     /**
      * Execute the maven plugin.
      *
@@ -177,93 +363,316 @@ public class MdPageGeneratorMojo extends AbstractMojo {
     @Override
     public void execute() throws MojoExecutionException {
         // First, if filtering is enabled, perform that using the Maven magic
-        if (applyFiltering) {
-            performMavenPropertyFiltering(new File(inputDirectory), filteredOutputDirectory, getInputEncoding());
-            inputDirectory = filteredOutputDirectory.getAbsolutePath();
+        long filteringStart = System.nanoTime();
+        prepareFiltering(filterInMemory);
+        if (timingReport) {
+            report = new TimingReport(new File(inputDirectory));
+            report.stage("filtering", filteringStart, 0, 0);
         }
 
         getLog().info("Pre-processing markdown files from input directory: " + inputDirectory);
-        if (!preprocessMarkdownFiles(new File(inputDirectory))){
-			    getLog().info("Pre-processing markdown files from input directory: markdown files not found" + inputDirectory);
-			    return;
-		    }
+        File inputDirectoryFile = new File(inputDirectory);
+        if (!inputDirectoryFile.exists()) {
+            getLog().info("There is no input folder for the project. Skipping.");
+            return;
+        }
+
+        // The pages are rendered while the input directory is still being walked, so discovery and markdown overlap
+        long discoveryStart = report.start();
+        GenerationEvent discovery = GenerationEvent.begin(GenerationEvent.Stage.DISCOVERY);
+        LazyRenderQueue pages = new LazyRenderQueue();
+        BuildManifest manifest;
+        LinkIndex linkIndex = null;
+        SearchIndex pageIndex = null;
+        SiteNavigation navigation = null;
+        try {
+            walkMarkdownFiles(inputDirectoryFile, pages);
+            discovery.end(inputDirectoryFile, 0, 0);
+            int found = pages.queue != null ? pages.queue.getSubmitted() : 0;
+            report.stage("discovery", discoveryStart, found, 0);
+
+            manifest = pages.manifest;
+            if (pages.queue != null) {
+                linkIndex = pages.context.linkIndex;
+                pageIndex = pages.context.searchIndex;
+                navigation = pages.context.navigation;
+                int generated = pages.queue.finish();
+                report.stage("markdown", discoveryStart, found, 0);
+                if (manifest != null) {
+                    getLog().info("Generated " + generated + " file(s), " + (found - generated) + " file(s) up to date");
+                }
+            } else if (isIncremental()) {
+                manifest = loadBuildManifest("");
+            }
+        } finally {
+            pages.close();
+        }
 
-        if (!markdownDTOs.isEmpty()) {
-            getLog().info("Process Pegdown extension options");
-            int pegdownOptions = getPegdownExtensions(pegdownExtensions);
-            MutableDataHolder flexmarkParserOptions = getFlexmarkParserOptions(this.flexmarkParserOptions);
-            MutableDataHolder flexmarkRendererOptions = getFlexmarkRendererOptions(this.flexmarkRendererOptions);
-            final Map<String, MutableAttributes> attributesMap = processAttributes(attributes);
+        // copied before the manifest is stored, so that it records the sidecars of the copied files
+        copyDirectories(manifest);
 
-            getLog().info("Parse Markdown to HTML");
-            processMarkdown(markdownDTOs, pegdownOptions, flexmarkParserOptions, flexmarkRendererOptions, attributesMap);
+        if (manifest != null) {
+            updateBuildManifest(manifest);
         }
 
-        // FIXME: This will possibly overwrite any filtering updates made in the maven property filtering step above
-        if (StringUtils.isNotEmpty(copyDirectories)) {
-            getLog().info("Copy files from directories");
-            for (String dir : copyDirectories.split(",")) {
-                for (Entry<String, String> copyAction : getFoldersToCopy(inputDirectory, outputDirectory, dir).entrySet()) {
-                    copyFiles(copyAction.getKey(), copyAction.getValue());
-                }
+        if (linkIndex != null) {
+            validateLinks(linkIndex);
+        }
+
+        if (pageIndex != null) {
+            writeSearchIndex(pageIndex);
+        }
+
+        if (navigation != null) {
+            writeNavigation(navigation);
+        }
+
+        if (report.isEnabled()) {
+            writeTimingReport();
+        }
+    }
+
+    /**
+     * Log the broken links of the generated pages, and fail if <code>linkValidation</code> is <code>fail</code>.
+     *
+     * @throws MojoExecutionException Broken links were found
+     */
+    private void validateLinks(LinkIndex linkIndex) throws MojoExecutionException {
+        long linksStart = report.start();
+        List<String> broken;
+        try {
+            broken = linkIndex.validate(getThreadCount());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException("Interrupted while validating links", e);
+        }
+        report.stage("links", linksStart, linkIndex.size(), 0);
+
+        boolean fail = LinkIndex.Mode.parse(linkValidation) == LinkIndex.Mode.FAIL;
+        for (String link : broken) {
+            if (fail) {
+                getLog().error(link);
+            } else {
+                getLog().warn(link);
             }
         }
+        getLog().info("Validated the links of " + linkIndex.size() + " page(s), " + broken.size() + " broken link(s)");
+        if (fail && !broken.isEmpty()) {
+            throw new MojoExecutionException("Found " + broken.size() + " broken link(s)");
+        }
     }
 
-    private Map<String, String> getFoldersToCopy(String inputDirectory, String outputDirectory, String dir) {
-        Map<String, String> retValue = new HashMap<>();
+    /**
+     * Write the search index of the pages.
+     *
+     * @throws MojoExecutionException Unable to write the index
+     */
+    private void writeSearchIndex(SearchIndex pageIndex) throws MojoExecutionException {
+        File directory = searchIndexDirectory != null ? searchIndexDirectory : new File(outputDirectory, "search");
+        long searchStart = report.start();
+        try {
+            pageIndex.write(directory);
+        } catch (IOException e) {
+            throw new MojoExecutionException("Unable to write search index " + e.getMessage(), e);
+        }
+        report.stage("search", searchStart, pageIndex.size(), 0);
+        getLog().info("Wrote the search index of " + pageIndex.size() + " page(s) to " + directory);
+    }
 
-        Collection<Path> stream = getPathMatchingGlob(inputDirectory, dir);
-        for (Path path : stream) {
-            final Path inFolderPath = new File(inputDirectory).toPath();
-            Path relativePath = inFolderPath.relativize(path);
+    /**
+     * Write the navigation tree and the sitemap of the pages.
+     *
+     * @throws MojoExecutionException Unable to write the files
+     */
+    private void writeNavigation(SiteNavigation navigation) throws MojoExecutionException {
+        long navigationStart = report.start();
+        try {
+            if (navigationFile != null) {
+                navigation.writeNavigation(navigationFile);
+                getLog().info("Wrote the navigation of " + navigation.size() + " page(s) to " + navigationFile);
+            }
+            if (StringUtils.isNotEmpty(sitemapBaseUrl)) {
+                File sitemap = new File(outputDirectory, "sitemap.xml");
+                navigation.writeSitemap(sitemap, sitemapBaseUrl);
+                getLog().info("Wrote the sitemap of " + navigation.size() + " page(s) to " + sitemap);
+            }
+        } catch (IOException e) {
+            throw new MojoExecutionException("Unable to write navigation " + e.getMessage(), e);
+        }
+        report.stage("navigation", navigationStart, navigation.size(), 0);
+    }
 
-            Path resolvedOutPath = new File(outputDirectory).toPath().resolve(relativePath);
-            Path resolvedInPath = new File(inputDirectory).toPath().resolve(relativePath);
+    /**
+     * @return the collector of the page headings or <code>null</code> if neither a navigation nor a sitemap is written
+     */
+    private SiteNavigation createSiteNavigation() {
+        if (navigationFile == null && StringUtils.isEmpty(sitemapBaseUrl)) {
+            return null;
+        }
+        return new SiteNavigation(new File(outputDirectory));
+    }
 
-            retValue.put(resolvedInPath.toFile().getAbsolutePath(), resolvedOutPath.toFile().getAbsolutePath());
+    /**
+     * @return the index for validating the links of the pages or <code>null</code> if they are not validated
+     */
+    private LinkIndex createLinkIndex() {
+        if (LinkIndex.Mode.parse(linkValidation) == LinkIndex.Mode.OFF) {
+            return null;
         }
+        return new LinkIndex(new File(outputDirectory), getInputFileExtensions(), outputFileExtension,
+                transformRelativeMarkdownLinks);
+    }
 
-        return retValue;
+    /**
+     * Log the timing summary and write the timing report.
+     *
+     * @throws MojoExecutionException Unable to write the report
+     */
+    private void writeTimingReport() throws MojoExecutionException {
+        getLog().info(report.summary(timingReportSlowest));
+        try {
+            report.write(timingReportFile);
+            getLog().info("Timing report written to " + timingReportFile);
+        } catch (IOException e) {
+            throw new MojoExecutionException("Unable to write timing report " + timingReportFile, e);
+        }
     }
 
-    private Collection<Path> getPathMatchingGlob(String inputDirectory1, String dir) {
-        List<Path> retValue = new LinkedList<>();
+    /**
+     * Filter the input directory to <code>filteredOutputDirectory</code> and read the markdown files from there, or
+     * prepare filtering the markdown files as they are read if <code>inMemory</code>.
+     *
+     * @throws MojoExecutionException Unable to filter
+     */
+    void prepareFiltering(boolean inMemory) throws MojoExecutionException {
+        if (applyFiltering && inMemory) {
+            markdownFilterWrappers = getMavenPropertyFilterWrappers(new File(inputDirectory), filteredOutputDirectory);
+        } else if (applyFiltering) {
+            GenerationEvent filtering = GenerationEvent.begin(GenerationEvent.Stage.FILTERING);
+            performMavenPropertyFiltering(new File(inputDirectory), filteredOutputDirectory, getInputEncoding());
+            filtering.end(new File(inputDirectory), 0, 0);
+            inputDirectory = filteredOutputDirectory.getAbsolutePath();
+        }
+    }
 
-        Iterator<File> files = FileUtils.iterateFiles(new File(inputDirectory1), null, true);
-        while (files.hasNext()) {
-            File file = files.next();
-            file = file.getParentFile();
+    /**
+     * Copy the files of the <code>copyDirectories</code> to the output directory.
+     *
+     * @throws MojoExecutionException Unable to copy file
+     */
+    void copyDirectories() throws MojoExecutionException {
+        copyDirectories(null);
+    }
 
-            if (file.isDirectory()) {
+    /**
+     * Copy the files of the <code>copyDirectories</code> to the output directory.
+     *
+     * @param manifest the manifest of an incremental build recording the copied files and their sidecars, or
+     *                 <code>null</code>
+     * @throws MojoExecutionException Unable to copy file
+     */
+    private void copyDirectories(BuildManifest manifest) throws MojoExecutionException {
+        // FIXME: This will possibly overwrite any filtering updates made in the maven property filtering step above
+        if (StringUtils.isNotEmpty(copyDirectories)) {
+            getLog().info("Copy files from directories");
+            AssetCopier copier = new AssetCopier(AssetCopier.Mode.parse(copyMode), copyCompareContent, getLog());
+            long copyStart = report.start();
+            List<File> copiedFiles = new ArrayList<>();
+            for (Entry<String, String> copyAction : getFoldersToCopy(inputDirectory, outputDirectory, copyDirectories).entrySet()) {
+                copyFiles(copyAction.getKey(), copyAction.getValue(), copier, copiedFiles);
+            }
+            getLog().info("Copied " + copier.getCopied() + " file(s), " + copier.getUpToDate() + " file(s) up to date");
+            report.stage("copy", copyStart, copier.getCopied(), copier.getCopiedBytes());
 
-                String expandedGlob = new File(inputDirectory1).getAbsolutePath() + File.separator + dir;
-                // we need other syntax on windows systems
-                if (File.separator.equals("\\")) {
-                    expandedGlob = expandedGlob.replaceAll("\\\\", "\\\\\\\\");
+            Precompressor precompressor = createPrecompressor();
+            if (precompressor != null) {
+                compressFiles(precompressor, copiedFiles);
+            }
+            if (manifest != null) {
+                for (File copiedFile : copiedFiles) {
+                    manifest.recordCopy(copiedFile, precompressor != null && Precompressor.isCompressible(copiedFile)
+                            ? precompressor.getSidecars(copiedFile) : Collections.<File>emptyList());
                 }
-                PathMatcher pathMatcher = file.toPath().getFileSystem().getPathMatcher("glob:" + expandedGlob);
+            }
+        }
+    }
 
-                if (pathMatcher.matches(file.toPath())) {
-                    if (!retValue.contains(file.toPath())) {
-                        retValue.add(file.toPath());
-                    }
-                }
+    /**
+     * Write the sidecars of the copied text assets that are missing or out of date.
+     *
+     * @throws MojoExecutionException Unable to compress a file
+     */
+    private void compressFiles(Precompressor precompressor, List<File> files) throws MojoExecutionException {
+        List<File> compressible = new ArrayList<>();
+        for (File file : files) {
+            if (Precompressor.isCompressible(file)) {
+                compressible.add(file);
             }
         }
+        long compressStart = report.start();
+        int compressed;
+        try {
+            compressed = precompressor.compress(compressible, getThreadCount());
+        } catch (IOException e) {
+            throw new MojoExecutionException("Unable to compress file " + e.getMessage(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException("Interrupted while compressing files", e);
+        }
+        getLog().info("Compressed " + compressed + " file(s), " + (compressible.size() - compressed) + " file(s) up to date");
+        report.stage("compress", compressStart, compressed, 0);
+    }
 
-        return retValue;
+    /**
+     * @return the writer of the precompressed sidecars or <code>null</code> if none are written
+     */
+    Precompressor createPrecompressor() {
+        List<Precompressor.Codec> codecs = Precompressor.Codec.parseList(precompress);
+        return codecs.isEmpty() ? null : new Precompressor(codecs);
+    }
+
+    /**
+     * @return the directories of the <code>copyDirectories</code> and the output directories they are copied to
+     * @throws MojoExecutionException Unable to list the directories
+     */
+    Map<String, String> getFoldersToCopy() throws MojoExecutionException {
+        if (StringUtils.isEmpty(copyDirectories)) {
+            return Collections.emptyMap();
+        }
+        return getFoldersToCopy(inputDirectory, outputDirectory, copyDirectories);
     }
 
+    private Map<String, String> getFoldersToCopy(String inputDirectory, String outputDirectory, String dirs)
+            throws MojoExecutionException {
+        Map<String, String> retValue = new LinkedHashMap<>();
+
+        final Path inFolderPath = new File(inputDirectory).getAbsoluteFile().toPath();
+        final Path outFolderPath = new File(outputDirectory).getAbsoluteFile().toPath();
+        Set<Path> folders;
+        try {
+            folders = new CopyDirectoryResolver(inFolderPath.getFileSystem(), dirs).resolve(inFolderPath);
+        } catch (IOException e) {
+            throw new MojoExecutionException("Unable to resolve directories to copy " + e.getMessage(), e);
+        }
+        for (Path path : folders) {
+            Path relativePath = inFolderPath.relativize(path);
+            retValue.put(path.toFile().getAbsolutePath(), outFolderPath.resolve(relativePath).toFile().getAbsolutePath());
+        }
+
+        return retValue;
+    }
 
     /**
-     * Parse attributes of the form NodeName:attributeName=attribute value:attributeName=attribute value...
+     * Parse attributes of the form Selector|attributeName=attribute value|attributeName=attribute value...
+     * The selector is described in {@link AttributeRules}.
      *
      * @param attributeList list of attributes
-     * @return map of Node class to attributable part and attributes
+     * @param extensions    the extensions of the parser, for the node classes of the selectors
+     * @return the compiled rules
+     * @throws IllegalArgumentException Invalid selector
      */
-    private Map<String, MutableAttributes> processAttributes(String[] attributeList) {
-        Map<String, MutableAttributes> nodeAttributeMap = new HashMap<>();
+    private AttributeRules processAttributes(String[] attributeList, List<Extension> extensions) {
+        AttributeRules attributeRules = new AttributeRules(extensions);
 
         for (String attribute : attributeList) {
             String[] nodeAttributes = attribute.split("\\|");
@@ -284,9 +693,9 @@ public class MdPageGeneratorMojo extends AbstractMojo {
                     attributes.addValue(attributeNameValue[0], attributeNameValue[0]);
                 }
             }
-            nodeAttributeMap.put(nodeAttributes[0], attributes);
+            attributeRules.add(nodeAttributes[0], attributes);
         }
-        return nodeAttributeMap;
+        return attributeRules;
     }
 
     private int getPegdownExtensions(String extensions) {
@@ -365,116 +774,163 @@ public class MdPageGeneratorMojo extends AbstractMojo {
     }
 
     /**
-     * Read Markdown files from directory.
+     * Walk the input directory, and its sub directories if <code>recursiveInput</code> is set, and hand every
+     * markdown file to the visitor as soon as it is found. Only the directories being walked are held in memory.
      *
-     * @return boolean
-     * Is there files to read
-     * @throws MojoExecutionException Unable to load file
+     * @throws MojoExecutionException Unable to read a directory or the visitor failed
      */
-    @SuppressWarnings("UnusedReturnValue")
-    private boolean preprocessMarkdownFiles(File inputDirectory) throws MojoExecutionException {
+    void walkMarkdownFiles(final File inputDirectory, final MarkdownFileVisitor visitor) throws MojoExecutionException {
         getLog().debug("Read files from: " + inputDirectory);
+        final int baseDepth = StringUtils.countMatches(inputDirectory.getAbsolutePath(), File.separator);
+        final String[] extensions = getInputFileExtensions();
 
         try {
-            if (!inputDirectory.exists()) {
-                getLog().info("There is no input folder for the project. Skipping.");
-                return false;
-            }
-            int baseDepth = StringUtils.countMatches(inputDirectory.getAbsolutePath(), File.separator);
-
-            // Reading just the markdown dir and sub dirs if recursive option set
-            List<File> markdownFiles = getFilesAsArray(FileUtils.iterateFiles(inputDirectory, getInputFileExtensions(), recursiveInput));
-
-            for (File file : markdownFiles) {
-                getLog().debug("File getName() " + file.getName());
-                getLog().debug("File getAbsolutePath() " + file.getAbsolutePath());
-                getLog().debug("File getPath() " + file.getPath());
-
-                MarkdownDTO dto = new MarkdownDTO();
-                dto.markdownFile = file;
-
-                dto.folderDepth = StringUtils.countMatches(file.getAbsolutePath(), File.separator) - (baseDepth + 1);
-
-                if (alwaysUseDefaultTitle) {
-                    dto.title = defaultTitle;
-                } else {
-                    List<String> raw = FileUtils.readLines(file, getInputEncoding());
-                    dto.title = getTitle(raw);
-                }
-
-                if (applyFiltering) {
-                    for (String line : FileUtils.readLines(file, getInputEncoding())) {
-                        if (isVariableLine(line)) {
-                            String key = line.replaceAll("(^\\{)|(=.*)", "");
-                            String value = line.replaceAll("(^\\{(.*?)=)|(}$)", "");
-                            getLog().debug("Substitute: '" + key + "' -> '" + value + "'");
-                            dto.substitutes.put(key, value);
+            Files.walkFileTree(inputDirectory.toPath(), EnumSet.of(FileVisitOption.FOLLOW_LINKS),
+                    recursiveInput ? Integer.MAX_VALUE : 1, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) throws IOException {
+                    if (attributes.isRegularFile() && FilenameUtils.isExtension(file.getFileName().toString(), extensions)) {
+                        try {
+                            if (!visitor.visit(createMarkdownDTO(inputDirectory, baseDepth, file.toFile()))) {
+                                return FileVisitResult.TERMINATE;
+                            }
+                        } catch (MojoExecutionException e) {
+                            throw new VisitorFailure(e);
                         }
                     }
+                    return FileVisitResult.CONTINUE;
                 }
 
-                String inputFileExtension = FilenameUtils.getExtension(file.getName());
-
-                dto.htmlFile = new File(
-                        recursiveInput
-                                ? outputDirectory + File.separator
-                                        + file.getParentFile().getPath().substring(inputDirectory.getPath().length())
-                                        + File.separator + file.getName().replaceAll(
-                                                "\\." + inputFileExtension,
-                                                "\\." + outputFileExtension)
-                                : outputDirectory + File.separator + file.getName().replaceAll("\\." + inputFileExtension,
-                                        "\\." + outputFileExtension));
-
-                getLog().debug("File htmlFile() " + dto.htmlFile);
-
-                markdownDTOs.add(dto);
-            }
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException e) throws IOException {
+                    if (e instanceof FileSystemLoopException) {
+                        getLog().warn("Skipping " + file + ", the link points to one of its parent directories");
+                        return FileVisitResult.CONTINUE;
+                    }
+                    throw e;
+                }
+            });
+        } catch (VisitorFailure e) {
+            throw e.cause;
         } catch (IOException e) {
-            throw new MojoExecutionException("Unable to load file " + e.getMessage(), e);
+            throw new MojoExecutionException("Unable to read markdown files " + e.getMessage(), e);
         }
-
-        return true;
     }
 
     /**
-     * Replace variables with given pattern.
+     * Render all the markdown files of the input directory while it is walked.
      *
-     * @param template      String to replace
-     * @param patternString regexp pattern
-     * @param variables     variables to find
-     * @return result
+     * @return number of generated html files
+     * @throws MojoExecutionException Unable to read or write a file
      */
-    private String substituteVariables(String template, String patternString, Map<String, String> variables) {
-        Pattern pattern = Pattern.compile(patternString);
-        Matcher matcher = pattern.matcher(template);
-        StringBuffer buffer = new StringBuffer();
-        while (matcher.find()) {
-            if (variables.containsKey(matcher.group(1))) {
-                String replacement = variables.get(matcher.group(1));
-                // quote to work properly with $ and {,} signs
-                matcher.appendReplacement(buffer, replacement != null ? Matcher.quoteReplacement(replacement) : "null");
-            }
+    int renderMarkdownFiles(File inputDirectory, RenderingContext context) throws MojoExecutionException {
+        final RenderQueue queue = createRenderQueue(context);
+        try {
+            walkMarkdownFiles(inputDirectory, new MarkdownFileVisitor() {
+                @Override
+                public boolean visit(MarkdownDTO dto) throws MojoExecutionException {
+                    return queue.submit(dto);
+                }
+            });
+            return queue.finish();
+        } finally {
+            queue.cancel();
         }
-        matcher.appendTail(buffer);
-        return buffer.toString();
+    }
+
+    private RenderQueue createRenderQueue(final RenderingContext context) {
+        int threadCount = getThreadCount();
+        getLog().debug("Rendering markdown files using " + threadCount + " threads");
+        // two files per thread keep the workers busy while the next directory is read
+        return new RenderQueue(new RenderQueue.Renderer() {
+            @Override
+            public boolean render(MarkdownDTO dto) throws MojoExecutionException {
+                return processMarkdownFile(dto, context);
+            }
+        }, threadCount, 2 * threadCount);
+    }
+
+    /**
+     * @param baseDepth number of separators in the absolute path of the input directory
+     */
+    MarkdownDTO createMarkdownDTO(File inputDirectory, int baseDepth, File file) {
+        getLog().debug("File getName() " + file.getName());
+        getLog().debug("File getAbsolutePath() " + file.getAbsolutePath());
+        getLog().debug("File getPath() " + file.getPath());
+
+        MarkdownDTO dto = new MarkdownDTO();
+        dto.markdownFile = file;
+
+        dto.folderDepth = StringUtils.countMatches(file.getAbsolutePath(), File.separator) - (baseDepth + 1);
+
+        String inputFileExtension = FilenameUtils.getExtension(file.getName());
+
+        dto.htmlFile = new File(
+                recursiveInput
+                        ? outputDirectory + File.separator
+                                + file.getParentFile().getPath().substring(inputDirectory.getPath().length())
+                                + File.separator + file.getName().replaceAll(
+                                        "\\." + inputFileExtension,
+                                        "\\." + outputFileExtension)
+                        : outputDirectory + File.separator + file.getName().replaceAll("\\." + inputFileExtension,
+                                "\\." + outputFileExtension));
+
+        getLog().debug("File htmlFile() " + dto.htmlFile);
+        return dto;
     }
 
     /**
-     * Going through list of DTOs and parsing the markdown into HTML.
-     * Add header and footer to the big String.
+     * Build the parser, renderer and templates for the configured options. The context must be closed with
+     * {@link #closeRenderingContext} once all the pages are rendered.
      *
-     * @throws MojoExecutionException Unable to write file
+     * @param manifest the manifest of an incremental build or <code>null</code>
+     * @throws MojoExecutionException Invalid options or unable to read header or footer
      */
-    private void processMarkdown(List<MarkdownDTO> markdownDTOs,
-                                 int pegdownOptions,
-                                 MutableDataHolder flexmarkParserOptions,
-                                 MutableDataHolder flexmarkRendererOptions,
-                                 final Map<String, MutableAttributes> attributesMap
-    ) throws MojoExecutionException {
+    RenderingContext createRenderingContext(final int pegdownOptions, BuildManifest manifest) throws MojoExecutionException {
         getLog().debug("Process Markdown");
         getLog().debug("inputEncoding: '" + getInputEncoding() + "', outputEncoding: '" + getOutputEncoding() + "'");
         getLog().debug("applyFiltering: " + applyFiltering);
 
+        final boolean needsHeaderIds = needsHeaderIds();
+        String flexmarkFingerprint = getFlexmarkFingerprint(pegdownOptions, needsHeaderIds);
+        FlexmarkCache.Flexmark flexmark;
+        try {
+            flexmark = FlexmarkCache.get(flexmarkFingerprint, new FlexmarkCache.Factory() {
+                @Override
+                public FlexmarkCache.Flexmark build() {
+                    return buildFlexmark(pegdownOptions, needsHeaderIds);
+                }
+            });
+        } catch (IllegalArgumentException e) {
+            // invalid options, like an unknown attribute selector property, fail before any page is rendered
+            throw new MojoExecutionException(e.getMessage(), e);
+        }
+        final RenderingContext context = new RenderingContext(flexmark.parser, flexmark.renderer, manifest,
+                Charset.forName(getOutputEncoding()));
+        context.flexmarkFingerprint = flexmarkFingerprint;
+        context.headerIds = flexmark.headerIds;
+        context.outputFormats = OutputFormat.parseList(outputFormats);
+        context.precompressor = createPrecompressor();
+        compileTemplates(context);
+        if (parsingTimeoutInMillis != null && parsingTimeoutInMillis > 0) {
+            // one parser thread per rendering thread, idle ones are stopped
+            int threads = getThreadCount();
+            ThreadPoolExecutor watchdog = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(), new RenderThreadFactory("md-page-generator-parser-"));
+            watchdog.allowCoreThreadTimeOut(true);
+            context.watchdog = watchdog;
+        }
+        return context;
+    }
+
+    /**
+     * Build the parser and renderer for the configured options. Called only if the {@link FlexmarkCache} has none
+     * for the same options yet.
+     */
+    private FlexmarkCache.Flexmark buildFlexmark(int pegdownOptions, boolean needsHeaderIds) {
+        MutableDataHolder flexmarkParserOptions = getFlexmarkParserOptions(this.flexmarkParserOptions);
+        MutableDataHolder flexmarkRendererOptions = getFlexmarkRendererOptions(this.flexmarkRendererOptions);
+
         MutableDataHolder finalFlexmarkOptions = PegdownOptionsAdapter.flexmarkOptions(pegdownOptions).toMutable();
         finalFlexmarkOptions.setAll(flexmarkParserOptions);
         finalFlexmarkOptions.setAll(flexmarkRendererOptions);
@@ -488,13 +944,30 @@ public class MdPageGeneratorMojo extends AbstractMojo {
             extensions.add(PageGeneratorExtension.create());
         }
 
-        if (!attributesMap.isEmpty()) {
-        	finalFlexmarkOptions.set(AttributesExtension.ATTRIBUTE_MAP, attributesMap);
+        AttributeRules attributeRules = processAttributes(attributes, extensions);
+        if (!attributeRules.isEmpty()) {
+        	finalFlexmarkOptions.set(AttributesExtension.ATTRIBUTE_RULES, attributeRules);
+        	finalFlexmarkOptions.set(AttributesExtension.ATTRIBUTE_MAP, attributeRules.toAttributeMap());
             extensions.add(AttributesExtension.create());
         }
 
         finalFlexmarkOptions.set(Parser.EXTENSIONS, extensions);
 
+        // anchor links with ids already give the headings their ids, rendering them as well would duplicate them
+        boolean anchorIds = false;
+        for (Extension extension : extensions) {
+            anchorIds |= extension instanceof AnchorLinkExtension
+                    && AnchorLinkExtension.ANCHORLINKS_SET_ID.get(finalFlexmarkOptions);
+        }
+        if (needsHeaderIds) {
+            finalFlexmarkOptions.set(HtmlRenderer.GENERATE_HEADER_ID, true);
+            if (!anchorIds) {
+                finalFlexmarkOptions.set(HtmlRenderer.RENDER_HEADER_ID, true);
+            }
+        }
+        boolean headerIds = HtmlRenderer.GENERATE_HEADER_ID.get(finalFlexmarkOptions)
+                && (anchorIds || HtmlRenderer.RENDER_HEADER_ID.get(finalFlexmarkOptions));
+
         if (getLog().isDebugEnabled()) {
             StringBuilder finalOptions = new StringBuilder("final flexmark options: ");
             for (DataKeyBase<?> opt : finalFlexmarkOptions.getKeys()) {
@@ -504,73 +977,550 @@ public class MdPageGeneratorMojo extends AbstractMojo {
             getLog().debug(finalOptions.toString());
         }
 
-        Parser parser = Parser.builder(finalFlexmarkOptions).build();
-        HtmlRenderer renderer = HtmlRenderer.builder(finalFlexmarkOptions).build();
+        return new FlexmarkCache.Flexmark(Parser.builder(finalFlexmarkOptions).build(),
+                HtmlRenderer.builder(finalFlexmarkOptions).build(), headerIds);
+    }
 
-        for (MarkdownDTO dto : markdownDTOs) {
-            getLog().debug("dto: " + dto);
+    /**
+     * @return whether the anchors collected from the pages are linked to, so the headings must be given their ids
+     * @throws MojoExecutionException Unable to read header or footer
+     */
+    private boolean needsHeaderIds() throws MojoExecutionException {
+        return LinkIndex.Mode.parse(linkValidation) != LinkIndex.Mode.OFF || searchIndex || navigationFile != null
+                || readTemplateForFingerprint(headerHtmlFile).contains(HtmlTemplate.TOC_TOKEN)
+                || readTemplateForFingerprint(footerHtmlFile).contains(HtmlTemplate.TOC_TOKEN);
+    }
 
-            try {
-                String headerHtml = "";
-                String footerHtml = "";
+    /**
+     * @return the ids the renderer gives the headings of the page, as it is built from the same options, or
+     * <code>null</code> if it gives them none
+     */
+    private static HeaderIdGenerator createHeaderIds(Document document, RenderingContext context) {
+        if (!context.headerIds) {
+            return null;
+        }
+        HeaderIdGenerator headerIds = new HeaderIdGenerator(document);
+        headerIds.generateIds(document);
+        return headerIds;
+    }
 
-                try {
-                    if (StringUtils.isNotEmpty(headerHtmlFile)) {
-                        headerHtml = FileUtils.readFileToString(new File(headerHtmlFile), getInputEncoding());
-                        headerHtml = addTitleToHtmlFile(headerHtml, dto.title);
-                        headerHtml = replaceVariables(headerHtml, dto.substitutes);
-                        headerHtml = updateRelativePaths(headerHtml, dto.folderDepth);
+    RenderingContext createRenderingContext() throws MojoExecutionException {
+        return createRenderingContext(getPegdownExtensions(pegdownExtensions), null);
+    }
+
+    /**
+     * Compile the templates again after they changed. A table of contents added to or removed from them decides
+     * whether the headings are rendered with their ids, in which case the context is replaced by a new one.
+     *
+     * @param context a context of {@link #createRenderingContext()}
+     * @return the context to render with from now on, the given one is closed if it is replaced
+     * @throws MojoExecutionException Unable to read header or footer
+     */
+    RenderingContext reloadTemplates(RenderingContext context) throws MojoExecutionException {
+        int pegdownOptions = getPegdownExtensions(pegdownExtensions);
+        if (getFlexmarkFingerprint(pegdownOptions, needsHeaderIds()).equals(context.flexmarkFingerprint)) {
+            compileTemplates(context);
+            return context;
+        }
+        RenderingContext reloaded = createRenderingContext(pegdownOptions, context.manifest);
+        closeRenderingContext(context);
+        return reloaded;
+    }
+
+    void closeRenderingContext(RenderingContext context) {
+        if (context.watchdog != null) {
+            context.watchdog.shutdownNow();
+        }
+    }
+
+    /**
+     * Read, parse and render a single markdown file and write the resulting html file.
+     *
+     * @return <code>false</code> if the html file was up to date and not generated again
+     * @throws MojoExecutionException Unable to write file
+     */
+    boolean processMarkdownFile(MarkdownDTO dto, RenderingContext context) throws MojoExecutionException {
+        getLog().debug("dto: " + dto);
+
+        BuildManifest manifest = context.manifest;
+        dto.timing = report.page(dto.markdownFile);
+        try {
+            Path path = dto.markdownFile.toPath();
+            long size = Files.size(path);
+            if (maxInputSize != null && size > maxInputSize) {
+                throw new MojoExecutionException("Markdown file " + dto.markdownFile + " is " + size
+                        + " bytes, the maximum is " + maxInputSize + " bytes");
+            }
+            byte[] source = null;
+            ByteBuffer mappedSource = null;
+            if (largeFileThreshold > 0 && size >= largeFileThreshold && markdownFilterWrappers == null) {
+                mappedSource = MappedMarkdown.map(path);
+                dto.markdownSize = mappedSource.remaining();
+            } else {
+                source = Files.readAllBytes(path);
+                dto.markdownSize = source.length;
+            }
+            dto.timing.read(dto.markdownSize);
+            CharSequence text = null;
+            if (markdownFilterWrappers != null) {
+                GenerationEvent filtering = GenerationEvent.begin(GenerationEvent.Stage.FILTERING);
+                String filtered = filterMarkdown(new String(source, getInputEncoding()));
+                filtering.end(dto.markdownFile, dto.markdownSize, dto.folderDepth);
+                text = filtered;
+                if (manifest != null) {
+                    // the filtered content depends on properties that may change between builds
+                    source = filtered.getBytes(StandardCharsets.UTF_8);
+                }
+            }
+            String hash = null;
+            boolean upToDate = false;
+            if (manifest != null) {
+                hash = mappedSource != null ? manifest.hash(mappedSource) : manifest.hash(source);
+                if (manifest.isUpToDate(dto.htmlFile, hash, getGeneratedFiles(dto, context))) {
+                    getLog().debug("File is up to date: " + dto.htmlFile);
+                    LinkIndex.Page page = context.linkIndex != null ? manifest.getPage(dto.htmlFile) : null;
+                    if (page != null) {
+                        context.linkIndex.add(dto.htmlFile, page);
                     }
-                    if (StringUtils.isNotEmpty(footerHtmlFile)) {
-                        footerHtml = FileUtils.readFileToString(new File(footerHtmlFile), getInputEncoding());
-                        footerHtml = replaceVariables(footerHtml, dto.substitutes);
-                        footerHtml = updateRelativePaths(footerHtml, dto.folderDepth);
+                    SiteNavigation.Page navigationPage = context.navigation != null ? manifest.getNavigation(dto.htmlFile) : null;
+                    if (navigationPage != null) {
+                        context.navigation.add(dto.htmlFile, navigationPage);
                     }
-                } catch (FileNotFoundException e) {
-                    if (failIfFilesAreMissing) {
-                        throw e;
-                    } else {
-                        getLog().warn("header and/or footer file is missing.");
-                        headerHtml = "";
-                        footerHtml = "";
+                    if (context.searchIndex == null) {
+                        dto.timing.finished(false);
+                        return false;
                     }
-                } catch (Exception e) {
-                    throw new MojoExecutionException("Error while processing header/footer: " + e.getMessage(), e);
+                    // the search index is written from scratch, so the page is parsed but not rendered again
+                    upToDate = true;
                 }
+            }
 
-                String markdown = FileUtils.readFileToString(dto.markdownFile, getInputEncoding());
-                if (removeMarkdownHeaders) {
-                    markdown = removeMarkdownHeader(markdown);
+            if (mappedSource != null) {
+                text = MappedMarkdown.decode(mappedSource, Charset.forName(getInputEncoding()));
+            } else if (text == null) {
+                text = new String(source, getInputEncoding());
+            }
+            MarkdownSource markdownSource = MarkdownSource.scan(text, !alwaysUseDefaultTitle, applyFiltering,
+                    removeMarkdownHeaders);
+            dto.title = markdownSource.getTitle() != null ? markdownSource.getTitle() : defaultTitle;
+            dto.substitutes = markdownSource.getSubstitutes();
+            if (getLog().isDebugEnabled()) {
+                for (Entry<String, String> substitute : dto.substitutes.entrySet()) {
+                    getLog().debug("Substitute: '" + substitute.getKey() + "' -> '" + substitute.getValue() + "'");
                 }
-                markdown = replaceVariables(markdown, dto.substitutes);
+            }
+
+            CharSequence markdown = replaceVariables(markdownSource.getBody(), dto.substitutes);
+            if (maxNestingDepth != null) {
+                checkNestingDepth(dto, NestingDepth.of(markdown));
+            }
 
-                String markdownAsHtml;
+            if (upToDate) {
+                Document document = context.parser.parse(BasedSequence.of(markdown));
+                context.searchIndex.add(dto.htmlFile, dto.title, document, createHeaderIds(document, context));
+                dto.timing.finished(false);
+                return false;
+            } else if (context.watchdog != null) {
+                renderWithTimeout(dto, markdown, context);
+            } else {
+                render(dto, markdown, context);
+            }
 
-                Node document = parser.parse(markdown);
-                markdownAsHtml = renderer.render(document);
+            if (manifest != null) {
+                manifest.record(dto.htmlFile, hash, getGeneratedFiles(dto, context));
+            }
+            dto.timing.finished(true);
+            return true;
+        } catch (IOException e) {
+            getLog().error("Error : " + e.getMessage(), e);
+            throw new MojoExecutionException("Unable to write file " + e.getMessage(), e);
+        }
+    }
 
-                String data = headerHtml + markdownAsHtml + footerHtml;
-                FileUtils.writeStringToFile(dto.htmlFile, data, getOutputEncoding());
-            } catch (MojoExecutionException e) {
-                throw e;
-            } catch (IOException e) {
-                getLog().error("Error : " + e.getMessage(), e);
-                throw new MojoExecutionException("Unable to write file " + e.getMessage(), e);
+    private void render(MarkdownDTO dto, CharSequence markdown, RenderingContext context) throws IOException, MojoExecutionException {
+        GenerationEvent parse = GenerationEvent.begin(GenerationEvent.Stage.PARSE);
+        // flexmark parses any character sequence in place, a mapped file is not copied into a string
+        Document document = context.parser.parse(BasedSequence.of(markdown));
+        parse.end(dto.markdownFile, dto.markdownSize, dto.folderDepth);
+        if (maxNestingDepth != null) {
+            checkNestingDepth(dto, NestingDepth.of(document));
+        }
+        HeaderIdGenerator headerIds = createHeaderIds(document, context);
+        if (context.linkIndex != null) {
+            LinkIndex.Page page = LinkIndex.Page.of(document, headerIds);
+            context.linkIndex.add(dto.htmlFile, page);
+            if (context.manifest != null) {
+                context.manifest.recordPage(dto.htmlFile, page);
+            }
+        }
+        if (context.searchIndex != null) {
+            context.searchIndex.add(dto.htmlFile, dto.title, document, headerIds);
+        }
+        if (context.navigation != null || context.header.hasTableOfContents() || context.footer.hasTableOfContents()) {
+            SiteNavigation.Page page = SiteNavigation.Page.of(dto.title, document, headerIds);
+            dto.tableOfContents = page.getTableOfContents();
+            if (context.navigation != null) {
+                context.navigation.add(dto.htmlFile, page);
+                if (context.manifest != null) {
+                    context.manifest.recordNavigation(dto.htmlFile, page);
+                }
+            }
+        }
+        dto.timing.parsed();
+        if (dto.html != null) {
+            writeHtmlFile(dto, document, context);
+            return;
+        }
+        for (OutputFormat format : context.outputFormats) {
+            if (format == OutputFormat.PAGE) {
+                writeHtmlFile(dto, document, context);
+            } else {
+                writeOutputFile(format, dto, document, context);
             }
         }
     }
 
-    private String removeMarkdownHeader(String markdown) {
+    /**
+     * @return the files generated from the markdown file in the configured formats
+     */
+    static List<File> getOutputFiles(MarkdownDTO dto, RenderingContext context) {
+        List<File> files = new ArrayList<>(context.outputFormats.size());
+        for (OutputFormat format : context.outputFormats) {
+            files.add(format.getFile(dto.htmlFile));
+        }
+        return files;
+    }
 
-        Matcher matcher = Pattern.compile("^---\\s*\n(.*?)\n---\\s*\n(.*?)$", Pattern.DOTALL).matcher(markdown);
-        if (!matcher.find()) {
-            return markdown;
+    /**
+     * @return the files generated from the markdown file in the configured formats and their sidecars
+     */
+    private static List<File> getGeneratedFiles(MarkdownDTO dto, RenderingContext context) {
+        List<File> files = getOutputFiles(dto, context);
+        if (context.precompressor != null) {
+            for (File file : getOutputFiles(dto, context)) {
+                files.addAll(context.precompressor.getSidecars(file));
+            }
         }
+        return files;
+    }
+
+    /**
+     * Parse and render on a watchdog thread. Flexmark cannot be interrupted while parsing, so a document that times
+     * out is abandoned on its daemon thread, and the cancelled thread writes nothing once it is done parsing.
+     *
+     * @throws IOException            Unable to write file
+     * @throws MojoExecutionException Parsing timed out or failed
+     */
+    private void renderWithTimeout(final MarkdownDTO dto, final CharSequence markdown, final RenderingContext context)
+            throws IOException, MojoExecutionException {
+        Future<Void> task = context.watchdog.submit(new Callable<Void>() {
+            @Override
+            public Void call() throws IOException, MojoExecutionException {
+                render(dto, markdown, context);
+                return null;
+            }
+        });
         try {
-            return matcher.group(2);
-        } catch (IllegalArgumentException e) {
-            return markdown;
+            task.get(parsingTimeoutInMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            task.cancel(true);
+            ParsingTimeoutException timeout = new ParsingTimeoutException(dto.markdownFile, parsingTimeoutInMillis);
+            throw new MojoExecutionException(timeout.getMessage(), timeout);
+        } catch (InterruptedException e) {
+            task.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException("Interrupted while rendering " + dto.markdownFile, e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw unwrapRenderFailure(e.getCause());
+        }
+    }
+
+    private void checkNestingDepth(MarkdownDTO dto, int depth) throws MojoExecutionException {
+        if (depth > maxNestingDepth) {
+            throw new MojoExecutionException("Markdown file " + dto.markdownFile + " nests " + depth
+                    + " levels deep, the maximum is " + maxNestingDepth);
+        }
+    }
+
+    /**
+     * Apply the Maven property filtering to the content of a markdown file.
+     *
+     * @throws IOException Unable to filter
+     */
+    private String filterMarkdown(String markdown) throws IOException {
+        Reader reader = new StringReader(markdown);
+        for (FilterWrapper filterWrapper : markdownFilterWrappers) {
+            reader = filterWrapper.getReader(reader);
+        }
+        try (Reader filtered = reader) {
+            return IOUtils.toString(filtered);
+        }
+    }
+
+    /**
+     * Stream the header, the rendered markdown and the footer straight to the html file, so the rendered page is
+     * never held in memory as a whole. A partially written file is removed if rendering fails. Pages rendered to
+     * memory for the serve goal are written to <code>dto.html</code> instead.
+     *
+     * @throws IOException Unable to write file
+     */
+    private void writeHtmlFile(MarkdownDTO dto, Node document, RenderingContext context) throws IOException {
+        String siteBase = getSiteBasePrefix(dto.folderDepth);
+        if (context.watchdog != null && Thread.currentThread().isInterrupted()) {
+            throw new InterruptedIOException("Rendering " + dto.markdownFile + " was cancelled");
+        }
+        GenerationEvent write = GenerationEvent.begin(GenerationEvent.Stage.WRITE);
+        boolean written = false;
+        try (OutputStream out = dto.html != null ? dto.html
+                : new BufferedOutputStream(dto.timing.output(openOutputFile(dto.htmlFile, context)))) {
+            writeTemplate(context.header, out, dto, siteBase);
+            Writer writer = new OutputStreamWriter(out, context.outputCharset);
+            if (context.watchdog != null) {
+                writer = new CancellableWriter(writer);
+            }
+            GenerationEvent render = GenerationEvent.begin(GenerationEvent.Stage.RENDER);
+            context.renderer.render(document, writer);
+            writer.flush();
+            render.end(dto.markdownFile, dto.markdownSize, dto.folderDepth);
+            writeTemplate(context.footer, out, dto, siteBase);
+            written = true;
+        } finally {
+            if (!written && dto.html == null) {
+                deleteOutputFile(dto.htmlFile, context.precompressor);
+            }
+        }
+        if (write.isRecording()) {
+            write.end(dto.htmlFile, dto.html != null ? dto.html.size() : dto.htmlFile.length(), dto.folderDepth);
+        }
+    }
+
+    /**
+     * Write a format other than the page from the parsed document. A partially written file is removed if rendering
+     * fails.
+     *
+     * @throws IOException Unable to write file
+     */
+    private void writeOutputFile(OutputFormat format, MarkdownDTO dto, Node document, RenderingContext context)
+            throws IOException {
+        File file = format.getFile(dto.htmlFile);
+        boolean written = false;
+        // JSON is always UTF-8 encoded, the other formats use the output encoding
+        Charset charset = format == OutputFormat.JSON ? StandardCharsets.UTF_8 : context.outputCharset;
+        try (Writer out = new OutputStreamWriter(new BufferedOutputStream(openOutputFile(file, context)), charset)) {
+            Writer writer = context.watchdog != null ? new CancellableWriter(out) : out;
+            switch (format) {
+                case FRAGMENT:
+                    context.renderer.render(document, writer);
+                    break;
+                case TEXT:
+                    OutputFormat.writeText(document, writer);
+                    break;
+                case JSON:
+                    OutputFormat.writeJson(dto.title, document, new JsonWriter(writer));
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown output format " + format);
+            }
+            writer.flush();
+            written = true;
+        } finally {
+            if (!written) {
+                deleteOutputFile(file, context.precompressor);
+            }
+        }
+    }
+
+    /**
+     * @return a stream writing the file, and its sidecars if they are precompressed
+     */
+    private static OutputStream openOutputFile(File file, RenderingContext context) throws IOException {
+        return context.precompressor != null ? context.precompressor.open(file) : FileUtils.openOutputStream(file);
+    }
+
+    /**
+     * Remove a generated file with its sidecars.
+     *
+     * @param precompressor the writer of the sidecars or <code>null</code>
+     * @return whether the file was removed
+     */
+    static boolean deleteOutputFile(File file, Precompressor precompressor) {
+        if (precompressor != null) {
+            precompressor.delete(file);
+        }
+        return FileUtils.deleteQuietly(file);
+    }
+
+    private void writeTemplate(HtmlTemplate template, OutputStream out, MarkdownDTO dto, String siteBase) throws IOException {
+        GenerationEvent fill = GenerationEvent.begin(GenerationEvent.Stage.TEMPLATE);
+        template.write(out, dto.title, dto.substitutes, siteBase, dto.tableOfContents);
+        fill.end(dto.markdownFile, dto.markdownSize, dto.folderDepth);
+    }
+
+    /**
+     * Read the header and footer html files and compile them once for all the pages.
+     *
+     * @throws MojoExecutionException Unable to read header or footer
+     */
+    void compileTemplates(RenderingContext context) throws MojoExecutionException {
+        try {
+            Charset outputCharset = context.outputCharset;
+            String headerHtml = readTemplate(headerHtmlFile);
+            String footerHtml = readTemplate(footerHtmlFile);
+            if (headerHtml == null || footerHtml == null) {
+                getLog().warn("header and/or footer file is missing.");
+                return;
+            }
+            context.header = HtmlTemplate.compile(headerHtml, true, applyFiltering, outputCharset);
+            context.footer = HtmlTemplate.compile(footerHtml, false, applyFiltering, outputCharset);
+        } catch (MojoExecutionException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new MojoExecutionException("Error while processing header/footer: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * @return the template, an empty string if no file is configured or <code>null</code> if the file is missing
+     */
+    private String readTemplate(String templateFile) throws IOException, MojoExecutionException {
+        if (StringUtils.isEmpty(templateFile)) {
+            return "";
+        }
+        File file = new File(templateFile);
+        if (!file.isFile()) {
+            if (failIfFilesAreMissing) {
+                throw new MojoExecutionException("Unable to write file " + file + " (No such file or directory)",
+                        new FileNotFoundException(file.getPath()));
+            }
+            return null;
+        }
+        return FileUtils.readFileToString(file, getInputEncoding());
+    }
+
+    static MojoExecutionException unwrapRenderFailure(Throwable cause) {
+        if (cause instanceof MojoExecutionException) {
+            return (MojoExecutionException) cause;
+        }
+        if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+        }
+        if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+        return new MojoExecutionException("Unable to render markdown file " + cause.getMessage(), cause);
+    }
+
+    private boolean isIncremental() {
+        return incremental && incrementalManifest != null;
+    }
+
+    private BuildManifest loadBuildManifest(String configurationFingerprint) throws MojoExecutionException {
+        getLog().debug("Incremental build manifest: " + incrementalManifest);
+        try {
+            return BuildManifest.load(incrementalManifest, new File(outputDirectory), configurationFingerprint);
+        } catch (IOException e) {
+            throw new MojoExecutionException("Unable to read incremental build manifest " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Remove the files of deleted markdown sources and the sidecars no longer written, and store the manifest for
+     * the next build.
+     *
+     * @throws MojoExecutionException Unable to write the manifest
+     */
+    private void updateBuildManifest(BuildManifest manifest) throws MojoExecutionException {
+        Precompressor precompressor = createPrecompressor();
+        for (File staleOutput : manifest.getStaleOutputs()) {
+            if (deleteOutputFile(staleOutput, precompressor)) {
+                getLog().info("Removed " + staleOutput + ", it is no longer generated");
+            }
         }
+        try {
+            manifest.save();
+        } catch (IOException e) {
+            throw new MojoExecutionException("Unable to write incremental build manifest " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Everything besides the markdown source that affects the generated files. The substitutes are defined in the
+     * markdown source and are therefore covered by its hash.
+     *
+     * @param pegdownOptions resolved pegdown extensions
+     * @return fingerprint of the configuration
+     * @throws MojoExecutionException Unable to read header or footer
+     */
+    private String getConfigurationFingerprint(int pegdownOptions) throws MojoExecutionException {
+        StringBuilder fingerprint = new StringBuilder(getFlexmarkFingerprint(pegdownOptions, needsHeaderIds()));
+        appendFingerprint(fingerprint, "header", readTemplateForFingerprint(headerHtmlFile));
+        appendFingerprint(fingerprint, "footer", readTemplateForFingerprint(footerHtmlFile));
+        appendFingerprint(fingerprint, "failIfFilesAreMissing", failIfFilesAreMissing);
+        appendFingerprint(fingerprint, "defaultTitle", defaultTitle);
+        appendFingerprint(fingerprint, "alwaysUseDefaultTitle", alwaysUseDefaultTitle);
+        appendFingerprint(fingerprint, "removeMarkdownHeaders", removeMarkdownHeaders);
+        appendFingerprint(fingerprint, "applyFiltering", applyFiltering);
+        // the manifest only holds the links of the pages generated while the links were validated
+        appendFingerprint(fingerprint, "linkValidation", LinkIndex.Mode.parse(linkValidation) != LinkIndex.Mode.OFF);
+        appendFingerprint(fingerprint, "outputFormats", OutputFormat.parseList(outputFormats));
+        appendFingerprint(fingerprint, "precompress", Precompressor.Codec.parseList(precompress));
+        appendFingerprint(fingerprint, "navigation", navigationFile != null || StringUtils.isNotEmpty(sitemapBaseUrl));
+        appendFingerprint(fingerprint, "inputEncoding", getInputEncoding());
+        appendFingerprint(fingerprint, "outputEncoding", getOutputEncoding());
+        return fingerprint.toString();
+    }
+
+    /**
+     * Canonical form of the options the flexmark parser and renderer are built from.
+     *
+     * @param pegdownOptions resolved pegdown extensions
+     * @param needsHeaderIds whether the headings must be rendered with their ids
+     * @return fingerprint of the flexmark options
+     */
+    private String getFlexmarkFingerprint(int pegdownOptions, boolean needsHeaderIds) {
+        StringBuilder fingerprint = new StringBuilder();
+        appendFingerprint(fingerprint, "pegdownOptions", pegdownOptions);
+        appendFingerprint(fingerprint, "flexmarkParserOptions", getSortedOptionNames(flexmarkParserOptions));
+        appendFingerprint(fingerprint, "flexmarkRendererOptions", getSortedOptionNames(flexmarkRendererOptions));
+        appendFingerprint(fingerprint, "attributes", attributes == null ? "" : StringUtils.join(attributes, "\n"));
+        appendFingerprint(fingerprint, "transformRelativeMarkdownLinks", transformRelativeMarkdownLinks);
+        appendFingerprint(fingerprint, "headerIds", needsHeaderIds);
+        if (transformRelativeMarkdownLinks) {
+            appendFingerprint(fingerprint, "inputFileExtensions", StringUtils.join(getInputFileExtensions(), ","));
+        }
+        return fingerprint.toString();
+    }
+
+    private static void appendFingerprint(StringBuilder fingerprint, String name, Object value) {
+        fingerprint.append(name).append('=').append(value).append('\n');
+    }
+
+    private static String getSortedOptionNames(String options) {
+        if (options == null) {
+            return "";
+        }
+        return StringUtils.join(new TreeSet<>(Arrays.asList(options.trim().split("\\s*,\\s*"))).iterator(), ",");
+    }
+
+    private String readTemplateForFingerprint(String templateFile) throws MojoExecutionException {
+        if (StringUtils.isEmpty(templateFile) || !new File(templateFile).isFile()) {
+            return "";
+        }
+        try {
+            return FileUtils.readFileToString(new File(templateFile), getInputEncoding());
+        } catch (IOException e) {
+            throw new MojoExecutionException("Unable to read file " + e.getMessage(), e);
+        }
+    }
+
+    private int getThreadCount() {
+        if (threads == null || threads <= 0) {
+            return Runtime.getRuntime().availableProcessors();
+        }
+        return threads;
     }
 
     private String getInputEncoding() {
@@ -597,56 +1547,36 @@ public class MdPageGeneratorMojo extends AbstractMojo {
         return outputFileExtension.trim().split("\\s*,\\s*");
     }
 
+    boolean isRecursiveInput() {
+        return recursiveInput;
+    }
+
     /**
-     * Get the first h1 for the title.
-     *
-     * @param raw The markdown as a list of strings
-     * @return The first # h1 in the Markdown file
+     * @return the absolute and normalized input directory
+     * @throws MojoExecutionException The input directory does not exist
      */
-    private String getTitle(List<String> raw) {
-        if (raw == null) {
-            return defaultTitle;
-        }
-        String previousLine = "";
-        for (String line : raw) {
-            line = line.trim();
-            if (line.startsWith("#")) {
-                line = line.replace("#", "");
-                return line;
-            }
-            //Checking for Setext style headers.
-            //Line is considered a match if it passes:
-            //Starts with either = or -
-            //It has the same number of characters as the previous line
-            //It only contains - or = and nothing else.
-            //
-            //If there is a match we consider the previous line to be the title.
-            if ((line.startsWith("=") && StringUtils.countMatches(line, "=") == previousLine.length() && line.matches("^=+$"))
-                    || (line.startsWith("-") && StringUtils.countMatches(line, "-") == previousLine.length() && line.matches("^-+$"))) {
-                return previousLine;
-            }
-            previousLine = line;
+    File getInputDirectoryFile() throws MojoExecutionException {
+        File directory = new File(inputDirectory).toPath().toAbsolutePath().normalize().toFile();
+        if (!directory.isDirectory()) {
+            throw new MojoExecutionException("Input directory " + directory + " does not exist");
         }
-        return defaultTitle;
+        return directory;
     }
 
     /**
-     * Adds the title to the html file.
+     * Watch the input directory, header and footer of the goals that keep running.
      *
-     * @param html  The HTML string
-     * @param title The title
+     * @throws IOException Unable to watch the directories
      */
-    private String addTitleToHtmlFile(String html, String title) {
-        if (html == null) {
-            return html;
-        }
-        if (title != null) {
-            getLog().debug("Setting the title in the HTML file to: " + title);
-            return html.replaceFirst("titleToken", title);
-        } else {
-            getLog().debug("Title was null, setting the title in the HTML file to an empty string");
-            return html.replaceFirst("titleToken", "");
+    SourceWatcher createSourceWatcher(File inputDirectory) throws IOException {
+        List<File> templateFiles = new ArrayList<>();
+        for (String templateFile : new String[]{headerHtmlFile, footerHtmlFile}) {
+            if (StringUtils.isNotEmpty(templateFile)) {
+                templateFiles.add(new File(templateFile));
+            }
         }
+        return new SourceWatcher(inputDirectory.toPath(), new File(outputDirectory).toPath(), templateFiles,
+                getInputFileExtensions(), recursiveInput);
     }
 
     /**
@@ -656,36 +1586,20 @@ public class MdPageGeneratorMojo extends AbstractMojo {
      * @param variables      variable map
      * @return the updated html
      */
-    private String replaceVariables(String initialContent, Map<String, String> variables) {
-        String newContent = initialContent;
+    private CharSequence replaceVariables(CharSequence initialContent, Map<String, String> variables) {
         // Only apply substitution if filtering is enabled and there is actually something to
         // substitute, otherwise just return the original content.
-        if (applyFiltering && newContent != null) {
-            newContent = newContent.replaceAll("\\{\\w*=.*}", "");
-            if (variables != null) {
-                newContent = substituteVariables(newContent, "\\$\\{(.+?)\\}", variables);
-            }
+        if (applyFiltering && initialContent instanceof String) {
+            return VariableSubstitutor.substitute((String) initialContent, variables);
+        } else if (applyFiltering && initialContent != null
+                && VariableSubstitutor.needsSubstitution(initialContent, variables)) {
+            // a mapped page is only copied when there is something to substitute
+            StringBuilder substituted = new StringBuilder(initialContent.length());
+            VariableSubstitutor.substitute(initialContent, variables, substituted);
+            return substituted;
         }
 
-        return newContent;
-    }
-
-    private static boolean isVariableLine(String line) {
-        return line.matches("^\\{.*=.*\\}$");
-    }
-
-    /**
-     * Update relative include paths corresponding to the markdown file's location in the folder structure.
-     *
-     * @param html        The HTML string
-     * @param folderDepth Current markdown file's folder depth
-     */
-    private String updateRelativePaths(String html, int folderDepth) {
-        if (html == null) {
-            return html;
-        }
-        getLog().debug("Updating relative paths in html includes (css, js).");
-        return html.replaceAll("##SITE_BASE##", getSiteBasePrefix(folderDepth));
+        return initialContent;
     }
 
     /**
@@ -707,9 +1621,10 @@ public class MdPageGeneratorMojo extends AbstractMojo {
      *
      * @param fromDir the directory to copy from
      * @param toDir   the directory to copy to
+     * @param copier  copies or links the files
      * @throws MojoExecutionException Unable to copy file
      */
-    private void copyFiles(String fromDir, String toDir) throws MojoExecutionException {
+    private void copyFiles(String fromDir, String toDir, AssetCopier copier, List<File> copiedFiles) throws MojoExecutionException {
         getLog().debug("fromDir=" + fromDir + "; toDir=" + toDir);
         try {
             File fromDirFile = new File(fromDir);
@@ -718,7 +1633,11 @@ public class MdPageGeneratorMojo extends AbstractMojo {
                 while (files.hasNext()) {
                     File file = files.next();
                     if (file.exists()) {
-                        FileUtils.copyFileToDirectory(file, new File(toDir));
+                        GenerationEvent copy = GenerationEvent.begin(GenerationEvent.Stage.COPY);
+                        File target = new File(toDir, file.getName());
+                        copier.copy(file.toPath(), target.toPath());
+                        copiedFiles.add(target);
+                        copy.end(file, copy.isRecording() ? file.length() : 0, 0);
                     } else {
                         getLog().error("File '" + file.getAbsolutePath() + "' does not exist. Skipping copy");
                     }
@@ -729,23 +1648,185 @@ public class MdPageGeneratorMojo extends AbstractMojo {
         }
     }
 
-    private List<File> getFilesAsArray(Iterator<File> iterator) {
-        List<File> files = new ArrayList<>();
-        while (iterator.hasNext()) {
-            files.add(iterator.next());
+    /**
+     * Creates daemon threads for rendering so that a stuck worker never keeps the Maven JVM alive.
+     */
+    static class RenderThreadFactory implements ThreadFactory {
+        private final AtomicInteger threadNumber = new AtomicInteger(1);
+        private final String namePrefix;
+
+        RenderThreadFactory(String namePrefix) {
+            this.namePrefix = namePrefix;
+        }
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, namePrefix + threadNumber.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+    /**
+     * Stops rendering once the rendering thread has been cancelled by the watchdog.
+     */
+    private static class CancellableWriter extends FilterWriter {
+
+        CancellableWriter(Writer out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int c) throws IOException {
+            checkCancelled();
+            super.write(c);
+        }
+
+        @Override
+        public void write(char[] buffer, int offset, int length) throws IOException {
+            checkCancelled();
+            super.write(buffer, offset, length);
+        }
+
+        @Override
+        public void write(String text, int offset, int length) throws IOException {
+            checkCancelled();
+            super.write(text, offset, length);
+        }
+
+        private static void checkCancelled() throws InterruptedIOException {
+            if (Thread.currentThread().isInterrupted()) {
+                throw new InterruptedIOException("Rendering was cancelled");
+            }
+        }
+    }
+
+    /**
+     * Receives the markdown files in the order they are found.
+     */
+    interface MarkdownFileVisitor {
+        /**
+         * @return <code>false</code> to stop walking the input directory
+         */
+        boolean visit(MarkdownDTO dto) throws MojoExecutionException;
+    }
+
+    /**
+     * Carries the failure of a {@link MarkdownFileVisitor} out of the directory walk.
+     */
+    private static class VisitorFailure extends IOException {
+        final MojoExecutionException cause;
+
+        VisitorFailure(MojoExecutionException cause) {
+            super(cause);
+            this.cause = cause;
+        }
+    }
+
+    /**
+     * Renders the pages of {@link #execute()}. The manifest, parser and templates are only prepared once the first
+     * markdown file is found, an input directory without markdown files needs none of them.
+     */
+    private class LazyRenderQueue implements MarkdownFileVisitor {
+        BuildManifest manifest;
+        RenderingContext context;
+        RenderQueue queue;
+
+        @Override
+        public boolean visit(MarkdownDTO dto) throws MojoExecutionException {
+            if (queue == null) {
+                getLog().info("Process Pegdown extension options");
+                int pegdownOptions = getPegdownExtensions(pegdownExtensions);
+                if (isIncremental()) {
+                    manifest = loadBuildManifest(getConfigurationFingerprint(pegdownOptions));
+                }
+
+                getLog().info("Parse Markdown to HTML");
+                context = createRenderingContext(pegdownOptions, manifest);
+                context.linkIndex = createLinkIndex();
+                if (searchIndex) {
+                    context.searchIndex = new SearchIndex(new File(outputDirectory));
+                }
+                context.navigation = createSiteNavigation();
+                queue = createRenderQueue(context);
+            }
+            return queue.submit(dto);
+        }
+
+        void close() {
+            if (queue != null) {
+                queue.cancel();
+            }
+            if (context != null) {
+                closeRenderingContext(context);
+            }
+        }
+    }
+
+    /**
+     * Parser, renderer and templates shared by all the pages of an execution.
+     */
+    static class RenderingContext {
+        final Parser parser;
+        final HtmlRenderer renderer;
+        final BuildManifest manifest;
+        final Charset outputCharset;
+        /**
+         * The options the parser and renderer were built from.
+         */
+        String flexmarkFingerprint;
+        HtmlTemplate header = HtmlTemplate.EMPTY;
+        HtmlTemplate footer = HtmlTemplate.EMPTY;
+        List<OutputFormat> outputFormats = Collections.singletonList(OutputFormat.PAGE);
+        /**
+         * Writes the sidecars of the generated files if they are precompressed.
+         */
+        Precompressor precompressor;
+        ExecutorService watchdog;
+        /**
+         * Collects the heading ids and links of the pages if the links are validated.
+         */
+        LinkIndex linkIndex;
+        /**
+         * Collects the terms of the pages if a search index is written.
+         */
+        SearchIndex searchIndex;
+        /**
+         * Collects the headings of the pages if a navigation tree or a sitemap is written.
+         */
+        SiteNavigation navigation;
+        /**
+         * Whether the renderer gives the headings their ids, the pages have no anchors otherwise.
+         */
+        boolean headerIds;
+
+        RenderingContext(Parser parser, HtmlRenderer renderer, BuildManifest manifest, Charset outputCharset) {
+            this.parser = parser;
+            this.renderer = renderer;
+            this.manifest = manifest;
+            this.outputCharset = outputCharset;
         }
-        return files;
     }
 
     /**
      * Store information about markdown file.
      */
-    private class MarkdownDTO {
+    static class MarkdownDTO {
         String title;
-        Map<String, String> substitutes = new HashMap<>();
+        Map<String, String> substitutes = Collections.emptyMap();
         File htmlFile;
         File markdownFile;
         int folderDepth = 0;
+        long markdownSize;
+        /**
+         * Rendered page when rendering to memory, the html file is not written then.
+         */
+        ByteArrayOutputStream html;
+        /**
+         * Table of contents of the page if the header or footer includes it.
+         */
+        String tableOfContents;
+        TimingReport.PageTiming timing = TimingReport.PageTiming.NONE;
     }
 
     /**
@@ -759,6 +1840,11 @@ public class MdPageGeneratorMojo extends AbstractMojo {
     @Component(role = MavenResourcesFiltering.class, hint = "default")
     protected MavenResourcesFiltering mavenResourcesFiltering;
 
+    @Component(role = MavenFileFilter.class, hint = "default")
+    protected MavenFileFilter mavenFileFilter;
+
+    private List<FilterWrapper> markdownFilterWrappers;
+
     @Parameter
     protected List<String> nonFilteredFileExtensions;
 
@@ -798,47 +1884,7 @@ public class MdPageGeneratorMojo extends AbstractMojo {
 
     private void performMavenPropertyFiltering(final File inputDirectory, final File outputDirectory, final String inputEncoding) throws MojoExecutionException {
         try {
-            List<String> combinedFilters = getCombinedFiltersList();
-
-            List<Resource> resources = new ArrayList<>();
-            final Resource resource = new Resource();
-            resource.setFiltering(true);
-            resource.setDirectory(inputDirectory.getAbsolutePath());
-
-            resources.add(resource);
-            MavenResourcesExecution mavenResourcesExecution = new MavenResourcesExecution(
-                    resources,
-                    outputDirectory,
-                    project,
-                    this.inputEncoding,
-                    combinedFilters,
-                    Collections.<String>emptyList(),
-                    session
-            );
-
-            // mavenResourcesExecution.setEscapeWindowsPaths(escapeWindowsPaths);
-
-            // never include project build filters in this call, since we've already accounted for the POM build filters
-            // above, in getCombinedFiltersList().
-            mavenResourcesExecution.setInjectProjectBuildFilters(false);
-
-            // mavenResourcesExecution.setEscapeString(escapeString);
-            mavenResourcesExecution.setOverwrite(true);
-            // mavenResourcesExecution.setIncludeEmptyDirs(includeEmptyDirs);
-            // mavenResourcesExecution.setSupportMultiLineFiltering(supportMultiLineFiltering);
-            // mavenResourcesExecution.setFilterFilenames(fileNameFiltering);
-            mavenResourcesExecution.setAddDefaultExcludes(addDefaultExcludes);
-
-            // Handle subject of MRESOURCES-99
-            Properties additionalProperties = addSeveralSpecialProperties();
-            mavenResourcesExecution.setAdditionalProperties(additionalProperties);
-
-            // if these are NOT set, just use the defaults, which are '${*}' and '@'.
-            // mavenResourcesExecution.setDelimiters(delimiters, useDefaultDelimiters);
-
-            if (nonFilteredFileExtensions != null) {
-                mavenResourcesExecution.setNonFilteredFileExtensions(nonFilteredFileExtensions);
-            }
+            MavenResourcesExecution mavenResourcesExecution = createMavenResourcesExecution(inputDirectory, outputDirectory);
 
             mavenResourcesFiltering.filterResources(mavenResourcesExecution);
 
@@ -850,6 +1896,64 @@ public class MdPageGeneratorMojo extends AbstractMojo {
         }
     }
 
+    /**
+     * The filter wrappers of the same filtering that {@link #performMavenPropertyFiltering} applies to the copied
+     * files, for filtering markdown content in memory.
+     */
+    private List<FilterWrapper> getMavenPropertyFilterWrappers(final File inputDirectory, final File outputDirectory) throws MojoExecutionException {
+        try {
+            return mavenFileFilter.getDefaultFilterWrappers(createMavenResourcesExecution(inputDirectory, outputDirectory));
+        } catch (MavenFilteringException e) {
+            throw new MojoExecutionException("Failure while processing/filtering markdown sources: " + e.getMessage(), e);
+        }
+    }
+
+    private MavenResourcesExecution createMavenResourcesExecution(final File inputDirectory, final File outputDirectory) {
+        List<String> combinedFilters = getCombinedFiltersList();
+
+        List<Resource> resources = new ArrayList<>();
+        final Resource resource = new Resource();
+        resource.setFiltering(true);
+        resource.setDirectory(inputDirectory.getAbsolutePath());
+
+        resources.add(resource);
+        MavenResourcesExecution mavenResourcesExecution = new MavenResourcesExecution(
+                resources,
+                outputDirectory,
+                project,
+                this.inputEncoding,
+                combinedFilters,
+                Collections.<String>emptyList(),
+                session
+        );
+
+        // mavenResourcesExecution.setEscapeWindowsPaths(escapeWindowsPaths);
+
+        // never include project build filters in this call, since we've already accounted for the POM build filters
+        // above, in getCombinedFiltersList().
+        mavenResourcesExecution.setInjectProjectBuildFilters(false);
+
+        // mavenResourcesExecution.setEscapeString(escapeString);
+        mavenResourcesExecution.setOverwrite(true);
+        // mavenResourcesExecution.setIncludeEmptyDirs(includeEmptyDirs);
+        // mavenResourcesExecution.setSupportMultiLineFiltering(supportMultiLineFiltering);
+        // mavenResourcesExecution.setFilterFilenames(fileNameFiltering);
+        mavenResourcesExecution.setAddDefaultExcludes(addDefaultExcludes);
+
+        // Handle subject of MRESOURCES-99
+        Properties additionalProperties = addSeveralSpecialProperties();
+        mavenResourcesExecution.setAdditionalProperties(additionalProperties);
+
+        // if these are NOT set, just use the defaults, which are '${*}' and '@'.
+        // mavenResourcesExecution.setDelimiters(delimiters, useDefaultDelimiters);
+
+        if (nonFilteredFileExtensions != null) {
+            mavenResourcesExecution.setNonFilteredFileExtensions(nonFilteredFileExtensions);
+        }
+
+        return mavenResourcesExecution;
+    }
+
     /**
      * This solves https://issues.apache.org/jira/browse/MRESOURCES-99.<br/>
      * BUT:<br/>
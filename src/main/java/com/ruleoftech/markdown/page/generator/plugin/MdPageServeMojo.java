@@ -0,0 +1,312 @@
+package com.ruleoftech.markdown.page.generator.plugin;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.commons.io.FilenameUtils;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.codehaus.plexus.util.StringUtils;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Serves a preview of the pages on localhost. A page is rendered from its markdown file when it is requested and
+ * kept in memory until its markdown file, the header or the footer changes, and the files of the
+ * <code>copyDirectories</code> are served straight from the input directory. The <code>copyDirectories</code> are
+ * resolved when the server starts and again when files other than pages change. Nothing is written to the output
+ * directory.
+ * <p>
+ * Maven property filtering is applied in memory.
+ */
+@Mojo(name = "serve", threadSafe = true)
+public class MdPageServeMojo extends MdPageGeneratorMojo {
+
+    /**
+     * Port of the preview server on the loopback interface, <code>0</code> picks a free port.
+     */
+    @Parameter(property = "generate.servePort", defaultValue = "8080")
+    private int servePort = 8080;
+
+    /**
+     * Number of rendered pages kept in memory.
+     */
+    @Parameter(property = "generate.serveCacheSize", defaultValue = "256")
+    private int serveCacheSize = 256;
+
+    /**
+     * Changes are collected until there have been none for this long before the rendered pages are dropped.
+     */
+    @Parameter(property = "generate.watchDebounceMillis", defaultValue = "100")
+    private long watchDebounceMillis = 100;
+
+    private volatile InetSocketAddress address;
+
+    /**
+     * Only used by the server thread, replaced when the templates change.
+     */
+    private volatile RenderingContext context;
+
+    private Map<Path, byte[]> pages;
+    /**
+     * Incremented whenever pages are dropped, a page rendered before is not cached.
+     */
+    private long generation;
+    /**
+     * The input folders of the <code>copyDirectories</code> by the output folders they are copied to.
+     */
+    private volatile Map<Path, File> copyFolders;
+    private final AtomicBoolean templatesChanged = new AtomicBoolean();
+
+    /**
+     * Serve the pages until the build is interrupted.
+     *
+     * @throws MojoExecutionException Unable to start the server or watch the files
+     */
+    @Override
+    public void execute() throws MojoExecutionException {
+        prepareFiltering(true);
+        final File inputDirectory = getInputDirectoryFile();
+        pages = createCache(serveCacheSize);
+        copyFolders = resolveCopyFolders();
+
+        HttpServer server = null;
+        try (SourceWatcher watcher = createSourceWatcher(inputDirectory)) {
+            context = createRenderingContext();
+            try {
+                final Path outputDirectory = Paths.get(getOutputDirectory()).toAbsolutePath().normalize();
+                server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), servePort), 0);
+                // requests are handled one at a time on the server thread, which keeps the templates consistent
+                server.createContext("/", new HttpHandler() {
+                    @Override
+                    public void handle(HttpExchange exchange) throws IOException {
+                        try {
+                            serve(exchange, inputDirectory, outputDirectory);
+                        } finally {
+                            exchange.close();
+                        }
+                    }
+                });
+                server.start();
+                address = server.getAddress();
+                getLog().info("Serving " + inputDirectory + " at http://localhost:" + address.getPort() + "/");
+
+                while (true) {
+                    SourceWatcher.Changes changes = watcher.take(watchDebounceMillis);
+                    if (changes.everything || changes.assets || !changes.deletedDirectories.isEmpty()) {
+                        refreshCopyFolders();
+                    }
+                    if (changes.everything) {
+                        templatesChanged.set(true);
+                        invalidateAll();
+                    } else {
+                        for (Path page : changes.pages) {
+                            invalidate(page);
+                        }
+                    }
+                }
+            } finally {
+                if (server != null) {
+                    server.stop(0);
+                }
+                closeRenderingContext(context);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            getLog().info("Stopped serving " + inputDirectory);
+        } catch (ClosedWatchServiceException e) {
+            getLog().info("Stopped serving " + inputDirectory);
+        } catch (IOException e) {
+            throw new MojoExecutionException("Unable to serve " + inputDirectory + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * @return the address the server listens to, <code>null</code> until it is started
+     */
+    InetSocketAddress getAddress() {
+        return address;
+    }
+
+    private void serve(HttpExchange exchange, File inputDirectory, Path outputDirectory) throws IOException {
+        String method = exchange.getRequestMethod();
+        if (!"GET".equals(method) && !"HEAD".equals(method)) {
+            exchange.getResponseHeaders().set("Allow", "GET, HEAD");
+            respond(exchange, 405, "text/plain", "Method not allowed".getBytes(StandardCharsets.UTF_8));
+            return;
+        }
+
+        // the requested path as it would be in the output directory, which must not be left
+        String requestPath = exchange.getRequestURI().getPath();
+        Path target = outputDirectory.resolve(requestPath.replaceFirst("^/+", "")).normalize();
+        if (requestPath.contains("\0") || !target.startsWith(outputDirectory)) {
+            respond(exchange, 404, "text/plain", "Not found".getBytes(StandardCharsets.UTF_8));
+            return;
+        }
+        if (requestPath.endsWith("/") || target.equals(outputDirectory)) {
+            target = target.resolve("index." + getOutputFileExtensions()[0]);
+        }
+
+        try {
+            File markdownFile = findMarkdownFile(inputDirectory, outputDirectory, target);
+            if (markdownFile != null) {
+                byte[] html = render(inputDirectory, markdownFile);
+                respond(exchange, 200, "text/html; charset=" + context.outputCharset.name(), html);
+                return;
+            }
+            File asset = findAsset(target);
+            if (asset != null) {
+                String contentType = URLConnection.guessContentTypeFromName(asset.getName());
+                respond(exchange, 200, contentType != null ? contentType : "application/octet-stream",
+                        Files.readAllBytes(asset.toPath()));
+                return;
+            }
+            respond(exchange, 404, "text/plain", "Not found".getBytes(StandardCharsets.UTF_8));
+        } catch (MojoExecutionException e) {
+            getLog().error(e.getMessage(), e);
+            respond(exchange, 500, "text/plain", String.valueOf(e.getMessage()).getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * @return the markdown file of a requested html file, or <code>null</code> if there is none
+     */
+    private File findMarkdownFile(File inputDirectory, Path outputDirectory, Path target) {
+        String extension = FilenameUtils.getExtension(target.getFileName().toString());
+        boolean html = false;
+        for (String outputFileExtension : getOutputFileExtensions()) {
+            html |= outputFileExtension.equals(extension);
+        }
+        Path relative = outputDirectory.relativize(target);
+        if (!html || (!isRecursiveInput() && relative.getNameCount() > 1)) {
+            return null;
+        }
+        String baseName = FilenameUtils.removeExtension(relative.toString());
+        for (String inputFileExtension : getInputFileExtensions()) {
+            File markdownFile = new File(inputDirectory, baseName + "." + inputFileExtension);
+            if (markdownFile.isFile()) {
+                return markdownFile;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the file of the <code>copyDirectories</code> that would be copied to the target, or <code>null</code>
+     */
+    private File findAsset(Path target) {
+        File folder = copyFolders.get(target.getParent());
+        if (folder == null) {
+            return null;
+        }
+        File asset = new File(folder, target.getFileName().toString());
+        return asset.isFile() ? asset : null;
+    }
+
+    /**
+     * @return the input folders of the <code>copyDirectories</code> by their output folders
+     * @throws MojoExecutionException Unable to resolve the directories
+     */
+    private Map<Path, File> resolveCopyFolders() throws MojoExecutionException {
+        Map<Path, File> folders = new HashMap<>();
+        for (Entry<String, String> folder : getFoldersToCopy().entrySet()) {
+            folders.put(Paths.get(folder.getValue()).toAbsolutePath().normalize(), new File(folder.getKey()));
+        }
+        return folders;
+    }
+
+    /**
+     * Resolve the <code>copyDirectories</code> again as directories may have been created or deleted, keeping the
+     * previous folders if they can't be resolved.
+     */
+    private void refreshCopyFolders() {
+        try {
+            copyFolders = resolveCopyFolders();
+        } catch (MojoExecutionException e) {
+            getLog().error(e.getMessage(), e);
+        }
+    }
+
+    private byte[] render(File inputDirectory, File markdownFile) throws MojoExecutionException {
+        if (templatesChanged.getAndSet(false)) {
+            context = reloadTemplates(context);
+        }
+        Path key = markdownFile.toPath();
+        byte[] html;
+        long renderGeneration;
+        synchronized (pages) {
+            html = pages.get(key);
+            renderGeneration = generation;
+        }
+        if (html == null) {
+            int baseDepth = StringUtils.countMatches(inputDirectory.getAbsolutePath(), File.separator);
+            MarkdownDTO dto = createMarkdownDTO(inputDirectory, baseDepth, markdownFile);
+            dto.html = new ByteArrayOutputStream();
+            processMarkdownFile(dto, context);
+            html = dto.html.toByteArray();
+            synchronized (pages) {
+                // the markdown file may have changed while it was read, the next request renders it again
+                if (renderGeneration == generation) {
+                    pages.put(key, html);
+                }
+            }
+        }
+        return html;
+    }
+
+    private void invalidate(Path page) {
+        synchronized (pages) {
+            generation++;
+            pages.remove(page);
+        }
+    }
+
+    private void invalidateAll() {
+        synchronized (pages) {
+            generation++;
+            pages.clear();
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int status, String contentType, byte[] body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+        boolean head = "HEAD".equals(exchange.getRequestMethod());
+        exchange.sendResponseHeaders(status, head ? -1 : body.length);
+        if (!head) {
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+
+    /**
+     * @return a map that drops the least recently used page when it grows beyond <code>size</code>
+     */
+    private static Map<Path, byte[]> createCache(final int size) {
+        return new LinkedHashMap<Path, byte[]>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Path, byte[]> eldest) {
+                return size() > size;
+            }
+        };
+    }
+}
@@ -0,0 +1,139 @@
+package com.ruleoftech.markdown.page.generator.plugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Locale;
+import java.util.Set;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.codehaus.plexus.util.StringUtils;
+
+/**
+ * Generates the html files like the generate goal and then keeps watching the input directory, header and footer.
+ * An edited markdown file re-renders just its page, an edited header or footer re-renders every page, and other
+ * files of the input directory are copied again if they are in the <code>copyDirectories</code>.
+ * <p>
+ * The parser and renderer are built once and kept for the whole session, unless a table of contents is added to or
+ * removed from the header or footer. Maven property filtering is applied in memory, so that edits to the input
+ * directory are filtered too.
+ */
+@Mojo(name = "watch", threadSafe = true)
+public class MdPageWatchMojo extends MdPageGeneratorMojo {
+
+    /**
+     * Changes are collected until there have been none for this long, so that an editor saving several files or
+     * writing a file in steps re-renders the pages once.
+     */
+    @Parameter(property = "generate.watchDebounceMillis", defaultValue = "100")
+    private long watchDebounceMillis = 100;
+
+    private RenderingContext context;
+
+    /**
+     * Generate the pages and watch for changes until the build is interrupted.
+     *
+     * @throws MojoExecutionException Unable to generate the pages or watch the files
+     */
+    @Override
+    public void execute() throws MojoExecutionException {
+        prepareFiltering(true);
+        File inputDirectory = getInputDirectoryFile();
+
+        try (SourceWatcher watcher = createSourceWatcher(inputDirectory)) {
+            context = createRenderingContext();
+            try {
+                generateAll(inputDirectory, context);
+                copyDirectories();
+                getLog().info("Watching " + inputDirectory + " for changes");
+                watch(watcher, inputDirectory);
+            } finally {
+                closeRenderingContext(context);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            getLog().info("Stopped watching " + inputDirectory);
+        } catch (ClosedWatchServiceException e) {
+            getLog().info("Stopped watching " + inputDirectory);
+        } catch (IOException e) {
+            throw new MojoExecutionException("Unable to watch " + inputDirectory + ": " + e.getMessage(), e);
+        }
+    }
+
+    private void watch(SourceWatcher watcher, File inputDirectory)
+            throws InterruptedException, IOException {
+        while (true) {
+            SourceWatcher.Changes changes = watcher.take(watchDebounceMillis);
+            long start = System.nanoTime();
+            try {
+                int rendered;
+                if (changes.everything) {
+                    context = reloadTemplates(context);
+                    rendered = generateAll(inputDirectory, context);
+                } else {
+                    rendered = generate(inputDirectory, changes.pages, context);
+                }
+                for (Path directory : changes.deletedDirectories) {
+                    removeOutputs(inputDirectory, directory);
+                }
+                if (rendered > 0) {
+                    getLog().info(String.format(Locale.ROOT, "Rendered %d page(s) in %.0f ms", rendered,
+                            (System.nanoTime() - start) / 1e6));
+                }
+                if (changes.assets || changes.everything) {
+                    copyDirectories();
+                }
+            } catch (MojoExecutionException | RuntimeException e) {
+                // keep watching, the writer will most likely fix the file and save it again
+                getLog().error(e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * Remove everything generated or copied from a deleted directory of the input directory.
+     */
+    private void removeOutputs(File inputDirectory, Path directory) throws IOException {
+        Path input = inputDirectory.toPath().toAbsolutePath().normalize();
+        Path output = Paths.get(getOutputDirectory()).toAbsolutePath().normalize();
+        Path target = output.resolve(input.relativize(directory.toAbsolutePath().normalize())).normalize();
+        // never remove the output directory itself or a directory the sources are in
+        if (!target.startsWith(output) || target.equals(output) || input.startsWith(target) || !Files.isDirectory(target)) {
+            return;
+        }
+        FileUtils.deleteDirectory(target.toFile());
+        getLog().info("Removed " + target + ", its source directory was deleted");
+    }
+
+    private int generateAll(File inputDirectory, RenderingContext context) throws MojoExecutionException {
+        return renderMarkdownFiles(inputDirectory, context);
+    }
+
+    /**
+     * Render the changed pages and remove the generated files of the deleted ones.
+     */
+    private int generate(File inputDirectory, Set<Path> pages, RenderingContext context) throws MojoExecutionException {
+        int baseDepth = StringUtils.countMatches(inputDirectory.getAbsolutePath(), File.separator);
+        int rendered = 0;
+        for (Path page : pages) {
+            MarkdownDTO dto = createMarkdownDTO(inputDirectory, baseDepth, page.toFile());
+            if (Files.isRegularFile(page)) {
+                processMarkdownFile(dto, context);
+                rendered++;
+            } else {
+                for (File outputFile : getOutputFiles(dto, context)) {
+                    if (deleteOutputFile(outputFile, context.precompressor)) {
+                        getLog().info("Removed " + outputFile + ", its markdown source was deleted");
+                    }
+                }
+            }
+        }
+        return rendered;
+    }
+}
@@ -0,0 +1,82 @@
+package com.ruleoftech.markdown.page.generator.plugin;
+
+import com.vladsch.flexmark.util.ast.Node;
+
+/**
+ * Measures how deeply a markdown document nests, to stop pathological documents before they are parsed or rendered.
+ */
+final class NestingDepth {
+
+    private NestingDepth() {
+    }
+
+    /**
+     * Estimate the nesting depth of markdown before it is parsed from its block quote markers and link brackets.
+     * Brackets do not nest across paragraphs.
+     *
+     * @param markdown the markdown
+     * @return the deepest block quote or bracket nesting
+     */
+    static int of(CharSequence markdown) {
+        int max = 0;
+        int quotes = 0;
+        int brackets = 0;
+        boolean lineStart = true;
+        boolean blankLine = true;
+        for (int i = 0; i < markdown.length(); i++) {
+            char c = markdown.charAt(i);
+            if (c == '\n' || c == '\r') {
+                if (blankLine) {
+                    brackets = 0;
+                }
+                quotes = 0;
+                lineStart = true;
+                blankLine = true;
+                continue;
+            }
+            if (c == ' ' || c == '\t') {
+                continue;
+            }
+            blankLine = false;
+            if (lineStart && c == '>') {
+                max = Math.max(max, ++quotes);
+                continue;
+            }
+            lineStart = false;
+            if (c == '\\') {
+                i++;
+            } else if (c == '[') {
+                max = Math.max(max, ++brackets);
+            } else if (c == ']' && brackets > 0) {
+                brackets--;
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Depth of a parsed document, without recursion so that deep documents cannot overflow the stack.
+     *
+     * @param document the parsed document
+     * @return the depth of the deepest node below the document
+     */
+    static int of(Node document) {
+        int max = 0;
+        int depth = 1;
+        Node node = document.getFirstChild();
+        while (node != null) {
+            max = Math.max(max, depth);
+            if (node.getFirstChild() != null) {
+                node = node.getFirstChild();
+                depth++;
+                continue;
+            }
+            while (node != document && node.getNext() == null) {
+                node = node.getParent();
+                depth--;
+            }
+            node = node == document ? null : node.getNext();
+        }
+        return max;
+    }
+}
@@ -0,0 +1,168 @@
+package com.ruleoftech.markdown.page.generator.plugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import org.apache.commons.io.FilenameUtils;
+
+import com.vladsch.flexmark.ast.FencedCodeBlock;
+import com.vladsch.flexmark.ast.Heading;
+import com.vladsch.flexmark.ast.HtmlBlockBase;
+import com.vladsch.flexmark.ast.LinkNodeBase;
+import com.vladsch.flexmark.ast.Reference;
+import com.vladsch.flexmark.util.ast.Block;
+import com.vladsch.flexmark.util.ast.Node;
+import com.vladsch.flexmark.util.ast.TextCollectingVisitor;
+
+/**
+ * The files generated from each markdown file, all written from the same parsed document:
+ * <ul>
+ * <li><code>page</code>: the html page with the header and footer, <code>page.html</code>;</li>
+ * <li><code>fragment</code>: the rendered markdown without the header and footer, <code>page.fragment.html</code>;</li>
+ * <li><code>text</code>: the text of the blocks separated by blank lines, without any markup, <code>page.txt</code>;</li>
+ * <li><code>json</code>: the title and the syntax tree of the page, <code>page.json</code>.</li>
+ * </ul>
+ * The html files use the <code>outputFileExtension</code>.
+ */
+enum OutputFormat {
+    PAGE, FRAGMENT, TEXT, JSON;
+
+    /**
+     * @param formats comma separated formats
+     * @return the formats in configuration order, without duplicates
+     * @throws IllegalArgumentException Unknown or no format
+     */
+    static List<OutputFormat> parseList(String formats) {
+        List<OutputFormat> parsed = new ArrayList<>();
+        for (String format : formats.trim().split("\\s*,\\s*")) {
+            OutputFormat outputFormat;
+            try {
+                outputFormat = valueOf(format.toUpperCase(Locale.ENGLISH));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("No such output format: " + format
+                        + ", expected page, fragment, text or json");
+            }
+            if (!parsed.contains(outputFormat)) {
+                parsed.add(outputFormat);
+            }
+        }
+        return parsed;
+    }
+
+    /**
+     * @param htmlFile the html page of the markdown file
+     * @return the file of this format
+     */
+    File getFile(File htmlFile) {
+        String base = FilenameUtils.removeExtension(htmlFile.getPath());
+        switch (this) {
+            case FRAGMENT:
+                return new File(base + ".fragment." + FilenameUtils.getExtension(htmlFile.getName()));
+            case TEXT:
+                return new File(base + ".txt");
+            case JSON:
+                return new File(base + ".json");
+            default:
+                return htmlFile;
+        }
+    }
+
+    /**
+     * Write the text of the leaf blocks, separated by blank lines. Html blocks and reference definitions are left
+     * out. The blocks are walked without recursion, however deeply they nest.
+     *
+     * @param document the parsed markdown
+     * @param out      writer to write to
+     * @throws IOException Unable to write
+     */
+    static void writeText(Node document, Writer out) throws IOException {
+        TextCollectingVisitor visitor = new TextCollectingVisitor();
+        boolean separate = false;
+        Node node = document.getFirstChild();
+        while (node != null) {
+            boolean text = node instanceof Block && !(node instanceof HtmlBlockBase) && !(node instanceof Reference);
+            if (text && hasBlockChildren(node)) {
+                node = node.getFirstChild();
+                continue;
+            }
+            if (text) {
+                String blockText = visitor.collectAndGetText(node).trim();
+                if (!blockText.isEmpty()) {
+                    out.write(separate ? "\n\n" : "");
+                    out.write(blockText);
+                    separate = true;
+                }
+            }
+            while (node != document && node.getNext() == null) {
+                node = node.getParent();
+            }
+            node = node == document ? null : node.getNext();
+        }
+        if (separate) {
+            out.write('\n');
+        }
+    }
+
+    private static boolean hasBlockChildren(Node node) {
+        for (Node child : node.getChildren()) {
+            if (child instanceof Block) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Write the title of the page and its syntax tree: each node with its type, the level of a heading, the url of a
+     * link or image and the info of a fenced code block, and either its children or its text. The tree is walked
+     * without recursion, however deeply it nests.
+     *
+     * @param title    title of the page, may be <code>null</code>
+     * @param document the parsed markdown
+     * @param json     writer to write to
+     * @throws IOException Unable to write
+     */
+    static void writeJson(String title, Node document, JsonWriter json) throws IOException {
+        json.beginObject();
+        if (title != null) {
+            json.name("title").value(title.trim());
+        }
+        json.name("ast");
+        writeNode(document, json);
+        json.endObject();
+    }
+
+    private static void writeNode(Node root, JsonWriter json) throws IOException {
+        Node node = root;
+        while (true) {
+            json.beginObject().name("type").value(node.getClass().getSimpleName());
+            if (node instanceof Heading) {
+                json.name("level").value(((Heading) node).getLevel());
+            } else if (node instanceof LinkNodeBase) {
+                json.name("url").value(((LinkNodeBase) node).getUrl().toString());
+            } else if (node instanceof FencedCodeBlock) {
+                json.name("info").value(((FencedCodeBlock) node).getInfo().toString());
+            }
+            if (node.hasChildren()) {
+                json.name("children").beginArray();
+                node = node.getFirstChild();
+                continue;
+            }
+            json.name("text").value(node.getChars().toString());
+            json.endObject();
+            // close the nodes whose last child is written
+            while (node != root && node.getNext() == null) {
+                node = node.getParent();
+                json.endArray().endObject();
+            }
+            if (node == root) {
+                return;
+            }
+            node = node.getNext();
+        }
+    }
+}
@@ -2,15 +2,33 @@ package com.ruleoftech.markdown.page.generator.plugin;
 
 import com.vladsch.flexmark.util.misc.Extension;
 import com.vladsch.flexmark.html.HtmlRenderer;
+import com.vladsch.flexmark.util.data.DataHolder;
 import com.vladsch.flexmark.util.data.DataKey;
+import com.vladsch.flexmark.util.data.DataNotNullValueFactory;
 import com.vladsch.flexmark.util.data.MutableDataHolder;
 
 public class PageGeneratorExtension implements HtmlRenderer.HtmlRendererExtension {
     final static public DataKey<String> INPUT_FILE_EXTENSIONS = new DataKey<String>("INPUT_FILE_EXTENSIONS", "md");
 
+    /**
+     * The suffixes of {@link #INPUT_FILE_EXTENSIONS}, <code>.md</code> for <code>md</code>. Computed when the
+     * renderer is built, not for every page.
+     */
+    final static DataKey<String[]> INPUT_FILE_SUFFIXES = new DataKey<String[]>("INPUT_FILE_SUFFIXES", new String[0],
+            new DataNotNullValueFactory<String[]>() {
+                @Override
+                public String[] apply(DataHolder options) {
+                    String[] suffixes = INPUT_FILE_EXTENSIONS.get(options).trim().split("\\s*,\\s*");
+                    for (int i = 0; i < suffixes.length; i++) {
+                        suffixes[i] = "." + suffixes[i];
+                    }
+                    return suffixes;
+                }
+            });
+
     @Override
     public void rendererOptions(final MutableDataHolder options) {
-
+        options.set(INPUT_FILE_SUFFIXES, INPUT_FILE_SUFFIXES.get(options));
     }
 
     @Override
@@ -0,0 +1,24 @@
+package com.ruleoftech.markdown.page.generator.plugin;
+
+import java.io.File;
+
+/**
+ * Urls of the generated pages relative to the output directory, as the indexes and the sitemap list them.
+ */
+final class PageUrl {
+
+    private PageUrl() {
+    }
+
+    /**
+     * @param outputDirectory the absolute output directory
+     * @param htmlFile        a generated file
+     * @return the path of the file in the output directory with <code>/</code> separators, or its name if it is not
+     * in the output directory
+     */
+    static String of(File outputDirectory, File htmlFile) {
+        String path = htmlFile.getAbsoluteFile().toPath().normalize().toString();
+        String root = outputDirectory.toPath().normalize().toString() + File.separator;
+        return (path.startsWith(root) ? path.substring(root.length()) : htmlFile.getName()).replace(File.separatorChar, '/');
+    }
+}
@@ -0,0 +1,76 @@
+package com.ruleoftech.markdown.page.generator.plugin;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Runs a task on every item of a list that is known upfront, split into one contiguous chunk per thread. Unlike the
+ * {@link RenderQueue} nothing is rendered or ordered, the items are only worked on.
+ */
+final class ParallelChunks {
+
+    /**
+     * The work done on a single item, on any of the threads.
+     */
+    interface Task<T, E extends Exception> {
+        void run(T item) throws E;
+    }
+
+    private ParallelChunks() {
+    }
+
+    /**
+     * Run the task on every item and wait until all are done. If the task fails, the failure of the first failing
+     * chunk is thrown and the items not started yet are skipped.
+     *
+     * @param items            the items to work on
+     * @param threads          number of threads
+     * @param threadNamePrefix prefix of the thread names
+     * @param exceptionType    the checked exception of the task, or <code>RuntimeException</code> if it has none
+     * @param task             the task to run on every item
+     * @throws E                    The task failed
+     * @throws InterruptedException Interrupted while waiting for the threads
+     */
+    static <T, E extends Exception> void forEach(List<T> items, int threads, String threadNamePrefix,
+            Class<E> exceptionType, final Task<T, E> task) throws E, InterruptedException {
+        int workers = Math.max(1, threads);
+        ExecutorService executor = Executors.newFixedThreadPool(workers,
+                new MdPageGeneratorMojo.RenderThreadFactory(threadNamePrefix));
+        try {
+            List<Future<Void>> results = new ArrayList<>();
+            int chunk = Math.max(1, (items.size() + workers - 1) / workers);
+            for (int start = 0; start < items.size(); start += chunk) {
+                final List<T> part = items.subList(start, Math.min(items.size(), start + chunk));
+                results.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws E {
+                        for (T item : part) {
+                            task.run(item);
+                        }
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Void> result : results) {
+                try {
+                    result.get();
+                } catch (ExecutionException e) {
+                    if (exceptionType.isInstance(e.getCause())) {
+                        throw exceptionType.cast(e.getCause());
+                    }
+                    if (e.getCause() instanceof Error) {
+                        throw (Error) e.getCause();
+                    }
+                    throw (RuntimeException) e.getCause();
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
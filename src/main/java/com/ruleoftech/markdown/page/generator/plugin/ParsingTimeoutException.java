@@ -0,0 +1,38 @@
+package com.ruleoftech.markdown.page.generator.plugin;
+
+import java.io.File;
+
+/**
+ * Parsing and rendering a markdown file took longer than <code>parsingTimeoutInMillis</code>.
+ */
+public class ParsingTimeoutException extends Exception {
+
+    private static final long serialVersionUID = 1L;
+
+    private final File markdownFile;
+    private final long timeoutInMillis;
+
+    /**
+     * @param markdownFile    the markdown file that took too long
+     * @param timeoutInMillis the <code>parsingTimeoutInMillis</code> it exceeded
+     */
+    public ParsingTimeoutException(File markdownFile, long timeoutInMillis) {
+        super("Parsing " + markdownFile + " took longer than " + timeoutInMillis + " ms");
+        this.markdownFile = markdownFile;
+        this.timeoutInMillis = timeoutInMillis;
+    }
+
+    /**
+     * @return the markdown file that took too long
+     */
+    public File getMarkdownFile() {
+        return markdownFile;
+    }
+
+    /**
+     * @return the timeout the markdown file exceeded, in milliseconds
+     */
+    public long getTimeoutInMillis() {
+        return timeoutInMillis;
+    }
+}
@@ -0,0 +1,285 @@
+package com.ruleoftech.markdown.page.generator.plugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.io.IOUtils;
+
+/**
+ * Writes precompressed sidecars of the output files, <code>page.html.gz</code> next to <code>page.html</code>, for
+ * servers that serve them as they are, like nginx with <code>gzip_static</code>.
+ * <p>
+ * Generated pages are compressed while they are written, so they are never read back. Copied assets are compressed
+ * once they are copied, on several threads. A sidecar gets the modification time of its file, and is up to date as
+ * long as the times match, so unchanged assets are not compressed again.
+ */
+final class Precompressor {
+
+    /**
+     * The compression formats, only the ones the JDK implements.
+     */
+    enum Codec {
+        GZIP(".gz") {
+            @Override
+            OutputStream open(OutputStream out) throws IOException {
+                return new BestGzipOutputStream(out);
+            }
+        };
+
+        private final String suffix;
+
+        Codec(String suffix) {
+            this.suffix = suffix;
+        }
+
+        /**
+         * @return a stream compressing into the given stream, closing it closes the given stream
+         */
+        abstract OutputStream open(OutputStream out) throws IOException;
+
+        File getSidecar(File file) {
+            return new File(file.getPath() + suffix);
+        }
+
+        /**
+         * @param codecs comma separated codecs, may be empty
+         * @return the codecs without duplicates
+         * @throws IllegalArgumentException Unknown codec
+         */
+        static List<Codec> parseList(String codecs) {
+            List<Codec> parsed = new ArrayList<>();
+            if (codecs == null || codecs.trim().isEmpty()) {
+                return parsed;
+            }
+            for (String codec : codecs.trim().split("\\s*,\\s*")) {
+                Codec value;
+                try {
+                    value = valueOf(codec.toUpperCase(Locale.ENGLISH));
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException("No such precompression codec: " + codec + ", expected gzip");
+                }
+                if (!parsed.contains(value)) {
+                    parsed.add(value);
+                }
+            }
+            return parsed;
+        }
+    }
+
+    /**
+     * Extensions of the text assets worth compressing, images and fonts are compressed already.
+     */
+    static final Set<String> TEXT_EXTENSIONS = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+            "css", "csv", "htm", "html", "js", "json", "map", "md", "mjs", "svg", "txt", "xml")));
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private final List<Codec> codecs;
+
+    Precompressor(List<Codec> codecs) {
+        this.codecs = codecs;
+    }
+
+    /**
+     * @param file an output file
+     * @return whether the file is a text asset to compress
+     */
+    static boolean isCompressible(File file) {
+        return TEXT_EXTENSIONS.contains(FilenameUtils.getExtension(file.getName()).toLowerCase(Locale.ENGLISH));
+    }
+
+    /**
+     * Open an output file that is compressed into its sidecars while it is written. The sidecars get the
+     * modification time of the file once the stream is closed.
+     *
+     * @param file the output file
+     * @return the stream writing the file and its sidecars
+     * @throws IOException Unable to open the file or a sidecar
+     */
+    OutputStream open(File file) throws IOException {
+        OutputStream[] sidecars = new OutputStream[codecs.size()];
+        OutputStream out = FileUtils.openOutputStream(file);
+        try {
+            for (int i = 0; i < sidecars.length; i++) {
+                sidecars[i] = codecs.get(i).open(Files.newOutputStream(codecs.get(i).getSidecar(file).toPath()));
+            }
+        } catch (IOException e) {
+            IOUtils.closeQuietly(out);
+            for (OutputStream sidecar : sidecars) {
+                IOUtils.closeQuietly(sidecar);
+            }
+            delete(file);
+            throw e;
+        }
+        return new SidecarOutputStream(file, out, sidecars, codecs);
+    }
+
+    /**
+     * Compress the files whose sidecars are missing or out of date.
+     *
+     * @param files   the files to compress
+     * @param threads number of threads compressing the files
+     * @return number of files compressed
+     * @throws IOException          Unable to compress a file
+     * @throws InterruptedException Interrupted while waiting for the threads
+     */
+    int compress(List<File> files, int threads) throws IOException, InterruptedException {
+        final AtomicInteger compressed = new AtomicInteger();
+        ParallelChunks.forEach(files, threads, "md-page-generator-compress-", IOException.class,
+                new ParallelChunks.Task<File, IOException>() {
+                    @Override
+                    public void run(File file) throws IOException {
+                        if (compress(file)) {
+                            compressed.incrementAndGet();
+                        }
+                    }
+                });
+        return compressed.get();
+    }
+
+    /**
+     * @return <code>false</code> if the sidecars were up to date
+     */
+    private boolean compress(File file) throws IOException {
+        long lastModified = file.lastModified();
+        List<Codec> outdated = new ArrayList<>();
+        for (Codec codec : codecs) {
+            File sidecar = codec.getSidecar(file);
+            if (!sidecar.isFile() || sidecar.lastModified() != lastModified) {
+                outdated.add(codec);
+            }
+        }
+        if (outdated.isEmpty()) {
+            return false;
+        }
+        for (Codec codec : outdated) {
+            File sidecar = codec.getSidecar(file);
+            boolean written = false;
+            try (InputStream in = Files.newInputStream(file.toPath());
+                 OutputStream out = codec.open(Files.newOutputStream(sidecar.toPath()))) {
+                IOUtils.copy(in, out, BUFFER_SIZE);
+                written = true;
+            } finally {
+                if (!written) {
+                    FileUtils.deleteQuietly(sidecar);
+                }
+            }
+            sidecar.setLastModified(lastModified);
+        }
+        return true;
+    }
+
+    /**
+     * @param file an output file
+     * @return the sidecars written for the file
+     */
+    List<File> getSidecars(File file) {
+        List<File> sidecars = new ArrayList<>(codecs.size());
+        for (Codec codec : codecs) {
+            sidecars.add(codec.getSidecar(file));
+        }
+        return sidecars;
+    }
+
+    /**
+     * Remove the sidecars of an output file.
+     *
+     * @param file the output file
+     */
+    void delete(File file) {
+        for (Codec codec : codecs) {
+            FileUtils.deleteQuietly(codec.getSidecar(file));
+        }
+    }
+
+    /**
+     * Sidecars are compressed once and served many times, so they are compressed as well as gzip can.
+     */
+    private static final class BestGzipOutputStream extends GZIPOutputStream {
+        BestGzipOutputStream(OutputStream out) throws IOException {
+            super(out, BUFFER_SIZE);
+            def.setLevel(Deflater.BEST_COMPRESSION);
+        }
+    }
+
+    private static final class SidecarOutputStream extends OutputStream {
+        private final File file;
+        private final OutputStream out;
+        private final OutputStream[] sidecars;
+        private final List<Codec> codecs;
+
+        SidecarOutputStream(File file, OutputStream out, OutputStream[] sidecars, List<Codec> codecs) {
+            this.file = file;
+            this.out = out;
+            this.sidecars = sidecars;
+            this.codecs = codecs;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            for (OutputStream sidecar : sidecars) {
+                sidecar.write(b);
+            }
+        }
+
+        @Override
+        public void write(byte[] buffer, int offset, int length) throws IOException {
+            out.write(buffer, offset, length);
+            for (OutputStream sidecar : sidecars) {
+                sidecar.write(buffer, offset, length);
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+            for (OutputStream sidecar : sidecars) {
+                sidecar.flush();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            IOException failure = null;
+            for (OutputStream stream : streams()) {
+                try {
+                    stream.close();
+                } catch (IOException e) {
+                    if (failure == null) {
+                        failure = e;
+                    }
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+            long lastModified = file.lastModified();
+            for (Codec codec : codecs) {
+                codec.getSidecar(file).setLastModified(lastModified);
+            }
+        }
+
+        private List<OutputStream> streams() {
+            List<OutputStream> streams = new ArrayList<>(sidecars.length + 1);
+            streams.add(out);
+            Collections.addAll(streams, sidecars);
+            return streams;
+        }
+    }
+}
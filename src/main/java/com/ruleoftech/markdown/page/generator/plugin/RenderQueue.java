@@ -0,0 +1,154 @@
+package com.ruleoftech.markdown.page.generator.plugin;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.maven.plugin.MojoExecutionException;
+
+import com.ruleoftech.markdown.page.generator.plugin.MdPageGeneratorMojo.MarkdownDTO;
+
+/**
+ * Renders markdown files while they are still being discovered, on the calling thread or on a fixed number of
+ * worker threads. At most a window of files is queued or being rendered at a time: {@link #submit} blocks until a
+ * worker is free, so the memory used does not grow with the number of files.
+ * <p>
+ * Once a file fails no more files are accepted. The files already queued are rendered, and {@link #finish} reports
+ * the failure of the first file in submission order, the same one a serial build would report.
+ */
+final class RenderQueue {
+
+    /**
+     * Renders a single file.
+     */
+    interface Renderer {
+        /**
+         * @return <code>false</code> if the html file was up to date and not generated again
+         */
+        boolean render(MarkdownDTO dto) throws Exception;
+    }
+
+    private final Renderer renderer;
+    private final ExecutorService executor;
+    private final Semaphore window;
+    private final AtomicInteger generated = new AtomicInteger();
+    private int submitted;
+    private int failedIndex = Integer.MAX_VALUE;
+    private Throwable failure;
+
+    /**
+     * @param threads number of worker threads, 1 renders on the calling thread
+     * @param window  maximum number of files queued or being rendered
+     */
+    RenderQueue(Renderer renderer, int threads, int window) {
+        this.renderer = renderer;
+        if (threads > 1) {
+            this.executor = Executors.newFixedThreadPool(threads, new MdPageGeneratorMojo.RenderThreadFactory("md-page-generator-"));
+            this.window = new Semaphore(Math.max(window, threads));
+        } else {
+            this.executor = null;
+            this.window = null;
+        }
+    }
+
+    /**
+     * Render the file now or as soon as a worker is free.
+     *
+     * @return <code>false</code> if a file has failed and no more files are accepted
+     * @throws MojoExecutionException Interrupted while waiting for a worker
+     */
+    boolean submit(final MarkdownDTO dto) throws MojoExecutionException {
+        if (hasFailed()) {
+            return false;
+        }
+        final int index = submitted++;
+        if (executor == null) {
+            render(index, dto);
+            return !hasFailed();
+        }
+
+        try {
+            window.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            executor.shutdownNow();
+            throw new MojoExecutionException("Interrupted while rendering markdown files", e);
+        }
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    render(index, dto);
+                } finally {
+                    window.release();
+                }
+            }
+        });
+        return true;
+    }
+
+    /**
+     * Wait for the queued files to be rendered.
+     *
+     * @return number of generated html files
+     * @throws MojoExecutionException A file failed to render or interrupted while waiting
+     */
+    int finish() throws MojoExecutionException {
+        if (executor != null) {
+            executor.shutdown();
+            try {
+                while (!executor.awaitTermination(1, TimeUnit.SECONDS)) {
+                    // the parsing timeout, if any, bounds the wait for every file
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new MojoExecutionException("Interrupted while rendering markdown files", e);
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+        synchronized (this) {
+            if (failure != null) {
+                throw MdPageGeneratorMojo.unwrapRenderFailure(failure);
+            }
+        }
+        return generated.get();
+    }
+
+    /**
+     * Stop the workers without waiting for the queued files, if the files are not rendered after all.
+     */
+    void cancel() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * @return number of files submitted
+     */
+    int getSubmitted() {
+        return submitted;
+    }
+
+    private void render(int index, MarkdownDTO dto) {
+        try {
+            if (renderer.render(dto)) {
+                generated.incrementAndGet();
+            }
+        } catch (Throwable e) {
+            synchronized (this) {
+                if (index < failedIndex) {
+                    failedIndex = index;
+                    failure = e;
+                }
+            }
+        }
+    }
+
+    private synchronized boolean hasFailed() {
+        return failure != null;
+    }
+}
@@ -0,0 +1,269 @@
+package com.ruleoftech.markdown.page.generator.plugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.commons.io.FileUtils;
+
+import com.vladsch.flexmark.ast.Heading;
+import com.vladsch.flexmark.ast.Text;
+import com.vladsch.flexmark.html.renderer.HeaderIdGenerator;
+import com.vladsch.flexmark.util.ast.Document;
+import com.vladsch.flexmark.util.ast.Node;
+import com.vladsch.flexmark.util.ast.TextCollectingVisitor;
+
+/**
+ * Full-text search index of the generated pages, for a static client-side search.
+ * <p>
+ * A page is split into sections at its headings, and every term is indexed with the sections it occurs in. The index
+ * is written as JSON files a static client-side search can load lazily:
+ * <ul>
+ * <li><code>index.json</code> lists the pages, their sections and the shards, by term prefix;</li>
+ * <li>each shard holds the terms of one prefix in sorted order, a term maps to a flat array of section numbers and
+ * the number of times the term occurs in that section: <code>{"markdown":[0,2,5,1]}</code>.</li>
+ * </ul>
+ * Terms are lower case runs of letters and digits of at least {@value #MIN_TERM_LENGTH} characters. The sections are
+ * numbered in the url order of their pages.
+ */
+final class SearchIndex {
+
+    static final int MIN_TERM_LENGTH = 2;
+    static final int MAX_TERM_LENGTH = 64;
+    static final int PREFIX_LENGTH = 2;
+
+    private final File outputDirectory;
+    private final List<Page> pages = new ArrayList<>();
+
+    SearchIndex(File outputDirectory) {
+        this.outputDirectory = outputDirectory.getAbsoluteFile();
+    }
+
+    /**
+     * Index a page. Pages can be added from several threads.
+     *
+     * @param htmlFile  the generated file
+     * @param title     the title of the page
+     * @param document  the parsed markdown
+     * @param headerIds the ids the renderer gives the headings, <code>null</code> if it gives them none and the
+     *                  sections have no anchors
+     */
+    void add(File htmlFile, String title, Document document, HeaderIdGenerator headerIds) {
+        Page page = new Page(PageUrl.of(outputDirectory, htmlFile), title != null ? title.trim() : "");
+        TextCollectingVisitor headingText = new TextCollectingVisitor();
+
+        Map<String, Integer> counts = new HashMap<>();
+        page.sections.add(new Section(null, page.title));
+        for (Node node : document.getDescendants()) {
+            if (node instanceof Heading) {
+                page.addTerms(counts);
+                counts.clear();
+                page.sections.add(new Section(headerIds != null ? headerIds.getId(node) : null, headingText.collectAndGetText(node)));
+            } else if (node instanceof Text) {
+                tokenize(node.getChars(), counts);
+            }
+        }
+        page.addTerms(counts);
+
+        synchronized (pages) {
+            pages.add(page);
+        }
+    }
+
+    int size() {
+        synchronized (pages) {
+            return pages.size();
+        }
+    }
+
+    /**
+     * Write the index, replacing the content of the directory.
+     *
+     * @param directory the directory of the index files
+     * @throws IOException Unable to write the index
+     */
+    void write(File directory) throws IOException {
+        List<Page> sorted;
+        synchronized (pages) {
+            sorted = new ArrayList<>(pages);
+        }
+        Collections.sort(sorted, new Comparator<Page>() {
+            @Override
+            public int compare(Page first, Page second) {
+                return first.url.compareTo(second.url);
+            }
+        });
+
+        // number the sections in page order and gather the postings of every term
+        TreeMap<String, List<int[]>> postings = new TreeMap<>();
+        int sectionOffset = 0;
+        for (Page page : sorted) {
+            for (Map.Entry<String, List<int[]>> term : page.terms.entrySet()) {
+                List<int[]> termPostings = postings.get(term.getKey());
+                if (termPostings == null) {
+                    termPostings = new ArrayList<>();
+                    postings.put(term.getKey(), termPostings);
+                }
+                for (int[] posting : term.getValue()) {
+                    termPostings.add(new int[]{sectionOffset + posting[0], posting[1]});
+                }
+            }
+            sectionOffset += page.sections.size();
+        }
+
+        if (directory.isDirectory()) {
+            FileUtils.cleanDirectory(directory);
+        }
+        Map<String, String> shards = writeShards(directory, postings);
+
+        try (JsonWriter json = open(new File(directory, "index.json"))) {
+            json.beginObject();
+            json.name("prefixLength").value(PREFIX_LENGTH);
+            json.name("pages").beginArray();
+            for (Page page : sorted) {
+                json.beginObject().name("url").value(page.url).name("title").value(page.title).endObject();
+            }
+            json.endArray();
+            json.name("sections").beginArray();
+            for (int i = 0; i < sorted.size(); i++) {
+                for (Section section : sorted.get(i).sections) {
+                    json.beginObject().name("page").value(i);
+                    if (section.anchor != null) {
+                        json.name("anchor").value(section.anchor);
+                    }
+                    json.name("title").value(section.title).endObject();
+                }
+            }
+            json.endArray();
+            json.name("shards").beginObject();
+            for (Map.Entry<String, String> shard : shards.entrySet()) {
+                json.name(shard.getKey()).value(shard.getValue());
+            }
+            json.endObject();
+            json.endObject();
+        }
+    }
+
+    /**
+     * @return the file of every prefix
+     */
+    private static Map<String, String> writeShards(File directory, TreeMap<String, List<int[]>> postings) throws IOException {
+        Map<String, String> shards = new TreeMap<>();
+        JsonWriter json = null;
+        String shardPrefix = null;
+        try {
+            for (Map.Entry<String, List<int[]>> term : postings.entrySet()) {
+                String prefix = term.getKey().substring(0, Math.min(PREFIX_LENGTH, term.getKey().length()));
+                if (!prefix.equals(shardPrefix)) {
+                    if (json != null) {
+                        json.endObject().close();
+                    }
+                    shardPrefix = prefix;
+                    String fileName = getShardFileName(prefix);
+                    shards.put(prefix, fileName);
+                    json = open(new File(directory, fileName)).beginObject();
+                }
+                json.name(term.getKey()).beginArray();
+                for (int[] posting : term.getValue()) {
+                    json.value(posting[0]).value(posting[1]);
+                }
+                json.endArray();
+            }
+            if (json != null) {
+                json.endObject();
+            }
+        } finally {
+            if (json != null) {
+                json.close();
+            }
+        }
+        return shards;
+    }
+
+    /**
+     * @return a file name that is safe on every file system, characters other than a-z and 0-9 are hex encoded
+     */
+    static String getShardFileName(String prefix) {
+        StringBuilder name = new StringBuilder();
+        for (int i = 0; i < prefix.length(); i++) {
+            char c = prefix.charAt(i);
+            if (c >= 'a' && c <= 'z' || c >= '0' && c <= '9') {
+                name.append(c);
+            } else {
+                name.append('_').append(Integer.toHexString(c));
+            }
+        }
+        return name.append(".json").toString();
+    }
+
+    /**
+     * Count the terms of the text.
+     */
+    static void tokenize(CharSequence text, Map<String, Integer> counts) {
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean letterOrDigit = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (letterOrDigit && start < 0) {
+                start = i;
+            } else if (!letterOrDigit && start >= 0) {
+                int length = i - start;
+                if (length >= MIN_TERM_LENGTH && length <= MAX_TERM_LENGTH) {
+                    String term = text.subSequence(start, i).toString().toLowerCase(Locale.ROOT);
+                    Integer count = counts.get(term);
+                    counts.put(term, count == null ? 1 : count + 1);
+                }
+                start = -1;
+            }
+        }
+    }
+
+    private static JsonWriter open(File file) throws IOException {
+        return new JsonWriter(new OutputStreamWriter(FileUtils.openOutputStream(file), StandardCharsets.UTF_8));
+    }
+
+    private static final class Page {
+        final String url;
+        final String title;
+        final List<Section> sections = new ArrayList<>();
+        /**
+         * Term to the sections of this page it occurs in and the number of times, section numbers start at 0.
+         */
+        final Map<String, List<int[]>> terms = new HashMap<>();
+
+        Page(String url, String title) {
+            this.url = url;
+            this.title = title;
+        }
+
+        void addTerms(Map<String, Integer> counts) {
+            int section = sections.size() - 1;
+            for (Map.Entry<String, Integer> count : counts.entrySet()) {
+                List<int[]> termSections = terms.get(count.getKey());
+                if (termSections == null) {
+                    termSections = new ArrayList<>(1);
+                    terms.put(count.getKey(), termSections);
+                }
+                termSections.add(new int[]{section, count.getValue()});
+            }
+        }
+    }
+
+    private static final class Section {
+        final String anchor;
+        final String title;
+
+        Section(String anchor, String title) {
+            this.anchor = anchor;
+            this.title = title;
+        }
+    }
+}
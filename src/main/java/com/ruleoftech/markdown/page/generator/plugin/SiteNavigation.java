@@ -0,0 +1,295 @@
+package com.ruleoftech.markdown.page.generator.plugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.commons.io.FileUtils;
+
+import com.vladsch.flexmark.ast.Heading;
+import com.vladsch.flexmark.html.renderer.HeaderIdGenerator;
+import com.vladsch.flexmark.util.ast.Document;
+import com.vladsch.flexmark.util.ast.Node;
+import com.vladsch.flexmark.util.ast.TextCollectingVisitor;
+import com.vladsch.flexmark.util.sequence.Escaping;
+
+/**
+ * Titles and headings of the generated pages, written as a JSON tree of the output directories and their pages, and
+ * as a sitemap listing the page urls.
+ * <p>
+ * The headings of a page also give its table of contents, which the header and footer templates include with the
+ * {@value HtmlTemplate#TOC_TOKEN} token.
+ */
+final class SiteNavigation {
+
+    private static final String SITEMAP_NAMESPACE = "http://www.sitemaps.org/schemas/sitemap/0.9";
+
+    private final File outputDirectory;
+    private final Map<String, Page> pages = new TreeMap<>();
+
+    SiteNavigation(File outputDirectory) {
+        this.outputDirectory = outputDirectory.getAbsoluteFile();
+    }
+
+    /**
+     * Add a page. Pages can be added from several threads.
+     *
+     * @param htmlFile the generated file
+     * @param page     its title and headings
+     */
+    void add(File htmlFile, Page page) {
+        String url = PageUrl.of(outputDirectory, htmlFile);
+        synchronized (pages) {
+            pages.put(url, page);
+        }
+    }
+
+    int size() {
+        synchronized (pages) {
+            return pages.size();
+        }
+    }
+
+    /**
+     * Write the navigation tree: the pages of a directory, with their nested headings, followed by its
+     * subdirectories.
+     *
+     * @param file the JSON file
+     * @throws IOException Unable to write the file
+     */
+    void writeNavigation(File file) throws IOException {
+        Directory root = new Directory("");
+        for (Map.Entry<String, Page> page : snapshot().entrySet()) {
+            Directory directory = root;
+            String[] segments = page.getKey().split("/");
+            for (int i = 0; i < segments.length - 1; i++) {
+                directory = directory.getDirectory(segments[i]);
+            }
+            directory.pages.put(page.getKey(), page.getValue());
+        }
+
+        try (JsonWriter json = new JsonWriter(new OutputStreamWriter(FileUtils.openOutputStream(file), StandardCharsets.UTF_8))) {
+            writeDirectory(json, root);
+        }
+    }
+
+    /**
+     * Write a <a href="https://www.sitemaps.org/protocol.html">sitemap</a> of the pages.
+     *
+     * @param file    the sitemap file
+     * @param baseUrl absolute url of the output directory
+     * @throws IOException Unable to write the file
+     */
+    void writeSitemap(File file, String baseUrl) throws IOException {
+        String base = baseUrl.endsWith("/") ? baseUrl : baseUrl + "/";
+        try (Writer out = new OutputStreamWriter(FileUtils.openOutputStream(file), StandardCharsets.UTF_8)) {
+            out.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+            out.write("<urlset xmlns=\"" + SITEMAP_NAMESPACE + "\">\n");
+            for (String url : snapshot().keySet()) {
+                out.write("  <url><loc>");
+                out.write(Escaping.escapeHtml(base + encodePath(url), false));
+                out.write("</loc></url>\n");
+            }
+            out.write("</urlset>\n");
+        }
+    }
+
+    private Map<String, Page> snapshot() {
+        synchronized (pages) {
+            return new TreeMap<>(pages);
+        }
+    }
+
+    private static void writeDirectory(JsonWriter json, Directory directory) throws IOException {
+        json.beginObject();
+        if (!directory.name.isEmpty()) {
+            json.name("name").value(directory.name);
+        }
+        json.name("pages").beginArray();
+        for (Map.Entry<String, Page> page : directory.pages.entrySet()) {
+            json.beginObject().name("url").value(page.getKey()).name("title").value(page.getValue().title);
+            writeHeadings(json, page.getValue().getHeadingTree());
+            json.endObject();
+        }
+        json.endArray();
+        json.name("directories").beginArray();
+        for (Directory subdirectory : directory.directories.values()) {
+            writeDirectory(json, subdirectory);
+        }
+        json.endArray();
+        json.endObject();
+    }
+
+    private static void writeHeadings(JsonWriter json, List<HeadingNode> headings) throws IOException {
+        json.name("headings").beginArray();
+        for (HeadingNode heading : headings) {
+            json.beginObject().name("id").value(heading.heading.id).name("title").value(heading.heading.text);
+            if (!heading.children.isEmpty()) {
+                writeHeadings(json, heading.children);
+            }
+            json.endObject();
+        }
+        json.endArray();
+    }
+
+    /**
+     * @return the path with the characters that are not allowed in an url percent encoded
+     */
+    private static String encodePath(String path) {
+        try {
+            return new URI(null, null, path, null).toASCIIString();
+        } catch (URISyntaxException e) {
+            throw new IllegalArgumentException("Invalid page path " + path, e);
+        }
+    }
+
+    /**
+     * Title and headings of a single page.
+     */
+    static final class Page {
+        final String title;
+        final List<PageHeading> headings;
+
+        Page(String title, List<PageHeading> headings) {
+            this.title = title;
+            this.headings = headings;
+        }
+
+        /**
+         * Collect the headings with the ids the renderer gives them.
+         *
+         * @param title     the title of the page, the first heading is used if <code>null</code>
+         * @param document  the parsed markdown
+         * @param headerIds the ids the renderer gives the headings, <code>null</code> if it gives them none and the
+         *                  headings can't be linked to
+         */
+        static Page of(String title, Document document, HeaderIdGenerator headerIds) {
+            TextCollectingVisitor headingText = new TextCollectingVisitor();
+            List<PageHeading> headings = new ArrayList<>();
+            for (Node node : document.getDescendants()) {
+                if (node instanceof Heading) {
+                    String text = headingText.collectAndGetText(node).replaceAll("\\s+", " ").trim();
+                    headings.add(new PageHeading(((Heading) node).getLevel(), headerIds != null ? headerIds.getId(node) : null, text));
+                }
+            }
+            if (title == null || title.trim().isEmpty()) {
+                title = headings.isEmpty() ? "" : headings.get(0).text;
+            }
+            return new Page(title.trim(), headings);
+        }
+
+        /**
+         * @return the html list of the headings linking to their anchors, empty if the page has no headings
+         */
+        String getTableOfContents() {
+            StringBuilder html = new StringBuilder();
+            appendList(html, getHeadingTree(), " class=\"toc\"");
+            return html.toString();
+        }
+
+        private static void appendList(StringBuilder html, List<HeadingNode> headings, String attributes) {
+            if (headings.isEmpty()) {
+                return;
+            }
+            html.append("<ul").append(attributes).append('>');
+            for (HeadingNode heading : headings) {
+                html.append("<li><a href=\"#").append(Escaping.escapeHtml(heading.heading.id, false)).append("\">")
+                        .append(Escaping.escapeHtml(heading.heading.text, false)).append("</a>");
+                appendList(html, heading.children, "");
+                html.append("</li>");
+            }
+            html.append("</ul>");
+        }
+
+        /**
+         * Nest the headings: a heading is a child of the closest preceding heading of a lower level.
+         */
+        List<HeadingNode> getHeadingTree() {
+            List<HeadingNode> roots = new ArrayList<>();
+            List<HeadingNode> open = new ArrayList<>();
+            for (PageHeading heading : headings) {
+                if (heading.id == null) {
+                    continue;
+                }
+                while (!open.isEmpty() && open.get(open.size() - 1).heading.level >= heading.level) {
+                    open.remove(open.size() - 1);
+                }
+                HeadingNode node = new HeadingNode(heading);
+                (open.isEmpty() ? roots : open.get(open.size() - 1).children).add(node);
+                open.add(node);
+            }
+            return roots;
+        }
+
+        /**
+         * @return the title on the first line and a <code>level id text</code> line per heading, for the build
+         * manifest
+         */
+        String encode() {
+            StringBuilder encoded = new StringBuilder(title);
+            for (PageHeading heading : headings) {
+                encoded.append('\n').append(heading.level).append('\t').append(heading.id != null ? heading.id : "")
+                        .append('\t').append(heading.text);
+            }
+            return encoded.toString();
+        }
+
+        static Page decode(String encoded) {
+            String[] lines = encoded.split("\n", -1);
+            List<PageHeading> headings = new ArrayList<>();
+            for (int i = 1; i < lines.length; i++) {
+                String[] fields = lines[i].split("\t", 3);
+                headings.add(new PageHeading(Integer.parseInt(fields[0]), fields[1].isEmpty() ? null : fields[1], fields[2]));
+            }
+            return new Page(lines[0], headings);
+        }
+    }
+
+    static final class PageHeading {
+        final int level;
+        final String id;
+        final String text;
+
+        PageHeading(int level, String id, String text) {
+            this.level = level;
+            this.id = id;
+            this.text = text;
+        }
+    }
+
+    private static final class HeadingNode {
+        final PageHeading heading;
+        final List<HeadingNode> children = new ArrayList<>();
+
+        HeadingNode(PageHeading heading) {
+            this.heading = heading;
+        }
+    }
+
+    private static final class Directory {
+        final String name;
+        final Map<String, Page> pages = new TreeMap<>();
+        final Map<String, Directory> directories = new TreeMap<>();
+
+        Directory(String name) {
+            this.name = name;
+        }
+
+        Directory getDirectory(String name) {
+            Directory directory = directories.get(name);
+            if (directory == null) {
+                directory = new Directory(name);
+                directories.put(name, directory);
+            }
+            return directory;
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package com.ruleoftech.markdown.page.generator.plugin;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.FilenameUtils;
+
+/**
+ * Watches the input directory and the header and footer files, and sorts the changes into markdown pages, templates
+ * and other files.
+ */
+final class SourceWatcher implements Closeable {
+
+    private final WatchService watchService = FileSystems.getDefault().newWatchService();
+    private final Map<WatchKey, Path> watchedDirectories = new HashMap<>();
+    private final Path inputDirectory;
+    private final Path outputDirectory;
+    private final Set<Path> templateFiles = new LinkedHashSet<>();
+    private final String[] inputFileExtensions;
+    private final boolean recursiveInput;
+
+    /**
+     * @param inputDirectory      absolute and normalized input directory
+     * @param outputDirectory     not watched if it is inside the input directory
+     * @param templateFiles       header and footer files
+     * @param inputFileExtensions extensions of the markdown files
+     * @param recursiveInput      whether the markdown files of the subdirectories are pages
+     * @throws IOException Unable to watch the directories
+     */
+    SourceWatcher(Path inputDirectory, Path outputDirectory, List<File> templateFiles, String[] inputFileExtensions,
+                  boolean recursiveInput) throws IOException {
+        this.inputDirectory = inputDirectory;
+        this.outputDirectory = outputDirectory.toAbsolutePath().normalize();
+        this.inputFileExtensions = inputFileExtensions;
+        this.recursiveInput = recursiveInput;
+        registerTree(inputDirectory);
+        for (File templateFile : templateFiles) {
+            Path path = templateFile.toPath().toAbsolutePath().normalize();
+            this.templateFiles.add(path);
+            if (!isInside(path, inputDirectory) && Files.isDirectory(path.getParent())) {
+                register(path.getParent());
+            }
+        }
+    }
+
+    /**
+     * Wait for changes and collect them until there have been none for <code>debounceMillis</code>.
+     *
+     * @throws InterruptedException Interrupted while waiting
+     * @throws IOException          Unable to watch a new directory
+     */
+    Changes take(long debounceMillis) throws InterruptedException, IOException {
+        Set<Path> changed = new LinkedHashSet<>();
+        Changes changes = new Changes();
+        WatchKey key = watchService.take();
+        while (key != null) {
+            changes.everything |= collectChanges(key, changed, changes.deletedDirectories);
+            key = watchService.poll(debounceMillis, TimeUnit.MILLISECONDS);
+        }
+
+        for (Path path : changed) {
+            if (changes.deletedDirectories.contains(path)) {
+                continue;
+            } else if (templateFiles.contains(path)) {
+                changes.everything = true;
+            } else if (isMarkdownFile(path)) {
+                changes.pages.add(path);
+            } else if (isInside(path, inputDirectory)) {
+                changes.assets = true;
+            }
+        }
+        return changes;
+    }
+
+    @Override
+    public void close() throws IOException {
+        watchService.close();
+    }
+
+    /**
+     * Collect the changed files of a watched directory and watch the directories created in it. A deleted directory
+     * only reports itself, not the files that were in it, so it is collected separately.
+     *
+     * @return <code>true</code> if events were lost
+     */
+    private boolean collectChanges(WatchKey key, Set<Path> changed, Set<Path> deletedDirectories) throws IOException {
+        Path directory = watchedDirectories.get(key);
+        boolean overflow = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW || directory == null) {
+                overflow = true;
+                continue;
+            }
+            Path path = directory.resolve((Path) event.context());
+            if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(path)) {
+                // files created before the directory is watched would be missed otherwise
+                registerTree(path);
+                for (File file : FileUtils.listFiles(path.toFile(), null, true)) {
+                    changed.add(file.toPath());
+                }
+            } else if (event.kind() == StandardWatchEventKinds.ENTRY_DELETE && watchedDirectories.containsValue(path)) {
+                deletedDirectories.add(path);
+            } else {
+                changed.add(path);
+            }
+        }
+        if (!key.reset()) {
+            watchedDirectories.remove(key);
+            if (directory != null && isInside(directory, inputDirectory) && !Files.exists(directory)) {
+                deletedDirectories.add(directory);
+            }
+        }
+        return overflow;
+    }
+
+    private boolean isMarkdownFile(Path path) {
+        if (!isInside(path, inputDirectory) || (!recursiveInput && !inputDirectory.equals(path.getParent()))) {
+            return false;
+        }
+        String extension = FilenameUtils.getExtension(path.getFileName().toString());
+        for (String inputFileExtension : inputFileExtensions) {
+            if (inputFileExtension.equals(extension)) {
+                return !Files.isDirectory(path);
+            }
+        }
+        return false;
+    }
+
+    private static boolean isInside(Path path, Path directory) {
+        return path.startsWith(directory) && !path.equals(directory);
+    }
+
+    /**
+     * Watch a directory and its subdirectories, except the output directory.
+     */
+    private void registerTree(Path root) throws IOException {
+        Files.walkFileTree(root.toAbsolutePath().normalize(), new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                if (dir.startsWith(outputDirectory)) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                register(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private void register(Path directory) throws IOException {
+        directory = directory.toAbsolutePath().normalize();
+        WatchKey key = directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+        watchedDirectories.put(key, directory);
+    }
+
+    /**
+     * Changes collected by {@link #take}.
+     */
+    static final class Changes {
+        /**
+         * The header or footer changed, or changes were lost, so every page needs to be rendered again.
+         */
+        boolean everything;
+        /**
+         * Created, modified and deleted markdown pages.
+         */
+        final Set<Path> pages = new LinkedHashSet<>();
+        /**
+         * Other files of the input directory changed.
+         */
+        boolean assets;
+        /**
+         * Deleted directories of the input directory, the files that were in them are not reported one by one.
+         */
+        final Set<Path> deletedDirectories = new LinkedHashSet<>();
+    }
+}
@@ -0,0 +1,319 @@
+package com.ruleoftech.markdown.page.generator.plugin;
+
+import java.io.File;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+import org.apache.commons.io.FileUtils;
+
+/**
+ * Read, parse, render and write times and sizes of every page and the totals of the other steps of an execution.
+ * <p>
+ * The disabled report records nothing, so the instrumented code only pays for a few calls that return immediately.
+ */
+final class TimingReport {
+
+    static final TimingReport DISABLED = new TimingReport(null);
+
+    private final File inputDirectory;
+    private final List<Stage> stages = new ArrayList<>();
+    private final List<PageTiming> pages = new ArrayList<>();
+
+    /**
+     * @param inputDirectory the pages are reported relative to this directory
+     */
+    TimingReport(File inputDirectory) {
+        this.inputDirectory = inputDirectory;
+    }
+
+    boolean isEnabled() {
+        return this != DISABLED;
+    }
+
+    /**
+     * @return start time of a step, to pass to {@link #stage}
+     */
+    long start() {
+        return isEnabled() ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Record a step that started at <code>start</code> and ends now.
+     */
+    void stage(String name, long start, int files, long bytes) {
+        if (isEnabled()) {
+            Stage stage = new Stage(name, System.nanoTime() - start, files, bytes);
+            synchronized (stages) {
+                stages.add(stage);
+            }
+        }
+    }
+
+    /**
+     * Start timing a page, the timing is recorded in the report when it is finished.
+     */
+    PageTiming page(File markdownFile) {
+        return isEnabled() ? new PageTiming(this, markdownFile) : PageTiming.NONE;
+    }
+
+    /**
+     * One line summary with the page and byte throughput of the markdown processing and the slowest pages.
+     */
+    String summary(int slowest) {
+        List<PageTiming> sorted = getPages();
+        long nanos = 0;
+        long bytes = 0;
+        int generated = 0;
+        for (PageTiming page : sorted) {
+            if (page.generated) {
+                nanos += page.getTotalNanos();
+                bytes += page.bytesRead;
+                generated++;
+            }
+        }
+        Stage markdown = getStage("markdown");
+        if (markdown != null) {
+            nanos = markdown.nanos;
+        }
+        double seconds = nanos / 1e9;
+        StringBuilder summary = new StringBuilder(String.format(Locale.ROOT,
+                "Rendered %d page(s) in %.0f ms: %.1f pages/s, %.2f MB/s", generated, nanos / 1e6,
+                seconds > 0 ? generated / seconds : 0, seconds > 0 ? bytes / 1e6 / seconds : 0));
+
+        Collections.sort(sorted, new Comparator<PageTiming>() {
+            @Override
+            public int compare(PageTiming a, PageTiming b) {
+                return Long.compare(b.getTotalNanos(), a.getTotalNanos());
+            }
+        });
+        for (int i = 0; i < Math.min(slowest, sorted.size()); i++) {
+            PageTiming page = sorted.get(i);
+            summary.append(i == 0 ? "; slowest: " : ", ").append(getRelativePath(page.markdownFile))
+                    .append(String.format(Locale.ROOT, " (%.1f ms)", page.getTotalNanos() / 1e6));
+        }
+        return summary.toString();
+    }
+
+    /**
+     * Write the report, as CSV if the file name ends with <code>.csv</code> and as JSON otherwise.
+     *
+     * @throws IOException Unable to write the report
+     */
+    void write(File file) throws IOException {
+        try (Writer writer = new OutputStreamWriter(FileUtils.openOutputStream(file), StandardCharsets.UTF_8)) {
+            if (file.getName().toLowerCase(Locale.ROOT).endsWith(".csv")) {
+                writeCsv(writer);
+            } else {
+                writeJson(new JsonWriter(writer));
+            }
+        }
+    }
+
+    private void writeCsv(Writer writer) throws IOException {
+        writer.write("file,generated,readMillis,parseMillis,renderMillis,writeMillis,bytesRead,bytesWritten\n");
+        for (PageTiming page : getPages()) {
+            String path = getRelativePath(page.markdownFile);
+            if (path.contains(",") || path.contains("\"")) {
+                path = '"' + path.replace("\"", "\"\"") + '"';
+            }
+            writer.write(String.format(Locale.ROOT, "%s,%b,%.3f,%.3f,%.3f,%.3f,%d,%d%n", path, page.generated,
+                    page.readNanos / 1e6, page.parseNanos / 1e6, page.renderNanos / 1e6, page.writeNanos / 1e6,
+                    page.bytesRead, page.bytesWritten));
+        }
+    }
+
+    private void writeJson(JsonWriter json) throws IOException {
+        json.beginObject();
+        json.name("stages").beginArray();
+        synchronized (stages) {
+            for (Stage stage : stages) {
+                json.beginObject()
+                        .name("name").value(stage.name)
+                        .name("millis").value(stage.nanos / 1e6)
+                        .name("files").value(stage.files)
+                        .name("bytes").value(stage.bytes)
+                        .endObject();
+            }
+        }
+        json.endArray();
+        json.name("pages").beginArray();
+        for (PageTiming page : getPages()) {
+            json.beginObject()
+                    .name("file").value(getRelativePath(page.markdownFile))
+                    .name("generated").value(page.generated)
+                    .name("readMillis").value(page.readNanos / 1e6)
+                    .name("parseMillis").value(page.parseNanos / 1e6)
+                    .name("renderMillis").value(page.renderNanos / 1e6)
+                    .name("writeMillis").value(page.writeNanos / 1e6)
+                    .name("bytesRead").value(page.bytesRead)
+                    .name("bytesWritten").value(page.bytesWritten)
+                    .endObject();
+        }
+        json.endArray();
+        json.endObject();
+    }
+
+    void add(PageTiming page) {
+        synchronized (pages) {
+            pages.add(page);
+        }
+    }
+
+    /**
+     * @return the pages in the order of their files, regardless of the order they were rendered in
+     */
+    private List<PageTiming> getPages() {
+        List<PageTiming> sorted;
+        synchronized (pages) {
+            sorted = new ArrayList<>(pages);
+        }
+        Collections.sort(sorted, new Comparator<PageTiming>() {
+            @Override
+            public int compare(PageTiming a, PageTiming b) {
+                return a.markdownFile.compareTo(b.markdownFile);
+            }
+        });
+        return sorted;
+    }
+
+    private Stage getStage(String name) {
+        synchronized (stages) {
+            for (Stage stage : stages) {
+                if (stage.name.equals(name)) {
+                    return stage;
+                }
+            }
+        }
+        return null;
+    }
+
+    private String getRelativePath(File file) {
+        if (inputDirectory != null) {
+            String base = inputDirectory.getAbsolutePath() + File.separator;
+            String path = file.getAbsolutePath();
+            if (path.startsWith(base)) {
+                return path.substring(base.length()).replace(File.separatorChar, '/');
+            }
+        }
+        return file.getPath().replace(File.separatorChar, '/');
+    }
+
+    private static final class Stage {
+        final String name;
+        final long nanos;
+        final int files;
+        final long bytes;
+
+        Stage(String name, long nanos, int files, long bytes) {
+            this.name = name;
+            this.nanos = nanos;
+            this.files = files;
+            this.bytes = bytes;
+        }
+    }
+
+    /**
+     * Timing of a single page. Each step is measured from the end of the previous one, writing is measured inside
+     * the output stream because the html is rendered straight to the file.
+     */
+    static class PageTiming {
+
+        static final PageTiming NONE = new PageTiming(null, null);
+
+        private final TimingReport report;
+        private final File markdownFile;
+        private long mark;
+        private boolean generated;
+        private long readNanos;
+        private long parseNanos;
+        private long renderNanos;
+        private long writeNanos;
+        private long bytesRead;
+        private long bytesWritten;
+
+        PageTiming(TimingReport report, File markdownFile) {
+            this.report = report;
+            this.markdownFile = markdownFile;
+            this.mark = report != null ? System.nanoTime() : 0;
+        }
+
+        void read(long bytes) {
+            if (report != null) {
+                readNanos = lap();
+                bytesRead = bytes;
+            }
+        }
+
+        void parsed() {
+            if (report != null) {
+                parseNanos = lap();
+            }
+        }
+
+        /**
+         * Time the writes to the html file.
+         */
+        OutputStream output(OutputStream out) {
+            if (report == null) {
+                return out;
+            }
+            return new FilterOutputStream(out) {
+                @Override
+                public void write(int b) throws IOException {
+                    long start = System.nanoTime();
+                    out.write(b);
+                    writeNanos += System.nanoTime() - start;
+                    bytesWritten++;
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    long start = System.nanoTime();
+                    out.write(b, off, len);
+                    writeNanos += System.nanoTime() - start;
+                    bytesWritten += len;
+                }
+
+                @Override
+                public void flush() throws IOException {
+                    long start = System.nanoTime();
+                    out.flush();
+                    writeNanos += System.nanoTime() - start;
+                }
+            };
+        }
+
+        /**
+         * The page was rendered and written, or found up to date if <code>generated</code> is false.
+         */
+        void finished(boolean generated) {
+            if (report != null) {
+                this.generated = generated;
+                if (generated) {
+                    renderNanos = Math.max(0, lap() - writeNanos);
+                }
+                report.add(this);
+            }
+        }
+
+        long getTotalNanos() {
+            return readNanos + parseNanos + renderNanos + writeNanos;
+        }
+
+        private long lap() {
+            long now = System.nanoTime();
+            long lap = now - mark;
+            mark = now;
+            return lap;
+        }
+    }
+}
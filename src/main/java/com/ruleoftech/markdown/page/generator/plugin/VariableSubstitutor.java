@@ -0,0 +1,164 @@
+package com.ruleoftech.markdown.page.generator.plugin;
+
+import java.util.Map;
+
+/**
+ * Removes <code>{key=value}</code> variable definitions and replaces <code>${key}</code> variables in a single scan.
+ * <p>
+ * The result is the same as removing the definitions with <code>\{\w*=.*}</code> first and then replacing the
+ * variables matching <code>\$\{(.+?)\}</code>, without compiling or running any regular expression. Unknown variables
+ * are left as they are. Every thread reuses its own buffer for the result.
+ */
+final class VariableSubstitutor {
+
+    private static final int INITIAL_CAPACITY = 8 * 1024;
+    private static final int MAX_RETAINED_CAPACITY = 1024 * 1024;
+
+    private static final ThreadLocal<StringBuilder> BUFFER = new ThreadLocal<StringBuilder>() {
+        @Override
+        protected StringBuilder initialValue() {
+            return new StringBuilder(INITIAL_CAPACITY);
+        }
+    };
+
+    private VariableSubstitutor() {
+    }
+
+    /**
+     * Remove the variable definitions and replace the variables.
+     *
+     * @param text      the text
+     * @param variables the variables, <code>null</code> only removes the definitions
+     * @return the text with variables replaced, the same instance if there was nothing to do
+     */
+    static String substitute(String text, Map<String, String> variables) {
+        if (text.indexOf('{') < 0) {
+            return text;
+        }
+        StringBuilder buffer = BUFFER.get();
+        buffer.setLength(0);
+        try {
+            substitute(text, variables, buffer);
+            return buffer.toString();
+        } finally {
+            if (buffer.capacity() > MAX_RETAINED_CAPACITY) {
+                BUFFER.remove();
+            }
+        }
+    }
+
+    /**
+     * Remove the variable definitions and replace the variables, appending the result.
+     *
+     * @param text      the text
+     * @param variables the variables, <code>null</code> only removes the definitions
+     * @param out       the builder to append to
+     */
+    static void substitute(CharSequence text, Map<String, String> variables, StringBuilder out) {
+        int length = text.length();
+        int literalStart = 0;
+        int i = 0;
+        while (i < length) {
+            char c = text.charAt(i);
+            if (c == '{') {
+                int definitionEnd = definitionEnd(text, i);
+                if (definitionEnd >= 0) {
+                    out.append(text, literalStart, i);
+                    i = literalStart = definitionEnd;
+                    continue;
+                }
+            } else if (c == '$' && variables != null && i + 1 < length && text.charAt(i + 1) == '{') {
+                int variableEnd = variableEnd(text, i);
+                if (variableEnd >= 0) {
+                    String name = text.subSequence(i + 2, variableEnd - 1).toString();
+                    if (variables.containsKey(name)) {
+                        String value = variables.get(name);
+                        out.append(text, literalStart, i).append(value != null ? value : "null");
+                        literalStart = variableEnd;
+                    }
+                    i = variableEnd;
+                    continue;
+                }
+            }
+            i++;
+        }
+        out.append(text, literalStart, length);
+    }
+
+    /**
+     * Whether {@link #substitute(CharSequence, Map, StringBuilder)} could change the text: it contains a definition,
+     * or the start of a variable and there are variables. Scans the text without copying it.
+     *
+     * @param text      the text
+     * @param variables the variables, may be <code>null</code>
+     * @return <code>false</code> if substituting would return the text as it is
+     */
+    static boolean needsSubstitution(CharSequence text, Map<String, String> variables) {
+        boolean hasVariables = variables != null && !variables.isEmpty();
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c == '{' && definitionEnd(text, i) >= 0
+                    || c == '$' && hasVariables && i + 1 < length && text.charAt(i + 1) == '{') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * A definition is <code>{</code>, word characters, <code>=</code> and everything up to the last <code>}</code>
+     * on the same line.
+     *
+     * @return end of the definition starting at <code>start</code> or <code>-1</code>
+     */
+    private static int definitionEnd(CharSequence text, int start) {
+        int length = text.length();
+        int i = start + 1;
+        while (i < length && isWordCharacter(text.charAt(i))) {
+            i++;
+        }
+        if (i >= length || text.charAt(i) != '=') {
+            return -1;
+        }
+        int end = -1;
+        for (i++; i < length && !isLineTerminator(text.charAt(i)); i++) {
+            if (text.charAt(i) == '}') {
+                end = i + 1;
+            }
+        }
+        return end;
+    }
+
+    /**
+     * A variable is <code>${</code>, at least one character and the first following <code>}</code> on the same
+     * line. A definition inside the variable would have been removed before the variables are replaced, which leaves
+     * no variable on that line.
+     *
+     * @return end of the variable starting at <code>start</code> or <code>-1</code>
+     */
+    private static int variableEnd(CharSequence text, int start) {
+        int length = text.length();
+        if (definitionEnd(text, start + 1) >= 0) {
+            return -1;
+        }
+        for (int i = start + 2; i < length && !isLineTerminator(text.charAt(i)); i++) {
+            char c = text.charAt(i);
+            if (c == '}' && i > start + 2) {
+                return i + 1;
+            }
+            if (c == '{' && definitionEnd(text, i) >= 0) {
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isWordCharacter(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_';
+    }
+
+    private static boolean isLineTerminator(char c) {
+        return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+    }
+}
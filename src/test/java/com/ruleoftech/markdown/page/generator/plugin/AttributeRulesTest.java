@@ -0,0 +1,110 @@
+package com.ruleoftech.markdown.page.generator.plugin;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import com.vladsch.flexmark.ext.tables.TablesExtension;
+import com.vladsch.flexmark.html.HtmlRenderer;
+import com.vladsch.flexmark.parser.Parser;
+import com.vladsch.flexmark.util.data.MutableDataSet;
+import com.vladsch.flexmark.util.html.MutableAttributes;
+import com.vladsch.flexmark.util.misc.Extension;
+
+/**
+ * Unit test for {@link AttributeRules}
+ */
+public class AttributeRulesTest extends BetterAbstractMojoTestCase {
+
+    public void testNodeClass() {
+        AttributeRules rules = new AttributeRules(Collections.<Extension>emptyList());
+        rules.add("Heading", attributes("class", "title"));
+
+        assertEquals("<h1 class=\"title\">One</h1>\n<h2 class=\"title\">Two</h2>\n<p>Text</p>\n",
+                render(rules, "# One\n\n## Two\n\nText\n"));
+    }
+
+    public void testPropertySelector() {
+        AttributeRules rules = new AttributeRules(Collections.<Extension>emptyList());
+        rules.add("Heading", attributes("class", "title"));
+        rules.add("Heading[level=2]", attributes("class", "section"));
+        rules.add("FencedCodeBlock[info=java]:NODE", attributes("class", "java"));
+
+        assertEquals("<h1 class=\"title\">One</h1>\n<h2 class=\"section\">Two</h2>\n"
+                        + "<pre class=\"java\"><code class=\"language-java\">int i;\n</code></pre>\n"
+                        + "<pre><code class=\"language-xml\">&lt;a/&gt;\n</code></pre>\n",
+                render(rules, "# One\n\n## Two\n\n```java\nint i;\n```\n\n```xml\n<a/>\n```\n"));
+    }
+
+    public void testPartSelector() {
+        AttributeRules rules = new AttributeRules(Collections.<Extension>emptyList());
+        rules.add("Link:LINK", attributes("rel", "nofollow"));
+        rules.add("Link:NODE", attributes("class", "never"));
+
+        assertEquals("<p><a href=\"https://example.com\" rel=\"nofollow\">Example</a></p>\n",
+                render(rules, "[Example](https://example.com)\n"));
+    }
+
+    public void testTypedProperties() {
+        AttributeRules rules = new AttributeRules(Collections.singletonList(TablesExtension.create()));
+        rules.add("TableCell[header=true]", attributes("class", "head"));
+        rules.add("TableCell[alignment=RIGHT]", attributes("class", "right"));
+        rules.add("Heading[level= 2 ]", attributes("class", "section"));
+
+        assertEquals("<h2 class=\"section\">Two</h2>\n<table>\n<thead>\n"
+                        + "<tr><th class=\"head\">A</th><th align=\"right\" class=\"right\">B</th></tr>\n</thead>\n"
+                        + "<tbody>\n<tr><td>1</td><td align=\"right\" class=\"right\">2</td></tr>\n</tbody>\n</table>\n",
+                render(rules, "## Two\n\n| A | B |\n|---|--:|\n| 1 | 2 |\n", TablesExtension.create()));
+    }
+
+    public void testAttributeMap() {
+        AttributeRules rules = new AttributeRules(Collections.<Extension>emptyList());
+        rules.add("Heading", attributes("class", "title"));
+        rules.add("Heading[level=2]", attributes("class", "section"));
+        rules.add("Link:LINK", attributes("rel", "nofollow"));
+        rules.add("Heading", attributes("id", "top"));
+
+        Map<String, MutableAttributes> attributeMap = rules.toAttributeMap();
+
+        assertEquals(Collections.singleton("Heading"), attributeMap.keySet());
+        assertEquals("title", attributeMap.get("Heading").getValue("class"));
+        assertEquals("top", attributeMap.get("Heading").getValue("id"));
+    }
+
+    public void testInvalidSelectors() {
+        AttributeRules rules = new AttributeRules(Collections.<Extension>emptyList());
+        assertInvalid(rules, "Heading[level]", "Invalid attribute selector: Heading[level], expected NodeClass,");
+        assertInvalid(rules, "Heading[depth=1]", "Invalid attribute selector: Heading has no property depth");
+        assertInvalid(rules, "Heading[level=two]", "Invalid attribute selector: Heading[level=two], getLevel() returns a number, not two");
+        assertInvalid(rules, "TableCell[header=true]", "Invalid attribute selector: TableCell[header=true], no node class TableCell");
+
+        rules.add("Unknown", attributes("class", "never"));
+        assertEquals("<h1>One</h1>\n", render(rules, "# One\n"));
+    }
+
+    private static void assertInvalid(AttributeRules rules, String selector, String message) {
+        try {
+            rules.add(selector, attributes("class", "title"));
+            fail(selector);
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith(message));
+        }
+    }
+
+    private static MutableAttributes attributes(String name, String value) {
+        MutableAttributes attributes = new MutableAttributes();
+        attributes.addValue(name, value);
+        return attributes;
+    }
+
+    private static String render(AttributeRules rules, String markdown, Extension... extensions) {
+        MutableDataSet options = new MutableDataSet();
+        options.set(AttributesExtension.ATTRIBUTE_RULES, rules);
+        List<Extension> allExtensions = new ArrayList<>(Arrays.asList(extensions));
+        allExtensions.add(AttributesExtension.create());
+        options.set(Parser.EXTENSIONS, allExtensions);
+        return HtmlRenderer.builder(options).build().render(Parser.builder(options).build().parse(markdown));
+    }
+}
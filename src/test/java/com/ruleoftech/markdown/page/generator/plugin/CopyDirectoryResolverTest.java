@@ -0,0 +1,63 @@
+package com.ruleoftech.markdown.page.generator.plugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.apache.commons.io.FileUtils;
+
+import com.google.common.io.Files;
+
+/**
+ * Unit test for {@link CopyDirectoryResolver}
+ */
+public class CopyDirectoryResolverTest extends BetterAbstractMojoTestCase {
+
+    private File inputDirectory;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        inputDirectory = Files.createTempDir();
+        for (String file : new String[]{"index.md", "css/site.css", "css/empty/.keep", "js/lib/app.js",
+                "docs/a/images/a.png", "docs/b/images/b.png", "docs/b/images/big/c.png", "other/images/d.png"}) {
+            FileUtils.writeStringToFile(new File(inputDirectory, file), file, "UTF-8");
+        }
+        new File(inputDirectory, "empty").mkdir();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        FileUtils.deleteDirectory(inputDirectory);
+        super.tearDown();
+    }
+
+    public void testLiteralDirectories() throws IOException {
+        assertEquals(new TreeSet<>(Arrays.asList("css", "docs/a/images")),
+                resolve("css, docs/a/images ,,missing,empty"));
+    }
+
+    public void testWildcards() throws IOException {
+        assertEquals(new TreeSet<>(Arrays.asList("docs/a/images", "docs/b/images")), resolve("docs/*/images"));
+        assertEquals(new TreeSet<>(Arrays.asList("docs/a/images", "docs/b/images", "other/images")),
+                resolve("**/images"));
+        assertEquals(new TreeSet<>(Arrays.asList("css/empty", "docs/b/images/big", "js/lib")),
+                resolve("*/lib,docs/**/big,css/e?pty,{no}"));
+    }
+
+    public void testDirectoriesAreOnlyFoundOnce() throws IOException {
+        assertEquals(new TreeSet<>(Arrays.asList("css", "js/lib")), resolve("css,c*,css,*s,j*/*,js/lib"));
+    }
+
+    private Set<String> resolve(String patterns) throws IOException {
+        Path root = inputDirectory.toPath();
+        Set<String> relativePaths = new TreeSet<>();
+        for (Path dir : new CopyDirectoryResolver(root.getFileSystem(), patterns).resolve(root)) {
+            relativePaths.add(root.toAbsolutePath().relativize(dir).toString().replace(File.separatorChar, '/'));
+        }
+        return relativePaths;
+    }
+}
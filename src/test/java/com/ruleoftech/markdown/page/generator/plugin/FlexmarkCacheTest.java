@@ -0,0 +1,73 @@
+package com.ruleoftech.markdown.page.generator.plugin;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.vladsch.flexmark.html.HtmlRenderer;
+import com.vladsch.flexmark.parser.Parser;
+
+/**
+ * Unit test for {@link FlexmarkCache}
+ */
+public class FlexmarkCacheTest extends BetterAbstractMojoTestCase {
+
+    @Override
+    protected void tearDown() throws Exception {
+        FlexmarkCache.clear();
+        super.tearDown();
+    }
+
+    public void testBuildsOncePerFingerprint() {
+        CountingFactory factory = new CountingFactory();
+
+        FlexmarkCache.Flexmark first = FlexmarkCache.get("pegdownOptions=1\n", factory);
+        FlexmarkCache.Flexmark second = FlexmarkCache.get("pegdownOptions=1\n", factory);
+        FlexmarkCache.Flexmark other = FlexmarkCache.get("pegdownOptions=2\n", factory);
+
+        assertSame(first, second);
+        assertNotSame(first, other);
+        assertEquals(2, factory.builds.get());
+    }
+
+    public void testEvictsLeastRecentlyUsed() {
+        CountingFactory factory = new CountingFactory();
+        FlexmarkCache.Flexmark first = FlexmarkCache.get("0", factory);
+        for (int i = 1; i <= FlexmarkCache.MAX_ENTRIES; i++) {
+            FlexmarkCache.get(Integer.toString(i), factory);
+            // keep the first entry recently used
+            assertSame(first, FlexmarkCache.get("0", factory));
+        }
+
+        assertEquals(FlexmarkCache.MAX_ENTRIES, FlexmarkCache.size());
+        assertEquals(FlexmarkCache.MAX_ENTRIES + 1, factory.builds.get());
+        FlexmarkCache.get("1", factory);
+        assertEquals("the least recently used entry is built again", FlexmarkCache.MAX_ENTRIES + 2, factory.builds.get());
+    }
+
+    public void testFailedBuildIsRetried() {
+        try {
+            FlexmarkCache.get("failing", new FlexmarkCache.Factory() {
+                @Override
+                public FlexmarkCache.Flexmark build() {
+                    throw new IllegalArgumentException("No such parser option: X");
+                }
+            });
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertEquals("No such parser option: X", e.getMessage());
+        }
+
+        CountingFactory factory = new CountingFactory();
+        assertNotNull(FlexmarkCache.get("failing", factory));
+        assertEquals(1, factory.builds.get());
+    }
+
+    private static class CountingFactory implements FlexmarkCache.Factory {
+        final AtomicInteger builds = new AtomicInteger();
+
+        @Override
+        public FlexmarkCache.Flexmark build() {
+            builds.incrementAndGet();
+            return new FlexmarkCache.Flexmark(Parser.builder().build(), HtmlRenderer.builder().build(), false);
+        }
+    }
+}
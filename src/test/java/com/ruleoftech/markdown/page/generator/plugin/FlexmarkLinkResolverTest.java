@@ -24,7 +24,41 @@ public class FlexmarkLinkResolverTest extends BetterAbstractMojoTestCase {
 
     public void testResolveLink() {
         // Given
-        NodeRendererContext context = new NodeRendererContext() {
+        NodeRendererContext context = context();
+        FlexmarkLinkResolver flexmarkLinkResolver = new FlexmarkLinkResolver(context);
+
+        // When, Then
+        assertEquals(flexmarkLinkResolver.resolveLink(null, context, new ResolvedLink(LINK, "test.md")).getUrl(), new ResolvedLink(LINK, "test.html").getUrl());
+        assertEquals(flexmarkLinkResolver.resolveLink(null, context, new ResolvedLink(LINK, "test.markdown")).getUrl(), new ResolvedLink(LINK, "test.html").getUrl());
+        assertEquals(flexmarkLinkResolver.resolveLink(null, context, new ResolvedLink(LINK, "test.md#")).getUrl(), new ResolvedLink(LINK, "test.html#").getUrl());
+        assertEquals(flexmarkLinkResolver.resolveLink(null, context, new ResolvedLink(LINK, "test.markdown#")).getUrl(), new ResolvedLink(LINK, "test.html#").getUrl());
+    }
+
+    public void testResolveLinkParts() {
+        NodeRendererContext context = context();
+        FlexmarkLinkResolver flexmarkLinkResolver = new FlexmarkLinkResolver(context);
+
+        assertEquals("test.html?lang=fi", resolve(flexmarkLinkResolver, context, "test.md?lang=fi"));
+        assertEquals("test.html?lang=fi#part", resolve(flexmarkLinkResolver, context, "test.md?lang=fi#part"));
+        assertEquals("../docs/test.html#part", resolve(flexmarkLinkResolver, context, "../docs/test.md#part"));
+        assertEquals("./test.html", resolve(flexmarkLinkResolver, context, "./test.md"));
+        assertEquals("dir/a:b.html", resolve(flexmarkLinkResolver, context, "dir/a:b.md"));
+        assertEquals("#test.md", resolve(flexmarkLinkResolver, context, "#test.md"));
+        assertEquals("search?page=test.md", resolve(flexmarkLinkResolver, context, "search?page=test.md"));
+        assertEquals("test.mdx", resolve(flexmarkLinkResolver, context, "test.mdx"));
+        assertEquals("./.md", resolve(flexmarkLinkResolver, context, "./.md"));
+        assertEquals("https://example.com/test.md", resolve(flexmarkLinkResolver, context, "https://example.com/test.md"));
+        assertEquals("ftp://example.com/test.md", resolve(flexmarkLinkResolver, context, "ftp://example.com/test.md"));
+        assertEquals("//example.com/test.md", resolve(flexmarkLinkResolver, context, "//example.com/test.md"));
+        assertEquals("mailto:test.md", resolve(flexmarkLinkResolver, context, "mailto:test.md"));
+    }
+
+    private static String resolve(FlexmarkLinkResolver flexmarkLinkResolver, NodeRendererContext context, String url) {
+        return flexmarkLinkResolver.resolveLink(null, context, new ResolvedLink(LINK, url)).getUrl();
+    }
+
+    private static NodeRendererContext context() {
+        return new NodeRendererContext() {
             @Override
             public MutableAttributes extendRenderingNodeAttributes(AttributablePart part, Attributes attributes) {
                 return null;
@@ -132,12 +166,5 @@ public class FlexmarkLinkResolverTest extends BetterAbstractMojoTestCase {
                 return null;
             }
         };
-        FlexmarkLinkResolver flexmarkLinkResolver = new FlexmarkLinkResolver(context);
-
-        // When, Then
-        assertEquals(flexmarkLinkResolver.resolveLink(null, context, new ResolvedLink(LINK, "test.md")).getUrl(), new ResolvedLink(LINK, "test.html").getUrl());
-        assertEquals(flexmarkLinkResolver.resolveLink(null, context, new ResolvedLink(LINK, "test.markdown")).getUrl(), new ResolvedLink(LINK, "test.html").getUrl());
-        assertEquals(flexmarkLinkResolver.resolveLink(null, context, new ResolvedLink(LINK, "test.md#")).getUrl(), new ResolvedLink(LINK, "test.html#").getUrl());
-        assertEquals(flexmarkLinkResolver.resolveLink(null, context, new ResolvedLink(LINK, "test.markdown#")).getUrl(), new ResolvedLink(LINK, "test.html#").getUrl());
     }
 }
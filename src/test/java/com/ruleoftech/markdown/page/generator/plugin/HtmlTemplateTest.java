@@ -0,0 +1,79 @@
+package com.ruleoftech.markdown.page.generator.plugin;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Unit test for {@link HtmlTemplate}
+ */
+public class HtmlTemplateTest extends BetterAbstractMojoTestCase {
+
+    private static final String HEADER = "<html lang=\"${lang}\">\n"
+            + "<head><title>titleToken</title>\n"
+            + "<link rel=\"stylesheet\" href=\"##SITE_BASE##/css/default.css\" />\n"
+            + "{ignored=definition}\n"
+            + "<meta name=\"description\" content=\"${description}\" />\n"
+            + "</head><body>titleToken";
+
+    public void testHeader() throws IOException {
+        Map<String, String> variables = new HashMap<>();
+        variables.put("lang", "en");
+
+        HtmlTemplate template = HtmlTemplate.compile(HEADER, true, true, StandardCharsets.UTF_8);
+
+        assertEquals("<html lang=\"en\">\n"
+                + "<head><title>Title $1 \\ \u00e4</title>\n"
+                + "<link rel=\"stylesheet\" href=\"./../../css/default.css\" />\n"
+                + "\n"
+                + "<meta name=\"description\" content=\"${description}\" />\n"
+                + "</head><body>titleToken", write(template, "Title $1 \\ \u00e4", variables, "./../..", StandardCharsets.UTF_8));
+    }
+
+    public void testFooterWithoutFiltering() throws IOException {
+        Map<String, String> variables = new HashMap<>();
+        variables.put("lang", "en");
+
+        HtmlTemplate template = HtmlTemplate.compile(HEADER, false, false, StandardCharsets.ISO_8859_1);
+
+        assertEquals(HEADER.replace("##SITE_BASE##", "."), write(template, "Title", variables, ".", StandardCharsets.ISO_8859_1));
+    }
+
+    public void testVariablesInTitle() throws IOException {
+        Map<String, String> variables = new HashMap<>();
+        variables.put("version", "1.0");
+
+        HtmlTemplate template = HtmlTemplate.compile("<title>titleToken</title>", true, true, StandardCharsets.UTF_8);
+
+        assertEquals("<title>Release 1.0 ${unknown}</title>", write(template, "Release ${version} ${unknown}", variables, ".", StandardCharsets.UTF_8));
+        assertEquals("<title></title>", write(template, null, variables, ".", StandardCharsets.UTF_8));
+    }
+
+    public void testEmpty() throws IOException {
+        assertTrue(HtmlTemplate.EMPTY.isEmpty());
+        assertTrue(HtmlTemplate.compile("", true, true, StandardCharsets.UTF_8).isEmpty());
+        assertEquals("", write(HtmlTemplate.EMPTY, "Title", new HashMap<String, String>(), ".", StandardCharsets.UTF_8));
+    }
+
+    public void testTableOfContents() throws IOException {
+        HtmlTemplate template = HtmlTemplate.compile("<nav>##TOC##</nav>${toc}", false, false, StandardCharsets.UTF_8);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        template.write(out, "Title", new HashMap<String, String>(), ".", "<ul class=\"toc\"></ul>");
+
+        assertTrue(template.hasTableOfContents());
+        assertFalse(HtmlTemplate.compile(HEADER, true, true, StandardCharsets.UTF_8).hasTableOfContents());
+        assertEquals("<nav><ul class=\"toc\"></ul></nav>${toc}", new String(out.toByteArray(), StandardCharsets.UTF_8));
+        assertEquals("<nav></nav>${toc}", write(template, "Title", new HashMap<String, String>(), ".", StandardCharsets.UTF_8));
+    }
+
+    private static String write(HtmlTemplate template, String title, Map<String, String> variables, String siteBase,
+                                Charset charset) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        template.write(out, title, variables, siteBase, null);
+        return new String(out.toByteArray(), charset);
+    }
+}
@@ -0,0 +1,78 @@
+package com.ruleoftech.markdown.page.generator.plugin;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.commons.io.FileUtils;
+
+/**
+ * Unit test for {@link MappedMarkdown}
+ */
+public class MappedMarkdownTest extends BetterAbstractMojoTestCase {
+
+    public void testAsciiIsNotDecoded() throws Exception {
+        ByteBuffer bytes = ByteBuffer.wrap("# Title\n\nLorem ipsum\n".getBytes(StandardCharsets.UTF_8));
+
+        CharSequence text = MappedMarkdown.decode(bytes, StandardCharsets.UTF_8);
+
+        assertTrue(text instanceof MappedMarkdown.ByteCharSequence);
+        assertEquals("# Title\n\nLorem ipsum\n", text.toString());
+        assertEquals("Title", text.subSequence(2, 7).toString());
+        assertEquals('L', text.subSequence(9, 20).charAt(0));
+    }
+
+    public void testLatin1IsNotDecoded() throws Exception {
+        String markdown = "Umlauts: \u00f6\u00e4\u00fc";
+
+        CharSequence text = MappedMarkdown.decode(ByteBuffer.wrap(markdown.getBytes(StandardCharsets.ISO_8859_1)),
+                StandardCharsets.ISO_8859_1);
+
+        assertTrue(text instanceof MappedMarkdown.ByteCharSequence);
+        assertEquals(markdown, text.toString());
+    }
+
+    public void testDecodesLikeString() throws Exception {
+        Charset charset = Charset.forName("ISO-8859-15");
+        byte[] utf8 = "Euro: \u20ac, \ud83d\ude00".getBytes(StandardCharsets.UTF_8);
+        byte[] latin9 = "Euro: \u20ac".getBytes(charset);
+        byte[] malformed = {'a', (byte) 0xc3, 'b', (byte) 0xff};
+
+        assertDecoded(utf8, StandardCharsets.UTF_8);
+        assertDecoded(latin9, charset);
+        assertDecoded(malformed, StandardCharsets.UTF_8);
+    }
+
+    public void testMapsFile() throws Exception {
+        File file = new File(getBasedir(), "/target/test-harness/mapped-markdown/page.md");
+        FileUtils.writeStringToFile(file, "# \u00c4\n", "UTF-8");
+
+        ByteBuffer mapped = MappedMarkdown.map(file.toPath());
+
+        assertEquals(5, mapped.remaining());
+        assertEquals("# \u00c4\n", MappedMarkdown.decode(mapped, StandardCharsets.UTF_8).toString());
+        assertEquals("decoding does not move the buffer", 5, mapped.remaining());
+    }
+
+    public void testDecodesToExactLength() throws Exception {
+        StringBuilder markdown = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            markdown.append("Line ").append(i).append(" \u00e4\u20ac\ud83d\ude00\n");
+        }
+        File file = new File(getBasedir(), "/target/test-harness/mapped-markdown/large.md");
+        FileUtils.writeStringToFile(file, markdown.toString(), "UTF-8");
+
+        CharSequence text = MappedMarkdown.decode(MappedMarkdown.map(file.toPath()), StandardCharsets.UTF_8);
+
+        assertEquals(markdown.toString(), text.toString());
+        assertEquals("no room for the worst case", text.length(), ((CharBuffer) text).capacity());
+    }
+
+    private static void assertDecoded(byte[] bytes, Charset charset) throws Exception {
+        CharSequence text = MappedMarkdown.decode(ByteBuffer.wrap(bytes), charset);
+        assertTrue(text instanceof CharBuffer);
+        assertEquals(new String(bytes, charset), text.toString());
+    }
+}
@@ -0,0 +1,85 @@
+package com.ruleoftech.markdown.page.generator.plugin;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Unit test for {@link MarkdownSource}
+ */
+public class MarkdownSourceTest extends BetterAbstractMojoTestCase {
+
+    private static final String[] SOURCES = {
+            "",
+            "# Lorem ipsum\n\nSome text\n",
+            "Text\n\nLorem ipsum\n===========\n\nMore text",
+            "Lorem ipsum\n---\n",
+            "Lorem ipsum\n----\n",
+            "---\ntitle: Title\n---\n\n\n# Header\n\nBody\n",
+            "---  \r\ntitle: Title\r\n---\r\n# Header\r\nBody\r\n",
+            "---\n---\n# Not a front matter\n",
+            "---\n\n---\n# Empty front matter\n",
+            "---\ntitle: unclosed\n# Header\n",
+            "---\ntitle: closed at end of file\n---",
+            "----\ntitle: no front matter\n---\n# Header\n",
+            "# Lorem ipsum\n\n{headerSubstitution=The new header}\n\n{key=value=with=equals}\n{=}\n{not a variable}\n {indented=no}\n",
+            "{first=1}\r\n{second=2}\r{third=3}\n",
+    };
+
+    public void testScanMatchesLineBasedProcessing() {
+        for (String source : SOURCES) {
+            MarkdownSource markdownSource = MarkdownSource.scan(source, true, true, true);
+
+            assertEquals(source, getTitle(source), markdownSource.getTitle());
+            assertEquals(source, getSubstitutes(source), markdownSource.getSubstitutes());
+            assertEquals(source, removeMarkdownHeader(source), markdownSource.getBody());
+        }
+    }
+
+    public void testScanWithoutOptions() {
+        String source = "---\ntitle: Title\n---\n# Header\n{key=value}\n";
+
+        MarkdownSource markdownSource = MarkdownSource.scan(source, false, false, false);
+
+        assertNull(markdownSource.getTitle());
+        assertTrue(markdownSource.getSubstitutes().isEmpty());
+        assertFalse(markdownSource.hasFrontMatter());
+        assertSame(source, markdownSource.getBody());
+    }
+
+    private static String[] readLines(String source) {
+        return source.isEmpty() ? new String[0] : source.split("\r\n|\r|\n");
+    }
+
+    private static String getTitle(String source) {
+        String previousLine = "";
+        for (String line : readLines(source)) {
+            line = line.trim();
+            if (line.startsWith("#")) {
+                return line.replace("#", "");
+            }
+            if ((line.startsWith("=") && line.length() == previousLine.length() && line.matches("^=+$"))
+                    || (line.startsWith("-") && line.length() == previousLine.length() && line.matches("^-+$"))) {
+                return previousLine;
+            }
+            previousLine = line;
+        }
+        return null;
+    }
+
+    private static Map<String, String> getSubstitutes(String source) {
+        Map<String, String> substitutes = new HashMap<>();
+        for (String line : readLines(source)) {
+            if (line.matches("^\\{.*=.*\\}$")) {
+                substitutes.put(line.replaceAll("(^\\{)|(=.*)", ""), line.replaceAll("(^\\{(.*?)=)|(}$)", ""));
+            }
+        }
+        return substitutes;
+    }
+
+    private static String removeMarkdownHeader(String markdown) {
+        Matcher matcher = Pattern.compile("^---\\s*\n(.*?)\n---\\s*\n(.*?)$", Pattern.DOTALL).matcher(markdown);
+        return matcher.find() ? matcher.group(2) : markdown;
+    }
+}
@@ -2,15 +2,33 @@ package com.ruleoftech.markdown.page.generator.plugin;
 
 import com.google.common.io.Files;
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.codehaus.plexus.util.ReflectionUtils;
+import org.codehaus.plexus.util.StringUtils;
 import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.SystemStreamLog;
 import org.junit.Assert;
 import org.junit.Test;
 
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
 
 /**
  * Unit test for {@link MdPageGeneratorMojo}
@@ -84,6 +102,22 @@ public class MdPageGeneratorMojoTest extends BetterAbstractMojoTestCase {
 
     }
 
+    @Test
+    public void testEncodingMappedFile() throws Exception {
+        final File generatedMarkdown = new File(getBasedir(), "/target/test-harness/encoding-project/target/html/README.html");
+        File pom = getTestFile("src/test/resources/encoding-project/pom.xml");
+
+        ((MdPageGeneratorMojo) lookupConfiguredMojo(pom, "generate")).execute();
+        String read = FileUtils.readFileToString(generatedMarkdown, "ISO-8859-15");
+
+        MdPageGeneratorMojo mdPageGeneratorMojo = (MdPageGeneratorMojo) lookupConfiguredMojo(pom, "generate");
+        ReflectionUtils.setVariableValueInObject(mdPageGeneratorMojo, "largeFileThreshold", 1L);
+        assertTrue(generatedMarkdown.delete());
+        mdPageGeneratorMojo.execute();
+
+        assertEquals(read, FileUtils.readFileToString(generatedMarkdown, "ISO-8859-15"));
+    }
+
     @Test
     public void testBasicProject() throws Exception {
         final String expectedGeneratedHTMLFile = "/target/test-harness/basic-project/target/html/README.html";
@@ -258,6 +292,23 @@ public class MdPageGeneratorMojoTest extends BetterAbstractMojoTestCase {
                 + "</blockquote>\n", markDown);
     }
 
+    @Test
+    public void testCustomAttributesWithInvalidProperty() throws Exception {
+        File generatedMarkdown = new File(getBasedir(), "/target/test-harness/custom-attributes/target/html/README.html");
+        File pom = getTestFile("src/test/resources/custom-attributes/pom.xml");
+        MdPageGeneratorMojo mdPageGeneratorMojo = (MdPageGeneratorMojo) lookupConfiguredMojo(pom, "generate");
+        ReflectionUtils.setVariableValueInObject(mdPageGeneratorMojo, "attributes", new String[]{"Heading[levle=2]|class=section"});
+        FileUtils.deleteQuietly(generatedMarkdown);
+
+        try {
+            mdPageGeneratorMojo.execute();
+            fail();
+        } catch (MojoExecutionException e) {
+            assertEquals("Invalid attribute selector: Heading has no property levle", e.getMessage());
+        }
+        assertFalse("nothing is rendered with an invalid selector", generatedMarkdown.exists());
+    }
+
     @Test
     public void testRecursiveProject() throws Exception {
         final String expectedGeneratedHTMLFileBaseDir = "/target/test-harness/recursive-project/target/html/";
@@ -283,22 +334,618 @@ public class MdPageGeneratorMojoTest extends BetterAbstractMojoTestCase {
         assertTrue(page11.exists());
     }
 
-    //public void testParsingTimeout()
-    //        throws Exception {
-    //    File pom = getTestFile("src/test/resources/timeout-project/pom.xml");
-    //    assertTrue(pom.exists());
-    //
-    //    MdPageGeneratorMojo mdPageGeneratorMojo = (MdPageGeneratorMojo) lookupConfiguredMojo(pom, "generate");
-    //
-    //    assertNotNull(mdPageGeneratorMojo);
-    //
-    //    try {
-    //        mdPageGeneratorMojo.execute();
-    //        fail();
-    //    } catch (Exception ex) {
-    //        assertEquals(ParsingTimeoutException.class, ex.getCause().getClass());
-    //    }
-    //}
+    @Test
+    public void testParallelProject() throws Exception {
+        final String expectedGeneratedHTMLFileBaseDir = "/target/test-harness/parallel-project/target/html/";
+
+        File pom = getTestFile("src/test/resources/parallel-project/pom.xml");
+        assertTrue(pom.exists());
+
+        MdPageGeneratorMojo mdPageGeneratorMojo = (MdPageGeneratorMojo) lookupConfiguredMojo(pom, "generate");
+        assertNotNull(mdPageGeneratorMojo);
+
+        mdPageGeneratorMojo.execute();
+
+        File index = new File(getBasedir(), expectedGeneratedHTMLFileBaseDir + "index.html");
+        assertTrue(index.exists());
+
+        for (String page : new String[]{"first", "second", "third"}) {
+            File generatedPage = new File(getBasedir(), expectedGeneratedHTMLFileBaseDir + "pages/" + page + ".html");
+            assertTrue("Expected HTML file does not exist: " + generatedPage, generatedPage.exists());
+
+            String html = FileUtils.readFileToString(generatedPage, Charset.defaultCharset());
+            assertEquals("<h1>The " + page + " page</h1>\n"
+                    + "<p>Some text on the " + page + " page.</p>\n"
+                    + "<table>\n"
+                    + "<thead>\n"
+                    + "<tr><th> a </th><th> b </th></tr>\n"
+                    + "</thead>\n"
+                    + "<tbody>\n"
+                    + "<tr><td> 1 </td><td> 2 </td></tr>\n"
+                    + "</tbody>\n"
+                    + "</table>\n", html);
+        }
+    }
+
+    @Test
+    public void testIncrementalProject() throws Exception {
+        final File buildDirectory = new File(getBasedir(), "/target/test-harness/incremental-project/target");
+        final File inputDirectory = new File(buildDirectory, "markdown");
+        final File page1 = new File(buildDirectory, "html/page-1.html");
+        final File page2 = new File(buildDirectory, "html/page-2.html");
+
+        FileUtils.deleteDirectory(buildDirectory);
+        FileUtils.copyDirectory(getTestFile("src/test/resources/incremental-project/src/main/resources/markdown"), inputDirectory);
+
+        File pom = getTestFile("src/test/resources/incremental-project/pom.xml");
+        assertTrue(pom.exists());
+
+        ((MdPageGeneratorMojo) lookupConfiguredMojo(pom, "generate")).execute();
+        assertTrue("Expected HTML file does not exist: " + page1, page1.exists());
+        assertTrue("Expected HTML file does not exist: " + page2, page2.exists());
+        assertTrue(new File(buildDirectory, "markdown-page-generator.manifest").exists());
+
+        // unchanged sources are not generated again
+        assertTrue(page1.setLastModified(0));
+        assertTrue(page2.setLastModified(0));
+        ((MdPageGeneratorMojo) lookupConfiguredMojo(pom, "generate")).execute();
+        assertEquals(0, page1.lastModified());
+        assertEquals(0, page2.lastModified());
+
+        // changed sources are generated again and html files of deleted sources are removed
+        FileUtils.writeStringToFile(new File(inputDirectory, "page-1.md"), "# Page 1\n\nThe changed first page.\n", Charset.defaultCharset());
+        assertTrue(new File(inputDirectory, "page-2.md").delete());
+        ((MdPageGeneratorMojo) lookupConfiguredMojo(pom, "generate")).execute();
+        assertTrue(page1.lastModified() > 0);
+        assertTrue(FileUtils.readFileToString(page1, Charset.defaultCharset()).contains("The changed first page."));
+        assertFalse("Unexpected HTML file exist: " + page2, page2.exists());
+    }
+
+    public void testParsingTimeout()
+            throws Exception {
+        final File inputDirectory = new File(getBasedir(), "/target/test-harness/timeout-project/target/markdown");
+        FileUtils.deleteDirectory(inputDirectory);
+        // no machine parses a few megabytes within the timeout of a millisecond
+        StringBuilder markdown = new StringBuilder();
+        for (int i = 0; i < 50000; i++) {
+            markdown.append("Paragraph ").append(i).append(" with *emphasis* and a [link](page.md)\n\n");
+        }
+        FileUtils.writeStringToFile(new File(inputDirectory, "large.md"), markdown.toString(), "UTF-8");
+
+        File pom = getTestFile("src/test/resources/timeout-project/pom.xml");
+        assertTrue(pom.exists());
+
+        MdPageGeneratorMojo mdPageGeneratorMojo = (MdPageGeneratorMojo) lookupConfiguredMojo(pom, "generate");
+
+        assertNotNull(mdPageGeneratorMojo);
+
+        try {
+            mdPageGeneratorMojo.execute();
+            fail();
+        } catch (Exception ex) {
+            assertEquals(ParsingTimeoutException.class, ex.getCause().getClass());
+            assertTrue(ex.getMessage(), ex.getMessage().contains("large.md"));
+        }
+    }
+
+    public void testInputLimits() throws Exception {
+        final File inputDirectory = new File(getBasedir(), "/target/test-harness/limits-project/target/markdown");
+        final File markdownFile = new File(inputDirectory, "page.md");
+        FileUtils.deleteDirectory(inputDirectory);
+
+        File pom = getTestFile("src/test/resources/limits-project/pom.xml");
+        assertTrue(pom.exists());
+
+        StringBuilder nestedList = new StringBuilder();
+        for (int i = 0; i < 20; i++) {
+            nestedList.append(StringUtils.repeat("  ", i)).append("- item\n");
+        }
+        String[][] documents = {
+                {StringUtils.repeat(">", 20) + " quote", "nests 20 levels deep"},
+                {nestedList.toString(), "levels deep, the maximum is 16"},
+                {StringUtils.repeat("Lorem ipsum ", 100), "bytes, the maximum is 1000 bytes"},
+        };
+        for (String[] document : documents) {
+            FileUtils.writeStringToFile(markdownFile, document[0], "UTF-8");
+            try {
+                ((MdPageGeneratorMojo) lookupConfiguredMojo(pom, "generate")).execute();
+                fail(document[1]);
+            } catch (MojoExecutionException ex) {
+                assertTrue(ex.getMessage(), ex.getMessage().contains(document[1]));
+            }
+        }
+
+        FileUtils.writeStringToFile(markdownFile, "# Title\n\n> quote\n\n- [link](page.md)\n", "UTF-8");
+        ((MdPageGeneratorMojo) lookupConfiguredMojo(pom, "generate")).execute();
+        assertTrue(new File(getBasedir(), "/target/test-harness/limits-project/target/html/page.html").exists());
+    }
+
+    @Test
+    public void testTimingReport() throws Exception {
+        final File targetDirectory = new File(getBasedir(), "/target/test-harness/timing-report-project/target");
+        final File inputDirectory = new File(targetDirectory, "markdown");
+        FileUtils.deleteDirectory(inputDirectory);
+        FileUtils.writeStringToFile(new File(inputDirectory, "index.md"), "# Index\n\n[Page](sub/page.md)\n", "UTF-8");
+        FileUtils.writeStringToFile(new File(inputDirectory, "sub/page.md"), "# Page\n\nLorem ipsum\n", "UTF-8");
+
+        File pom = getTestFile("src/test/resources/timing-report-project/pom.xml");
+        assertTrue(pom.exists());
+
+        MdPageGeneratorMojo mdPageGeneratorMojo = (MdPageGeneratorMojo) lookupConfiguredMojo(pom, "generate");
+        mdPageGeneratorMojo.execute();
+
+        String json = FileUtils.readFileToString(new File(targetDirectory, "markdown-page-generator-timings.json"), "UTF-8");
+        assertTrue(json, json.startsWith("{\"stages\":[{\"name\":\"filtering\""));
+        assertTrue(json, json.contains("{\"name\":\"markdown\""));
+        assertTrue(json, json.contains("\"pages\":[{\"file\":\"index.md\",\"generated\":true,"));
+        assertTrue(json, json.contains("{\"file\":\"sub/page.md\",\"generated\":true,"));
+        assertTrue(json, json.contains("\"bytesRead\":20,"));
+
+        File csvReport = new File(targetDirectory, "timings.csv");
+        mdPageGeneratorMojo = (MdPageGeneratorMojo) lookupConfiguredMojo(pom, "generate");
+        ReflectionUtils.setVariableValueInObject(mdPageGeneratorMojo, "timingReportFile", csvReport);
+        mdPageGeneratorMojo.execute();
+
+        String[] csv = FileUtils.readFileToString(csvReport, "UTF-8").split("\r?\n");
+        assertEquals(3, csv.length);
+        assertEquals("file,generated,readMillis,parseMillis,renderMillis,writeMillis,bytesRead,bytesWritten", csv[0]);
+        assertTrue(csv[1], csv[1].startsWith("index.md,true,"));
+        assertTrue(csv[2], csv[2].startsWith("sub/page.md,true,"));
+    }
+
+    @Test
+    public void testLinkValidation() throws Exception {
+        final File targetDirectory = new File(getBasedir(), "/target/test-harness/link-validation-project/target");
+        final File inputDirectory = new File(targetDirectory, "markdown");
+        FileUtils.deleteDirectory(targetDirectory);
+        FileUtils.writeStringToFile(new File(inputDirectory, "index.md"), "# Index\n\n"
+                + "[Intro](#index) [Section](sub/page.md#a-section) [Query](sub/page.md?lang=fi)\n"
+                + "[Missing anchor][ref] [Missing page](missing.md) [External](https://example.com/missing.md)\n\n"
+                + "[ref]: sub/page.md#no-such-section\n", "UTF-8");
+        FileUtils.writeStringToFile(new File(inputDirectory, "sub/page.md"), "# Page\n\n## A section\n\n"
+                + "[Back](../index.md#index) [Up](/index.html) [Self](#page)\n", "UTF-8");
+        File pom = getTestFile("src/test/resources/link-validation-project/pom.xml");
+
+        for (String build : new String[]{"rendered", "up to date"}) {
+            MdPageGeneratorMojo mdPageGeneratorMojo = (MdPageGeneratorMojo) lookupConfiguredMojo(pom, "generate");
+            final List<String> errors = new ArrayList<>();
+            mdPageGeneratorMojo.setLog(new SystemStreamLog() {
+                @Override
+                public void error(CharSequence content) {
+                    errors.add(content.toString());
+                }
+            });
+            try {
+                mdPageGeneratorMojo.execute();
+                fail(build);
+            } catch (MojoExecutionException e) {
+                assertEquals(build, "Found 2 broken link(s)", e.getMessage());
+            }
+            assertEquals(build, Arrays.asList(
+                    "index.html: broken link missing.md, no page missing.html",
+                    "index.html: broken link sub/page.md#no-such-section, no anchor #no-such-section in sub/page.html"),
+                    errors);
+        }
+        // the anchors that were validated are the ones in the pages
+        String page = FileUtils.readFileToString(new File(targetDirectory, "html/sub/page.html"), "UTF-8");
+        assertTrue(page, page.contains("<h2 id=\"a-section\">A section</h2>"));
+
+        FileUtils.writeStringToFile(new File(inputDirectory, "index.md"), "# Index\n\n[Section](sub/page.md#a-section)\n", "UTF-8");
+        ((MdPageGeneratorMojo) lookupConfiguredMojo(pom, "generate")).execute();
+    }
+
+    @Test
+    public void testSearchIndex() throws Exception {
+        final File targetDirectory = new File(getBasedir(), "/target/test-harness/search-index-project/target");
+        final File inputDirectory = new File(targetDirectory, "markdown");
+        final File index = new File(targetDirectory, "html/search/index.json");
+        FileUtils.deleteDirectory(targetDirectory);
+        FileUtils.writeStringToFile(new File(inputDirectory, "index.md"), "# Index\n\nWelcome\n", "UTF-8");
+        FileUtils.writeStringToFile(new File(inputDirectory, "sub/page.md"), "# Page\n\nWelcome again\n", "UTF-8");
+        File pom = getTestFile("src/test/resources/search-index-project/pom.xml");
+
+        ((MdPageGeneratorMojo) lookupConfiguredMojo(pom, "generate")).execute();
+        String json = FileUtils.readFileToString(index, "UTF-8");
+        assertTrue(json, json.contains("\"pages\":[{\"url\":\"index.html\",\"title\":\"Index\"},{\"url\":\"sub/page.html\",\"title\":\"Page\"}]"));
+        // the anchors of the sections are the ids of the headings in the pages
+        assertTrue(json, json.contains("{\"page\":0,\"anchor\":\"index\",\"title\":\"Index\"}"));
+        assertTrue(FileUtils.readFileToString(new File(targetDirectory, "html/index.html"), "UTF-8").contains("<h1 id=\"index\">Index</h1>"));
+        assertEquals("{\"welcome\":[1,1,3,1]}", FileUtils.readFileToString(new File(targetDirectory, "html/search/we.json"), "UTF-8"));
+
+        // pages that are up to date are still indexed
+        assertTrue(index.delete());
+        File page = new File(targetDirectory, "html/index.html");
+        assertTrue(page.setLastModified(0));
+        ((MdPageGeneratorMojo) lookupConfiguredMojo(pom, "generate")).execute();
+        assertEquals(0, page.lastModified());
+        assertEquals(json, FileUtils.readFileToString(index, "UTF-8"));
+    }
+
+    public void testNavigation() throws Exception {
+        final File targetDirectory = new File(getBasedir(), "/target/test-harness/navigation-project/target");
+        final File inputDirectory = new File(targetDirectory, "markdown");
+        final File navigation = new File(targetDirectory, "html/navigation.json");
+        final File sitemap = new File(targetDirectory, "html/sitemap.xml");
+        FileUtils.deleteDirectory(targetDirectory);
+        FileUtils.writeStringToFile(new File(targetDirectory, "templates/header.html"), "<html><body><nav>##TOC##</nav>", "UTF-8");
+        FileUtils.writeStringToFile(new File(targetDirectory, "templates/footer.html"), "</body></html>", "UTF-8");
+        FileUtils.writeStringToFile(new File(inputDirectory, "index.md"), "# Index\n\n## Install\n\n### Maven & Gradle\n\n## Usage\n", "UTF-8");
+        FileUtils.writeStringToFile(new File(inputDirectory, "sub/my page.md"), "Page\n====\n\nText\n", "UTF-8");
+        File pom = getTestFile("src/test/resources/navigation-project/pom.xml");
+
+        ((MdPageGeneratorMojo) lookupConfiguredMojo(pom, "generate")).execute();
+        String html = FileUtils.readFileToString(new File(targetDirectory, "html/index.html"), "UTF-8");
+        assertTrue(html, html.startsWith("<html><body><nav><ul class=\"toc\"><li><a href=\"#index\">Index</a><ul>"
+                + "<li><a href=\"#install\">Install</a><ul><li><a href=\"#maven-gradle\">Maven &amp; Gradle</a></li></ul></li>"
+                + "<li><a href=\"#usage\">Usage</a></li></ul></li></ul></nav>"));
+        // the table of contents and the navigation link to the ids of the headings
+        for (String id : new String[]{"index", "install", "maven-gradle", "usage"}) {
+            assertTrue(id, html.contains(" id=\"" + id + "\">"));
+        }
+        assertTrue(FileUtils.readFileToString(new File(targetDirectory, "html/sub/my page.html"), "UTF-8").contains("<h1 id=\"page\">Page</h1>"));
+        String json = FileUtils.readFileToString(navigation, "UTF-8");
+        assertEquals("{\"pages\":[{\"url\":\"index.html\",\"title\":\"Index\",\"headings\":[{\"id\":\"index\",\"title\":\"Index\","
+                + "\"headings\":[{\"id\":\"install\",\"title\":\"Install\",\"headings\":[{\"id\":\"maven-gradle\",\"title\":\"Maven & Gradle\"}]},"
+                + "{\"id\":\"usage\",\"title\":\"Usage\"}]}]}],"
+                + "\"directories\":[{\"name\":\"sub\",\"pages\":[{\"url\":\"sub/my page.html\",\"title\":\"Page\","
+                + "\"headings\":[{\"id\":\"page\",\"title\":\"Page\"}]}],\"directories\":[]}]}", json);
+        String xml = FileUtils.readFileToString(sitemap, "UTF-8");
+        assertTrue(xml, xml.contains("<url><loc>https://example.com/docs/index.html</loc></url>\n"
+                + "  <url><loc>https://example.com/docs/sub/my%20page.html</loc></url>\n"));
+
+        // pages that are up to date are taken from the manifest without parsing them again
+        assertTrue(navigation.delete());
+        assertTrue(sitemap.delete());
+        File page = new File(targetDirectory, "html/index.html");
+        assertTrue(page.setLastModified(0));
+        ((MdPageGeneratorMojo) lookupConfiguredMojo(pom, "generate")).execute();
+        assertEquals(0, page.lastModified());
+        assertEquals(json, FileUtils.readFileToString(navigation, "UTF-8"));
+        assertEquals(xml, FileUtils.readFileToString(sitemap, "UTF-8"));
+    }
+
+    public void testOutputFormats() throws Exception {
+        final File targetDirectory = new File(getBasedir(), "/target/test-harness/output-formats-project/target");
+        final File inputDirectory = new File(targetDirectory, "markdown");
+        final File htmlDirectory = new File(targetDirectory, "html");
+        FileUtils.deleteDirectory(targetDirectory);
+        FileUtils.writeStringToFile(new File(targetDirectory, "templates/header.html"), "<html><body>", "UTF-8");
+        FileUtils.writeStringToFile(new File(targetDirectory, "templates/footer.html"), "</body></html>", "UTF-8");
+        FileUtils.writeStringToFile(new File(inputDirectory, "index.md"), "# Index\n\nWelcome\n", "UTF-8");
+        FileUtils.writeStringToFile(new File(inputDirectory, "sub/page.md"), "# Page\n", "UTF-8");
+        File pom = getTestFile("src/test/resources/output-formats-project/pom.xml");
+
+        ((MdPageGeneratorMojo) lookupConfiguredMojo(pom, "generate")).execute();
+        assertEquals("<html><body><h1>Index</h1>\n<p>Welcome</p>\n</body></html>",
+                FileUtils.readFileToString(new File(htmlDirectory, "index.html"), "UTF-8"));
+        assertEquals("<h1>Index</h1>\n<p>Welcome</p>\n",
+                FileUtils.readFileToString(new File(htmlDirectory, "index.fragment.html"), "UTF-8"));
+        assertEquals("Index\n\nWelcome\n", FileUtils.readFileToString(new File(htmlDirectory, "index.txt"), "UTF-8"));
+        String json = FileUtils.readFileToString(new File(htmlDirectory, "index.json"), "UTF-8");
+        assertTrue(json, json.startsWith("{\"title\":\"Index\",\"ast\":{\"type\":\"Document\",\"children\":[{\"type\":\"Heading\""));
+        assertTrue(new File(htmlDirectory, "sub/page.fragment.html").isFile());
+
+        // a missing format is generated again, and every format of a removed source is removed
+        File page = new File(htmlDirectory, "index.html");
+        assertTrue(page.setLastModified(0));
+        assertTrue(new File(htmlDirectory, "index.txt").delete());
+        assertTrue(new File(inputDirectory, "sub/page.md").delete());
+        ((MdPageGeneratorMojo) lookupConfiguredMojo(pom, "generate")).execute();
+        assertTrue(page.lastModified() > 0);
+        assertTrue(new File(htmlDirectory, "index.txt").isFile());
+        for (String removed : new String[]{"page.html", "page.fragment.html", "page.txt", "page.json"}) {
+            assertFalse(removed, new File(htmlDirectory, "sub/" + removed).exists());
+        }
+
+        // the files generated in formats that are no longer configured are removed, also for removed sources
+        FileUtils.writeStringToFile(new File(inputDirectory, "other.md"), "# Other\n", "UTF-8");
+        ((MdPageGeneratorMojo) lookupConfiguredMojo(pom, "generate")).execute();
+        assertTrue(new File(htmlDirectory, "other.json").isFile());
+        assertTrue(new File(inputDirectory, "other.md").delete());
+        MdPageGeneratorMojo pageOnly = (MdPageGeneratorMojo) lookupConfiguredMojo(pom, "generate");
+        ReflectionUtils.setVariableValueInObject(pageOnly, "outputFormats", "page");
+        pageOnly.execute();
+        assertTrue(new File(htmlDirectory, "index.html").isFile());
+        for (String removed : new String[]{"index.fragment.html", "index.txt", "index.json",
+                "other.html", "other.fragment.html", "other.txt", "other.json"}) {
+            assertFalse(removed, new File(htmlDirectory, removed).exists());
+        }
+    }
+
+    public void testPrecompress() throws Exception {
+        final File targetDirectory = new File(getBasedir(), "/target/test-harness/precompress-project/target");
+        final File inputDirectory = new File(targetDirectory, "markdown");
+        final File htmlDirectory = new File(targetDirectory, "html");
+        FileUtils.deleteDirectory(targetDirectory);
+        FileUtils.writeStringToFile(new File(inputDirectory, "index.md"), "# Index\n", "UTF-8");
+        FileUtils.writeStringToFile(new File(inputDirectory, "sub/page.md"), "# Page\n", "UTF-8");
+        FileUtils.writeStringToFile(new File(inputDirectory, "css/style.css"), "body { color: red; }", "UTF-8");
+        FileUtils.writeByteArrayToFile(new File(inputDirectory, "images/logo.png"), new byte[]{(byte) 0x89, 'P', 'N', 'G'});
+        File pom = getTestFile("src/test/resources/precompress-project/pom.xml");
+
+        ((MdPageGeneratorMojo) lookupConfiguredMojo(pom, "generate")).execute();
+        assertEquals("<h1>Index</h1>\n", gunzip(new File(htmlDirectory, "index.html.gz")));
+        assertEquals("<h1>Page</h1>\n", gunzip(new File(htmlDirectory, "sub/page.html.gz")));
+        File style = new File(htmlDirectory, "css/style.css.gz");
+        assertEquals("body { color: red; }", gunzip(style));
+        assertFalse(new File(htmlDirectory, "images/logo.png.gz").exists());
+
+        // unchanged files are not compressed again, the sidecars of a removed page are removed
+        long lastModified = style.lastModified();
+        FileUtils.writeStringToFile(style, "unchanged", "UTF-8");
+        assertTrue(style.setLastModified(lastModified));
+        assertTrue(new File(inputDirectory, "sub/page.md").delete());
+        ((MdPageGeneratorMojo) lookupConfiguredMojo(pom, "generate")).execute();
+        assertEquals("unchanged", FileUtils.readFileToString(style, "UTF-8"));
+        assertFalse(new File(htmlDirectory, "sub/page.html.gz").exists());
+        assertTrue(new File(htmlDirectory, "index.html.gz").isFile());
+
+        // the sidecars are removed once they are no longer written, also of the pages and files that are up to date
+        MdPageGeneratorMojo uncompressed = (MdPageGeneratorMojo) lookupConfiguredMojo(pom, "generate");
+        ReflectionUtils.setVariableValueInObject(uncompressed, "precompress", "");
+        uncompressed.execute();
+        assertTrue(new File(htmlDirectory, "index.html").isFile());
+        assertTrue(new File(htmlDirectory, "css/style.css").isFile());
+        assertFalse(new File(htmlDirectory, "index.html.gz").exists());
+        assertFalse(style.exists());
+
+        // and written again for the pages and files that are up to date once they are turned back on
+        ((MdPageGeneratorMojo) lookupConfiguredMojo(pom, "generate")).execute();
+        assertEquals("<h1>Index</h1>\n", gunzip(new File(htmlDirectory, "index.html.gz")));
+        assertEquals("body { color: red; }", gunzip(style));
+    }
+
+    private static String gunzip(File file) throws IOException {
+        try (InputStream in = new GZIPInputStream(FileUtils.openInputStream(file))) {
+            return IOUtils.toString(in, StandardCharsets.UTF_8);
+        }
+    }
+
+    @Test
+    public void testFlightRecorderEvents() throws Exception {
+        File pom = getTestFile("src/test/resources/basic-project/pom.xml");
+        assertTrue(pom.exists());
+        File recordingFile = new File(getBasedir(), "/target/test-harness/basic-project/target/generate.jfr");
+
+        try (Recording recording = new Recording()) {
+            for (String event : new String[]{"Discovery", "Parse", "Render", "Template", "Write"}) {
+                recording.enable("com.ruleoftech.markdown." + event).withThreshold(Duration.ZERO);
+            }
+            recording.start();
+            ((MdPageGeneratorMojo) lookupConfiguredMojo(pom, "generate")).execute();
+            recording.stop();
+            recording.dump(recordingFile.toPath());
+        }
+
+        Map<String, RecordedEvent> events = new HashMap<>();
+        for (RecordedEvent event : RecordingFile.readAllEvents(recordingFile.toPath())) {
+            events.put(event.getEventType().getName(), event);
+        }
+        assertEquals(events.keySet().toString(), 5, events.size());
+        RecordedEvent parse = events.get("com.ruleoftech.markdown.Parse");
+        assertTrue(parse.getString("path"), parse.getString("path").endsWith("README.md"));
+        assertEquals(new File(getBasedir(), "src/test/resources/basic-project/src/main/resources/markdown/README.md").length(),
+                parse.getLong("size"));
+        assertEquals(0, parse.getInt("folderDepth"));
+        RecordedEvent write = events.get("com.ruleoftech.markdown.Write");
+        assertTrue(write.getString("path"), write.getString("path").endsWith("README.html"));
+        assertTrue(write.getLong("size") > 0);
+    }
+
+    @Test
+    public void testWatchProject() throws Exception {
+        final File targetDirectory = new File(getBasedir(), "/target/test-harness/watch-project/target");
+        final File inputDirectory = new File(targetDirectory, "markdown");
+        final File header = new File(targetDirectory, "templates/header.html");
+        FileUtils.deleteDirectory(targetDirectory);
+        FileUtils.writeStringToFile(header, "<html><body>", "UTF-8");
+        FileUtils.writeStringToFile(new File(targetDirectory, "templates/footer.html"), "</body></html>", "UTF-8");
+        FileUtils.writeStringToFile(new File(inputDirectory, "first.md"), "# First", "UTF-8");
+        FileUtils.writeStringToFile(new File(inputDirectory, "second.md"), "# Second", "UTF-8");
+        final File firstHtml = new File(targetDirectory, "html/first.html");
+        final File secondHtml = new File(targetDirectory, "html/second.html");
+
+        File pom = getTestFile("src/test/resources/watch-project/pom.xml");
+        assertTrue(pom.exists());
+
+        final MdPageGeneratorMojo mdPageGeneratorMojo = (MdPageGeneratorMojo) lookupConfiguredMojo(pom, "watch");
+        assertTrue(mdPageGeneratorMojo instanceof MdPageWatchMojo);
+        final Exception[] failure = new Exception[1];
+        Thread watcher = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    mdPageGeneratorMojo.execute();
+                } catch (Exception e) {
+                    failure[0] = e;
+                }
+            }
+        });
+        watcher.start();
+        try {
+            waitForContent(secondHtml, "<h1>Second</h1>");
+            assertTrue(secondHtml.setLastModified(1000));
+
+            FileUtils.writeStringToFile(new File(inputDirectory, "first.md"), "# First edited", "UTF-8");
+            waitForContent(firstHtml, "<h1>First edited</h1>");
+            assertEquals(1000, secondHtml.lastModified());
+
+            FileUtils.writeStringToFile(new File(inputDirectory, "sub/third.md"), "# Third", "UTF-8");
+            // a table of contents in the header renders the headings with their ids from then on
+            FileUtils.writeStringToFile(header, "<html><body class=\"edited\"><nav>##TOC##</nav>", "UTF-8");
+            waitForContent(secondHtml, "<body class=\"edited\">");
+            assertTrue(FileUtils.readFileToString(secondHtml, "UTF-8").contains(
+                    "<nav><ul class=\"toc\"><li><a href=\"#second\">Second</a></li></ul></nav><h1 id=\"second\">Second</h1>"));
+
+            FileUtils.forceDelete(new File(inputDirectory, "first.md"));
+            for (int i = 0; i < 100 && firstHtml.exists(); i++) {
+                Thread.sleep(100);
+            }
+            assertFalse(firstHtml.exists());
+            assertFalse("recursiveInput is not set", new File(targetDirectory, "html/sub/third.html").exists());
+        } finally {
+            watcher.interrupt();
+            watcher.join(10000);
+        }
+        assertFalse(watcher.isAlive());
+        assertNull(failure[0]);
+    }
+
+    @Test
+    public void testWatchFailuresAndDeletedDirectories() throws Exception {
+        final File targetDirectory = new File(getBasedir(), "/target/test-harness/watch-project/target");
+        final File inputDirectory = new File(targetDirectory, "markdown");
+        FileUtils.deleteDirectory(targetDirectory);
+        FileUtils.writeStringToFile(new File(targetDirectory, "templates/header.html"), "<html><body>", "UTF-8");
+        FileUtils.writeStringToFile(new File(targetDirectory, "templates/footer.html"), "</body></html>", "UTF-8");
+        FileUtils.writeStringToFile(new File(inputDirectory, "first.md"), "# First", "UTF-8");
+        FileUtils.writeStringToFile(new File(inputDirectory, "sub/page.md"), "# Page", "UTF-8");
+        FileUtils.writeStringToFile(new File(inputDirectory, "sub/deeper/other.md"), "# Other", "UTF-8");
+        final File firstHtml = new File(targetDirectory, "html/first.html");
+        final File subDirectory = new File(targetDirectory, "html/sub");
+
+        File pom = getTestFile("src/test/resources/watch-project/pom.xml");
+        final MdPageGeneratorMojo mdPageGeneratorMojo = (MdPageGeneratorMojo) lookupConfiguredMojo(pom, "watch");
+        ReflectionUtils.setVariableValueInObject(mdPageGeneratorMojo, "recursiveInput", true);
+        // only a page nesting block quotes fails
+        ReflectionUtils.setVariableValueInObject(mdPageGeneratorMojo, "maxNestingDepth", 2);
+        final List<String> errors = new ArrayList<>();
+        mdPageGeneratorMojo.setLog(new SystemStreamLog() {
+            @Override
+            public void error(CharSequence content, Throwable error) {
+                synchronized (errors) {
+                    errors.add(content.toString());
+                }
+            }
+        });
+        final Exception[] failure = new Exception[1];
+        Thread watcher = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    mdPageGeneratorMojo.execute();
+                } catch (Exception e) {
+                    failure[0] = e;
+                }
+            }
+        });
+        watcher.start();
+        try {
+            waitForContent(new File(subDirectory, "deeper/other.html"), "<h1>Other</h1>");
+
+            FileUtils.writeStringToFile(new File(inputDirectory, "quote.md"), "> > > Quote", "UTF-8");
+            for (int i = 0; i < 100 && errors.isEmpty(); i++) {
+                Thread.sleep(100);
+            }
+            synchronized (errors) {
+                assertTrue(errors.toString(), errors.get(0).endsWith("quote.md nests 3 levels deep, the maximum is 2"));
+            }
+            FileUtils.writeStringToFile(new File(inputDirectory, "first.md"), "# First edited", "UTF-8");
+            waitForContent(firstHtml, "<h1>First edited</h1>");
+
+            FileUtils.deleteDirectory(new File(inputDirectory, "sub"));
+            for (int i = 0; i < 100 && subDirectory.exists(); i++) {
+                Thread.sleep(100);
+            }
+            assertFalse(subDirectory.exists());
+            assertTrue(firstHtml.exists());
+        } finally {
+            watcher.interrupt();
+            watcher.join(10000);
+        }
+        assertFalse(watcher.isAlive());
+        assertNull(failure[0]);
+    }
+
+    @Test
+    public void testServeProject() throws Exception {
+        final File targetDirectory = new File(getBasedir(), "/target/test-harness/serve-project/target");
+        final File inputDirectory = new File(targetDirectory, "markdown");
+        FileUtils.deleteDirectory(targetDirectory);
+        FileUtils.writeStringToFile(new File(inputDirectory, "index.md"), "# Index", "UTF-8");
+        FileUtils.writeStringToFile(new File(inputDirectory, "sub/page.md"), "# Page", "UTF-8");
+
+        File pom = getTestFile("src/test/resources/serve-project/pom.xml");
+        assertTrue(pom.exists());
+
+        final MdPageServeMojo mdPageServeMojo = (MdPageServeMojo) lookupConfiguredMojo(pom, "serve");
+        final Exception[] failure = new Exception[1];
+        Thread server = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    mdPageServeMojo.execute();
+                } catch (Exception e) {
+                    failure[0] = e;
+                }
+            }
+        });
+        server.start();
+        try {
+            for (int i = 0; i < 100 && mdPageServeMojo.getAddress() == null; i++) {
+                Thread.sleep(100);
+            }
+            assertNotNull("Server did not start", mdPageServeMojo.getAddress());
+            String base = "http://localhost:" + mdPageServeMojo.getAddress().getPort();
+
+            assertTrue(get(base + "/").contains("<h1>Index</h1>"));
+            assertTrue(get(base + "/sub/page.html").contains("<h1>Page</h1>"));
+            assertNull(get(base + "/images/logo.txt"));
+
+            // the copy directories are resolved again once the watcher reports the new directory
+            FileUtils.writeStringToFile(new File(inputDirectory, "images/logo.txt"), "logo", "UTF-8");
+            String logo = null;
+            for (int i = 0; i < 100 && (logo = get(base + "/images/logo.txt")) == null; i++) {
+                Thread.sleep(100);
+            }
+            assertEquals("logo", logo);
+            assertNull(get(base + "/missing.html"));
+            assertNull(get(base + "/sub/page.md"));
+            assertNull(get(base + "/../../pom.xml"));
+            assertNull(get(base + "/%2e%2e/%2e%2e/pom.xml"));
+
+            FileUtils.writeStringToFile(new File(inputDirectory, "index.md"), "# Index edited", "UTF-8");
+            String index = null;
+            for (int i = 0; i < 100 && !(index = get(base + "/index.html")).contains("Index edited"); i++) {
+                Thread.sleep(100);
+            }
+            assertTrue(index, index.contains("<h1>Index edited</h1>"));
+            assertFalse(new File(targetDirectory, "html").exists());
+        } finally {
+            server.interrupt();
+            server.join(10000);
+        }
+        assertFalse(server.isAlive());
+        assertNull(failure[0]);
+    }
+
+    /**
+     * @return the response body or <code>null</code> if the server responds 404
+     */
+    private static String get(String url) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        try {
+            if (connection.getResponseCode() == HttpURLConnection.HTTP_NOT_FOUND) {
+                return null;
+            }
+            assertEquals(url, HttpURLConnection.HTTP_OK, connection.getResponseCode());
+            try (InputStream in = connection.getInputStream()) {
+                return IOUtils.toString(in, "UTF-8");
+            }
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private static void waitForContent(File file, String content) throws Exception {
+        for (int i = 0; i < 100; i++) {
+            if (file.exists() && FileUtils.readFileToString(file, "UTF-8").contains(content)) {
+                return;
+            }
+            Thread.sleep(100);
+        }
+        fail(file + " does not contain " + content);
+    }
 
     @Test
     public void testSubstituteProject() throws Exception {
@@ -332,6 +979,36 @@ public class MdPageGeneratorMojoTest extends BetterAbstractMojoTestCase {
         assertTrue("Should contain the original var 'cacheManager'", html.contains("${cacheManager}"));
     }
 
+    @Test
+    public void testSubstituteInMemoryProject() throws Exception {
+        final String expectedGeneratedHTMLFile = "/target/test-harness/substitute-in-memory-project/target/html/README.html";
+
+        File pom = getTestFile("src/test/resources/substitute-in-memory-project/pom.xml");
+        assertTrue(pom.exists());
+
+        MdPageGeneratorMojo mdPageGeneratorMojo = (MdPageGeneratorMojo) lookupConfiguredMojo(pom, "generate");
+        assertNotNull(mdPageGeneratorMojo);
+
+        mdPageGeneratorMojo.execute();
+
+        File generatedMarkdown = new File(getBasedir(), expectedGeneratedHTMLFile);
+        assertTrue("Expected HTML file does not exist: " + generatedMarkdown, generatedMarkdown.exists());
+
+        String html = FileUtils.readFileToString(generatedMarkdown, Charset.defaultCharset());
+
+        assertFalse("Shouldn't contain the var declaration", html.contains("headerSubstitution"));
+        assertTrue("Should contain the replaced var", html.contains("The new header"));
+        assertTrue("Should contain the replaced var", html.contains("The new footer"));
+        assertTrue("Should contain the replaced Maven variable 'substitute-in-memory-project'", html.contains("substitute-in-memory-project"));
+        assertTrue("Should contain the original var 'beanId'", html.contains("${beanId}"));
+
+        assertFalse("Shouldn't copy the input directory",
+                new File(getBasedir(), "/target/test-harness/substitute-in-memory-project/target/filtered-md").exists());
+        File image = new File(getBasedir(), "/target/test-harness/substitute-in-memory-project/target/html/images/image.txt");
+        assertEquals("Should copy the unfiltered file", "image ${project.artifactId}",
+                FileUtils.readFileToString(image, Charset.defaultCharset()));
+    }
+
     @Test
     public void testCopiedFiles() throws MojoExecutionException, IOException {
         File sourceFolder = Files.createTempDir();
@@ -487,6 +1164,69 @@ public class MdPageGeneratorMojoTest extends BetterAbstractMojoTestCase {
 
     }
 
+    @Test
+    public void testCopiedFilesAreSkippedWhenUpToDate() throws MojoExecutionException, IOException {
+        File sourceFolder = Files.createTempDir();
+        File destinationFolder = Files.createTempDir();
+        try {
+            File source = new File(sourceFolder, "images/image.png");
+            FileUtils.writeStringToFile(source, "original", "UTF-8");
+
+            MdPageGeneratorMojo mdPageGeneratorMojo = new MdPageGeneratorMojo();
+            mdPageGeneratorMojo.setInputDirectory(sourceFolder.getAbsolutePath());
+            mdPageGeneratorMojo.setOutputDirectory(destinationFolder.getAbsolutePath());
+            mdPageGeneratorMojo.setCopyDirectories("images");
+            mdPageGeneratorMojo.execute();
+
+            File copy = new File(destinationFolder, "images/image.png");
+            assertEquals("original", FileUtils.readFileToString(copy, "UTF-8"));
+
+            // same size and modification time, so the copy is considered up to date
+            FileUtils.writeStringToFile(copy, "modified", "UTF-8");
+            assertTrue(copy.setLastModified(source.lastModified()));
+            mdPageGeneratorMojo.execute();
+            assertEquals("modified", FileUtils.readFileToString(copy, "UTF-8"));
+
+            assertTrue(source.setLastModified(source.lastModified() - 60000));
+            mdPageGeneratorMojo.execute();
+            assertEquals("original", FileUtils.readFileToString(copy, "UTF-8"));
+        } finally {
+            FileUtils.deleteDirectory(destinationFolder);
+            FileUtils.deleteDirectory(sourceFolder);
+        }
+    }
+
+    @Test
+    public void testCopiedFilesAsLinks() throws MojoExecutionException, IOException {
+        File sourceFolder = Files.createTempDir();
+        File destinationFolder = Files.createTempDir();
+        try {
+            File source = new File(sourceFolder, "images/image.png");
+            FileUtils.writeStringToFile(source, "original", "UTF-8");
+
+            MdPageGeneratorMojo mdPageGeneratorMojo = new MdPageGeneratorMojo();
+            mdPageGeneratorMojo.setInputDirectory(sourceFolder.getAbsolutePath());
+            mdPageGeneratorMojo.setOutputDirectory(destinationFolder.getAbsolutePath());
+            mdPageGeneratorMojo.setCopyDirectories("images");
+
+            File target = new File(destinationFolder, "images/image.png");
+            for (String copyMode : new String[]{"symlink", "hardlink", "copy"}) {
+                mdPageGeneratorMojo.setCopyMode(copyMode);
+                mdPageGeneratorMojo.execute();
+
+                assertTrue(copyMode, target.exists());
+                assertEquals(copyMode, "original", FileUtils.readFileToString(target, "UTF-8"));
+            }
+
+            // switching back to copies must not write through the previous links into the source
+            FileUtils.writeStringToFile(target, "modified", "UTF-8");
+            assertEquals("original", FileUtils.readFileToString(source, "UTF-8"));
+        } finally {
+            FileUtils.deleteDirectory(destinationFolder);
+            FileUtils.deleteDirectory(sourceFolder);
+        }
+    }
+
     @Test
     public void testFilenameProject() throws Exception {
         final String expectedGeneratedHTMLFile = "/target/test-harness/filename-project/target/html/stammdaten.html";
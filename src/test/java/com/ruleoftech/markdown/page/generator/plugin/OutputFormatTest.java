@@ -0,0 +1,91 @@
+package com.ruleoftech.markdown.page.generator.plugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Arrays;
+
+import com.vladsch.flexmark.ast.BlockQuote;
+import com.vladsch.flexmark.ast.Paragraph;
+import com.vladsch.flexmark.ast.Text;
+import com.vladsch.flexmark.parser.Parser;
+import com.vladsch.flexmark.util.ast.Document;
+import com.vladsch.flexmark.util.ast.Node;
+import com.vladsch.flexmark.util.sequence.BasedSequence;
+
+/**
+ * Unit test for {@link OutputFormat}
+ */
+public class OutputFormatTest extends BetterAbstractMojoTestCase {
+
+    public void testParseList() {
+        assertEquals(Arrays.asList(OutputFormat.FRAGMENT, OutputFormat.PAGE, OutputFormat.JSON),
+                OutputFormat.parseList(" fragment, PAGE ,json,fragment"));
+        try {
+            OutputFormat.parseList("page,pdf");
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertEquals("No such output format: pdf, expected page, fragment, text or json", e.getMessage());
+        }
+    }
+
+    public void testGetFile() {
+        File htmlFile = new File("html/sub/page.htm");
+
+        assertEquals(htmlFile, OutputFormat.PAGE.getFile(htmlFile));
+        assertEquals(new File("html/sub/page.fragment.htm"), OutputFormat.FRAGMENT.getFile(htmlFile));
+        assertEquals(new File("html/sub/page.txt"), OutputFormat.TEXT.getFile(htmlFile));
+        assertEquals(new File("html/sub/page.json"), OutputFormat.JSON.getFile(htmlFile));
+    }
+
+    public void testWriteText() throws IOException {
+        Document document = Parser.builder().build().parse("# Title *x*\n\nLine one\nline [two](two.md).\n\n"
+                + "- item 1\n- item 2\n\n<div>html</div>\n\n```java\nint i;\n```\n\n> quote\n\n[ref]: https://example.com\n");
+        StringWriter out = new StringWriter();
+
+        OutputFormat.writeText(document, out);
+
+        assertEquals("Title x\n\nLine one\nline two.\n\nitem 1\n\nitem 2\n\nint i;\n\nquote\n", out.toString());
+    }
+
+    public void testWriteJson() throws IOException {
+        Document document = Parser.builder().build().parse("## A [link](x.md)\n");
+        StringWriter out = new StringWriter();
+
+        OutputFormat.writeJson(" Page", document, new JsonWriter(out));
+
+        assertEquals("{\"title\":\"Page\",\"ast\":{\"type\":\"Document\",\"children\":["
+                + "{\"type\":\"Heading\",\"level\":2,\"children\":[{\"type\":\"Text\",\"text\":\"A \"},"
+                + "{\"type\":\"Link\",\"url\":\"x.md\",\"children\":[{\"type\":\"Text\",\"text\":\"link\"}]}]}]}}", out.toString());
+    }
+
+    public void testDeepNesting() throws IOException {
+        Document document = new Document(null, BasedSequence.NULL);
+        Node parent = document;
+        for (int i = 0; i < 100000; i++) {
+            Node quote = new BlockQuote();
+            parent.appendChild(quote);
+            parent = quote;
+        }
+        Paragraph paragraph = new Paragraph();
+        paragraph.appendChild(new Text(BasedSequence.of("deep")));
+        parent.appendChild(paragraph);
+        StringWriter text = new StringWriter();
+        StringWriter json = new StringWriter();
+
+        OutputFormat.writeText(document, text);
+        OutputFormat.writeJson(null, document, new JsonWriter(json));
+
+        StringBuilder expected = new StringBuilder("{\"ast\":{\"type\":\"Document\",\"children\":[");
+        for (int i = 0; i < 100000; i++) {
+            expected.append("{\"type\":\"BlockQuote\",\"children\":[");
+        }
+        expected.append("{\"type\":\"Paragraph\",\"children\":[{\"type\":\"Text\",\"text\":\"deep\"}]}");
+        for (int i = 0; i < 100000; i++) {
+            expected.append("]}");
+        }
+        expected.append("]}}");
+        assertEquals("deep\n", text.toString());
+        assertEquals(expected.toString(), json.toString());
+    }
+}
@@ -0,0 +1,17 @@
+package com.ruleoftech.markdown.page.generator.plugin;
+
+import java.io.File;
+
+/**
+ * Unit test for {@link PageUrl}
+ */
+public class PageUrlTest extends BetterAbstractMojoTestCase {
+
+    public void testOf() {
+        File outputDirectory = new File(getBasedir(), "target/html").getAbsoluteFile();
+
+        assertEquals("index.html", PageUrl.of(outputDirectory, new File(outputDirectory, "index.html")));
+        assertEquals("sub/my page.html", PageUrl.of(outputDirectory, new File(outputDirectory, "a/../sub/my page.html")));
+        assertEquals("other.html", PageUrl.of(outputDirectory, new File(getBasedir(), "target/other/other.html")));
+    }
+}
@@ -0,0 +1,68 @@
+package com.ruleoftech.markdown.page.generator.plugin;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Unit test for {@link ParallelChunks}
+ */
+public class ParallelChunksTest extends BetterAbstractMojoTestCase {
+
+    public void testForEach() throws Exception {
+        List<Integer> items = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            items.add(i);
+        }
+        final Set<Integer> done = Collections.newSetFromMap(new ConcurrentHashMap<Integer, Boolean>());
+        final Set<String> threads = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+        ParallelChunks.forEach(items, 3, "test-", RuntimeException.class, new ParallelChunks.Task<Integer, RuntimeException>() {
+            @Override
+            public void run(Integer item) {
+                done.add(item);
+                threads.add(Thread.currentThread().getName().replaceAll("\\d+$", ""));
+            }
+        });
+
+        assertEquals(10, done.size());
+        assertEquals(Collections.singleton("test-"), threads);
+        ParallelChunks.forEach(Collections.<Integer>emptyList(), 0, "test-", RuntimeException.class,
+                new ParallelChunks.Task<Integer, RuntimeException>() {
+                    @Override
+                    public void run(Integer item) {
+                        fail();
+                    }
+                });
+    }
+
+    public void testFailure() throws Exception {
+        try {
+            ParallelChunks.forEach(Collections.nCopies(4, "file"), 2, "test-", IOException.class,
+                    new ParallelChunks.Task<String, IOException>() {
+                        @Override
+                        public void run(String item) throws IOException {
+                            throw new IOException("Unable to read " + item);
+                        }
+                    });
+            fail();
+        } catch (IOException e) {
+            assertEquals("Unable to read file", e.getMessage());
+        }
+        try {
+            ParallelChunks.forEach(Collections.singletonList("page"), 2, "test-", IOException.class,
+                    new ParallelChunks.Task<String, IOException>() {
+                        @Override
+                        public void run(String item) {
+                            throw new IllegalStateException(item);
+                        }
+                    });
+            fail();
+        } catch (IllegalStateException e) {
+            assertEquals("page", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.ruleoftech.markdown.page.generator.plugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+
+/**
+ * Unit test for {@link Precompressor}
+ */
+public class PrecompressorTest extends BetterAbstractMojoTestCase {
+
+    private final File directory = new File(getBasedir(), "/target/test-harness/precompressor");
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        FileUtils.deleteDirectory(directory);
+    }
+
+    public void testParseList() {
+        assertEquals(Collections.singletonList(Precompressor.Codec.GZIP), Precompressor.Codec.parseList(" gzip, GZIP"));
+        assertTrue(Precompressor.Codec.parseList(" ").isEmpty());
+        assertTrue(Precompressor.Codec.parseList(null).isEmpty());
+        try {
+            Precompressor.Codec.parseList("gzip,brotli");
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertEquals("No such precompression codec: brotli, expected gzip", e.getMessage());
+        }
+    }
+
+    public void testIsCompressible() {
+        assertTrue(Precompressor.isCompressible(new File("css/style.CSS")));
+        assertTrue(Precompressor.isCompressible(new File("index.html")));
+        assertFalse(Precompressor.isCompressible(new File("images/logo.png")));
+        assertFalse(Precompressor.isCompressible(new File("index.html.gz")));
+    }
+
+    public void testOpen() throws IOException {
+        File file = new File(directory, "sub/index.html");
+        Precompressor precompressor = new Precompressor(Collections.singletonList(Precompressor.Codec.GZIP));
+
+        try (OutputStream out = precompressor.open(file)) {
+            out.write("<h1>".getBytes(StandardCharsets.UTF_8));
+            out.write('A');
+            out.write("</h1>".getBytes(StandardCharsets.UTF_8));
+        }
+
+        File sidecar = new File(directory, "sub/index.html.gz");
+        assertEquals("<h1>A</h1>", FileUtils.readFileToString(file, "UTF-8"));
+        assertEquals("<h1>A</h1>", gunzip(sidecar));
+        assertEquals(file.lastModified(), sidecar.lastModified());
+
+        precompressor.delete(file);
+        assertFalse(sidecar.exists());
+        assertTrue(file.exists());
+    }
+
+    public void testCompress() throws Exception {
+        File style = new File(directory, "style.css");
+        File script = new File(directory, "script.js");
+        FileUtils.writeStringToFile(style, "body { color: red; }", "UTF-8");
+        FileUtils.writeStringToFile(script, "var a = 1;", "UTF-8");
+        Precompressor precompressor = new Precompressor(Collections.singletonList(Precompressor.Codec.GZIP));
+
+        assertEquals(2, precompressor.compress(Arrays.asList(style, script), 2));
+        assertEquals("body { color: red; }", gunzip(new File(directory, "style.css.gz")));
+        assertEquals(script.lastModified(), new File(directory, "script.js.gz").lastModified());
+
+        // only the changed file is compressed again
+        FileUtils.writeStringToFile(style, "body { color: blue; }", "UTF-8");
+        assertTrue(style.setLastModified(style.lastModified() + 2000));
+        assertEquals(1, precompressor.compress(Arrays.asList(style, script), 2));
+        assertEquals("body { color: blue; }", gunzip(new File(directory, "style.css.gz")));
+        assertEquals(0, precompressor.compress(Arrays.asList(style, script), 1));
+    }
+
+    private static String gunzip(File file) throws IOException {
+        try (InputStream in = new GZIPInputStream(FileUtils.openInputStream(file))) {
+            return IOUtils.toString(in, StandardCharsets.UTF_8);
+        }
+    }
+}
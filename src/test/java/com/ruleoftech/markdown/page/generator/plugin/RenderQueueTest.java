@@ -0,0 +1,96 @@
+package com.ruleoftech.markdown.page.generator.plugin;
+
+import java.io.File;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.maven.plugin.MojoExecutionException;
+
+import com.ruleoftech.markdown.page.generator.plugin.MdPageGeneratorMojo.MarkdownDTO;
+
+/**
+ * Unit test for {@link RenderQueue}
+ */
+public class RenderQueueTest extends BetterAbstractMojoTestCase {
+
+    public void testBoundsFilesInFlight() throws Exception {
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicInteger maxInFlight = new AtomicInteger();
+        RenderQueue queue = new RenderQueue(new RenderQueue.Renderer() {
+            @Override
+            public boolean render(MarkdownDTO dto) throws Exception {
+                int current = inFlight.incrementAndGet();
+                maxInFlight.accumulateAndGet(current, Math::max);
+                Thread.sleep(2);
+                inFlight.decrementAndGet();
+                return !dto.markdownFile.getName().startsWith("up-to-date");
+            }
+        }, 2, 4);
+
+        for (int i = 0; i < 50; i++) {
+            assertTrue(queue.submit(page(i % 5 == 0 ? "up-to-date-" + i : "page-" + i)));
+        }
+
+        assertEquals(40, queue.finish());
+        assertEquals(50, queue.getSubmitted());
+        assertTrue("at most the window is queued or rendered: " + maxInFlight, maxInFlight.get() <= 4);
+    }
+
+    public void testReportsFirstFailureInSubmissionOrder() throws Exception {
+        final CountDownLatch secondFailed = new CountDownLatch(1);
+        RenderQueue queue = new RenderQueue(new RenderQueue.Renderer() {
+            @Override
+            public boolean render(MarkdownDTO dto) throws Exception {
+                String name = dto.markdownFile.getName();
+                if (name.equals("first")) {
+                    // fails after the file submitted after it
+                    assertTrue(secondFailed.await(10, TimeUnit.SECONDS));
+                    throw new MojoExecutionException("first failed");
+                }
+                secondFailed.countDown();
+                throw new MojoExecutionException(name + " failed");
+            }
+        }, 2, 2);
+
+        assertTrue(queue.submit(page("first")));
+        assertTrue(queue.submit(page("second")));
+        secondFailed.await(10, TimeUnit.SECONDS);
+        // the failure of the second file is recorded once its worker is done
+        while (queue.submit(page("third"))) {
+            Thread.sleep(1);
+        }
+
+        try {
+            queue.finish();
+            fail();
+        } catch (MojoExecutionException e) {
+            assertEquals("first failed", e.getMessage());
+        }
+    }
+
+    public void testSerialQueueStopsAtFailure() throws Exception {
+        RenderQueue queue = new RenderQueue(new RenderQueue.Renderer() {
+            @Override
+            public boolean render(MarkdownDTO dto) throws Exception {
+                throw new IllegalStateException(dto.markdownFile.getName());
+            }
+        }, 1, 1);
+
+        assertFalse(queue.submit(page("first")));
+        assertFalse(queue.submit(page("second")));
+        assertEquals(1, queue.getSubmitted());
+        try {
+            queue.finish();
+            fail();
+        } catch (IllegalStateException e) {
+            assertEquals("first", e.getMessage());
+        }
+    }
+
+    private static MarkdownDTO page(String name) {
+        MarkdownDTO dto = new MarkdownDTO();
+        dto.markdownFile = new File(name);
+        return dto;
+    }
+}
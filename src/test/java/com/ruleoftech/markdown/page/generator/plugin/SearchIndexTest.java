@@ -0,0 +1,64 @@
+package com.ruleoftech.markdown.page.generator.plugin;
+
+import java.io.File;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.commons.io.FileUtils;
+
+import com.vladsch.flexmark.html.renderer.HeaderIdGenerator;
+import com.vladsch.flexmark.parser.Parser;
+import com.vladsch.flexmark.util.ast.Document;
+
+/**
+ * Unit test for {@link SearchIndex}
+ */
+public class SearchIndexTest extends BetterAbstractMojoTestCase {
+
+    public void testTokenize() {
+        Map<String, Integer> counts = new TreeMap<>();
+
+        SearchIndex.tokenize("Markdown, a page (generator) for MARKDOWN: v2 p\u00e4iv\u00e4", counts);
+
+        assertEquals("{for=1, generator=1, markdown=2, page=1, p\u00e4iv\u00e4=1, v2=1}", counts.toString());
+    }
+
+    public void testShardFileName() {
+        assertEquals("ma.json", SearchIndex.getShardFileName("ma"));
+        assertEquals("p_e4.json", SearchIndex.getShardFileName("p\u00e4"));
+        assertEquals("_5f_5f.json", SearchIndex.getShardFileName("__"));
+    }
+
+    public void testWrite() throws Exception {
+        File outputDirectory = new File(getBasedir(), "/target/test-harness/search-index/html");
+        File directory = new File(outputDirectory, "search");
+        FileUtils.deleteDirectory(directory);
+        FileUtils.writeStringToFile(new File(directory, "stale.json"), "{}", "UTF-8");
+        Parser parser = Parser.builder().build();
+
+        SearchIndex index = new SearchIndex(outputDirectory);
+        Document page = parser.parse("Intro text\n\n## Maven plugin\n\nMaven text\n");
+        index.add(new File(outputDirectory, "sub/page.html"), "Page", page, headerIds(page));
+        // without rendered ids the sections have no anchors
+        index.add(new File(outputDirectory, "index.html"), "Index", parser.parse("# Index\n\nSee the *maven* page\n"), null);
+        index.write(directory);
+
+        assertEquals("{\"prefixLength\":2,"
+                + "\"pages\":[{\"url\":\"index.html\",\"title\":\"Index\"},{\"url\":\"sub/page.html\",\"title\":\"Page\"}],"
+                + "\"sections\":[{\"page\":0,\"title\":\"Index\"},{\"page\":0,\"title\":\"Index\"},"
+                + "{\"page\":1,\"title\":\"Page\"},{\"page\":1,\"anchor\":\"maven-plugin\",\"title\":\"Maven plugin\"}],"
+                + "\"shards\":{\"in\":\"in.json\",\"ma\":\"ma.json\",\"pa\":\"pa.json\",\"pl\":\"pl.json\","
+                + "\"se\":\"se.json\",\"te\":\"te.json\",\"th\":\"th.json\"}}",
+                FileUtils.readFileToString(new File(directory, "index.json"), "UTF-8"));
+        assertEquals("{\"maven\":[1,1,3,2]}", FileUtils.readFileToString(new File(directory, "ma.json"), "UTF-8"));
+        assertEquals("{\"index\":[1,1],\"intro\":[2,1]}", FileUtils.readFileToString(new File(directory, "in.json"), "UTF-8"));
+        assertEquals("{\"text\":[2,1,3,1]}", FileUtils.readFileToString(new File(directory, "te.json"), "UTF-8"));
+        assertFalse("the directory is cleaned", new File(directory, "stale.json").exists());
+    }
+
+    private static HeaderIdGenerator headerIds(Document document) {
+        HeaderIdGenerator headerIds = new HeaderIdGenerator(document);
+        headerIds.generateIds(document);
+        return headerIds;
+    }
+}
@@ -0,0 +1,71 @@
+package com.ruleoftech.markdown.page.generator.plugin;
+
+import java.io.File;
+
+import org.apache.commons.io.FileUtils;
+
+import com.vladsch.flexmark.html.renderer.HeaderIdGenerator;
+import com.vladsch.flexmark.parser.Parser;
+import com.vladsch.flexmark.util.ast.Document;
+
+/**
+ * Unit test for {@link SiteNavigation}
+ */
+public class SiteNavigationTest extends BetterAbstractMojoTestCase {
+
+    public void testTableOfContents() {
+        SiteNavigation.Page page = page(null, "## Intro\n\n# 1 < 2\n\n### Deep\n\n## Section\n");
+
+        assertEquals("Intro", page.title);
+        assertEquals("<ul class=\"toc\"><li><a href=\"#intro\">Intro</a></li>"
+                + "<li><a href=\"#1--2\">1 &lt; 2</a><ul><li><a href=\"#deep\">Deep</a></li>"
+                + "<li><a href=\"#section\">Section</a></li></ul></li></ul>", page.getTableOfContents());
+        assertEquals("", page("Empty", "Text\n").getTableOfContents());
+        // headings without rendered ids can't be linked to
+        assertEquals("", SiteNavigation.Page.of(null, Parser.builder().build().parse("# One\n"), null).getTableOfContents());
+    }
+
+    public void testEncode() {
+        SiteNavigation.Page page = page(" Title ", "# One\n\n## Two *2*\n");
+
+        String encoded = page.encode();
+        SiteNavigation.Page decoded = SiteNavigation.Page.decode(encoded);
+
+        assertEquals("Title\n1\tone\tOne\n2\ttwo-2\tTwo 2", encoded);
+        assertEquals("Title", decoded.title);
+        assertEquals(page.getTableOfContents(), decoded.getTableOfContents());
+        assertEquals("Empty", SiteNavigation.Page.decode("Empty").title);
+    }
+
+    public void testWrite() throws Exception {
+        File outputDirectory = new File(getBasedir(), "/target/test-harness/site-navigation/html");
+        FileUtils.deleteDirectory(outputDirectory);
+
+        SiteNavigation navigation = new SiteNavigation(outputDirectory);
+        navigation.add(new File(outputDirectory, "b/page.html"), page("Page", "Text\n"));
+        navigation.add(new File(outputDirectory, "index.html"), page("Index", "# A & B\n"));
+        navigation.add(new File(outputDirectory, "a/c/deep.html"), page("Deep", "Text\n"));
+        navigation.writeNavigation(new File(outputDirectory, "navigation.json"));
+        navigation.writeSitemap(new File(outputDirectory, "sitemap.xml"), "https://example.com/?q=1&");
+
+        assertEquals("{\"pages\":[{\"url\":\"index.html\",\"title\":\"Index\",\"headings\":[{\"id\":\"a--b\",\"title\":\"A & B\"}]}],"
+                        + "\"directories\":[{\"name\":\"a\",\"pages\":[],\"directories\":[{\"name\":\"c\","
+                        + "\"pages\":[{\"url\":\"a/c/deep.html\",\"title\":\"Deep\",\"headings\":[]}],\"directories\":[]}]},"
+                        + "{\"name\":\"b\",\"pages\":[{\"url\":\"b/page.html\",\"title\":\"Page\",\"headings\":[]}],\"directories\":[]}]}",
+                FileUtils.readFileToString(new File(outputDirectory, "navigation.json"), "UTF-8"));
+        assertEquals("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                        + "<urlset xmlns=\"http://www.sitemaps.org/schemas/sitemap/0.9\">\n"
+                        + "  <url><loc>https://example.com/?q=1&amp;/a/c/deep.html</loc></url>\n"
+                        + "  <url><loc>https://example.com/?q=1&amp;/b/page.html</loc></url>\n"
+                        + "  <url><loc>https://example.com/?q=1&amp;/index.html</loc></url>\n"
+                        + "</urlset>\n",
+                FileUtils.readFileToString(new File(outputDirectory, "sitemap.xml"), "UTF-8"));
+    }
+
+    private static SiteNavigation.Page page(String title, String markdown) {
+        Document document = Parser.builder().build().parse(markdown);
+        HeaderIdGenerator headerIds = new HeaderIdGenerator(document);
+        headerIds.generateIds(document);
+        return SiteNavigation.Page.of(title, document, headerIds);
+    }
+}
@@ -0,0 +1,95 @@
+package com.ruleoftech.markdown.page.generator.plugin;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Unit test for {@link VariableSubstitutor}
+ */
+public class VariableSubstitutorTest extends BetterAbstractMojoTestCase {
+
+    private static final String[] SOURCES = {
+            "",
+            "No variables at all",
+            "# ${title}\n\n{title=Lorem ipsum}\n\nText with ${known} and ${unknown} variables.\n",
+            "${known}${known}${nullValue}$${known}}",
+            "{key=value} text {other=value}\n{=}\n{not a definition}\n{ key=value}\n",
+            "${}} ${ } ${known\n} ${${known}} ${a{b=c}d}\n",
+            "${known{x=y}} ${known}{x=y}\r\n${known} {x=y}${known}",
+            "{a=b}}}} ${known} {c=d",
+            "${dollar} ${backslash}",
+            "$",
+            "${",
+            "{",
+    };
+
+    public void testSubstituteMatchesRegularExpressions() {
+        Map<String, String> variables = new HashMap<>();
+        variables.put("known", "value");
+        variables.put("title", "Title");
+        variables.put("nullValue", null);
+        variables.put("dollar", "$1 ${known}");
+        variables.put("backslash", "\\");
+        variables.put("}", "brace");
+        variables.put(" ", "space");
+
+        for (String source : SOURCES) {
+            assertEquals(source, replaceVariables(source, variables), VariableSubstitutor.substitute(source, variables));
+            assertEquals(source, replaceVariables(source, null), VariableSubstitutor.substitute(source, null));
+        }
+    }
+
+    public void testSubstituteAppends() {
+        Map<String, String> variables = new HashMap<>();
+        variables.put("name", "world");
+
+        StringBuilder out = new StringBuilder("Hello ");
+        VariableSubstitutor.substitute("${name}{name=world}!", variables, out);
+
+        assertEquals("Hello world!", out.toString());
+    }
+
+    public void testSubstituteWithoutBracesReturnsSameInstance() {
+        String text = "Nothing to replace here";
+
+        assertSame(text, VariableSubstitutor.substitute(text, new HashMap<String, String>()));
+    }
+
+    public void testNeedsSubstitutionWhenSubstitutingChangesText() {
+        Map<String, String> variables = new HashMap<>();
+        variables.put("known", "value");
+        variables.put("title", "Title");
+
+        for (String source : SOURCES) {
+            for (Map<String, String> vars : Arrays.asList(variables, new HashMap<String, String>(), null)) {
+                StringBuilder out = new StringBuilder();
+                VariableSubstitutor.substitute(source, vars, out);
+                if (!source.equals(out.toString())) {
+                    assertTrue(source, VariableSubstitutor.needsSubstitution(source, vars));
+                }
+            }
+        }
+        assertFalse(VariableSubstitutor.needsSubstitution("${known} {not a definition}", null));
+        assertFalse(VariableSubstitutor.needsSubstitution("${known}", new HashMap<String, String>()));
+    }
+
+    private static String replaceVariables(String content, Map<String, String> variables) {
+        content = content.replaceAll("\\{\\w*=.*}", "");
+        if (variables == null) {
+            return content;
+        }
+        Matcher matcher = Pattern.compile("\\$\\{(.+?)\\}").matcher(content);
+        StringBuffer buffer = new StringBuffer();
+        while (matcher.find()) {
+            if (variables.containsKey(matcher.group(1))) {
+                String replacement = variables.get(matcher.group(1));
+                matcher.appendReplacement(buffer, replacement != null ? Matcher.quoteReplacement(replacement) : "null");
+            }
+        }
+        matcher.appendTail(buffer);
+        return buffer.toString();
+    }
+}